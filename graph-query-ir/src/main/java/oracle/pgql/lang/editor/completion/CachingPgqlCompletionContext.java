@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang.editor.completion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A {@link PgqlCompletionContext} that caches the graph names, properties and labels of another context for a fixed
+ * amount of time, and that indexes them so that the names that start with a prefix are found without a full scan.
+ *
+ * This is useful if looking up the metadata is expensive, for example because it requires a call to a remote service.
+ * The cache is thread safe and can be shared by all users of the same graphs. If multiple threads ask for the same
+ * expired entry at the same time, the underlying context may be called more than once.
+ */
+public class CachingPgqlCompletionContext implements PgqlCompletionContext {
+
+  private enum Kind {
+    GRAPH_NAMES,
+    VERTEX_PROPERTIES,
+    EDGE_PROPERTIES,
+    VERTEX_LABELS,
+    EDGE_LABELS
+  }
+
+  private final PgqlCompletionContext ctx;
+
+  private final long timeToLiveNanos;
+
+  private final Map<CacheKey, CacheEntry> cache = new ConcurrentHashMap<>();
+
+  /**
+   * @param ctx
+   *          the context to get the metadata from
+   * @param timeToLive
+   *          how long the metadata of a graph is cached before it is looked up again
+   * @param unit
+   *          the unit of timeToLive
+   */
+  public CachingPgqlCompletionContext(PgqlCompletionContext ctx, long timeToLive, TimeUnit unit) {
+    if (timeToLive < 0) {
+      throw new IllegalArgumentException("Time to live should not be negative but was " + timeToLive);
+    }
+    this.ctx = ctx;
+    this.timeToLiveNanos = unit.toNanos(timeToLive);
+  }
+
+  @Override
+  public List<String> getGraphNames() {
+    return getEntry(Kind.GRAPH_NAMES, null, ctx::getGraphNames).names;
+  }
+
+  @Override
+  public List<String> getVertexProperties(String graphName) {
+    return getEntry(Kind.VERTEX_PROPERTIES, graphName, () -> ctx.getVertexProperties(graphName)).names;
+  }
+
+  @Override
+  public List<String> getEdgeProperties(String graphName) {
+    return getEntry(Kind.EDGE_PROPERTIES, graphName, () -> ctx.getEdgeProperties(graphName)).names;
+  }
+
+  @Override
+  public List<String> getVertexLabels(String graphName) {
+    return getEntry(Kind.VERTEX_LABELS, graphName, () -> ctx.getVertexLabels(graphName)).names;
+  }
+
+  @Override
+  public List<String> getEdgeLabels(String graphName) {
+    return getEntry(Kind.EDGE_LABELS, graphName, () -> ctx.getEdgeLabels(graphName)).names;
+  }
+
+  @Override
+  public List<String> getVertexProperties(String graphName, String prefix) {
+    return getEntry(Kind.VERTEX_PROPERTIES, graphName, () -> ctx.getVertexProperties(graphName)).getIndex()
+        .lookup(prefix);
+  }
+
+  @Override
+  public List<String> getEdgeProperties(String graphName, String prefix) {
+    return getEntry(Kind.EDGE_PROPERTIES, graphName, () -> ctx.getEdgeProperties(graphName)).getIndex()
+        .lookup(prefix);
+  }
+
+  @Override
+  public List<String> getVertexLabels(String graphName, String prefix) {
+    return getEntry(Kind.VERTEX_LABELS, graphName, () -> ctx.getVertexLabels(graphName)).getIndex().lookup(prefix);
+  }
+
+  @Override
+  public List<String> getEdgeLabels(String graphName, String prefix) {
+    return getEntry(Kind.EDGE_LABELS, graphName, () -> ctx.getEdgeLabels(graphName)).getIndex().lookup(prefix);
+  }
+
+  /**
+   * Removes all cached metadata, so that it is looked up again on next use.
+   */
+  public void invalidate() {
+    cache.clear();
+  }
+
+  /**
+   * Removes the cached metadata of a graph, so that it is looked up again on next use. Use this when the schema of the
+   * graph changed.
+   *
+   * @param graphName
+   *          the name of the graph, or null for the default graph
+   */
+  public void invalidate(String graphName) {
+    cache.keySet().removeIf(key -> key.kind != Kind.GRAPH_NAMES && Objects.equals(key.graphName, graphName));
+  }
+
+  private CacheEntry getEntry(Kind kind, String graphName, Supplier<List<String>> loader) {
+    CacheKey key = new CacheKey(kind, graphName);
+    long now = System.nanoTime();
+    CacheEntry entry = cache.get(key);
+    if (entry == null || now - entry.loadTime >= timeToLiveNanos) {
+      List<String> names = loader.get();
+      entry = new CacheEntry(names == null ? Collections.emptyList() : names, now);
+      cache.put(key, entry);
+    }
+    return entry;
+  }
+
+  private static class CacheKey {
+
+    private final Kind kind;
+
+    private final String graphName;
+
+    CacheKey(Kind kind, String graphName) {
+      this.kind = kind;
+      this.graphName = graphName;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(kind, graphName);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj)
+        return true;
+      if (obj == null)
+        return false;
+      if (getClass() != obj.getClass())
+        return false;
+      CacheKey other = (CacheKey) obj;
+      return kind == other.kind && Objects.equals(graphName, other.graphName);
+    }
+  }
+
+  private static class CacheEntry {
+
+    private final List<String> names;
+
+    private final long loadTime;
+
+    private volatile PrefixIndex index;
+
+    CacheEntry(List<String> names, long loadTime) {
+      this.names = Collections.unmodifiableList(new ArrayList<>(names));
+      this.loadTime = loadTime;
+    }
+
+    /**
+     * The index is only built on the first prefix lookup.
+     */
+    PrefixIndex getIndex() {
+      PrefixIndex result = index;
+      if (result == null) {
+        result = new PrefixIndex(names);
+        index = result;
+      }
+      return result;
+    }
+  }
+}
@@ -16,4 +16,32 @@ public interface PgqlCompletionContext {
   List<String> getVertexLabels(String graphName);
 
   List<String> getEdgeLabels(String graphName);
+
+  /**
+   * @return the vertex properties that start with the given prefix, ignoring case
+   */
+  default List<String> getVertexProperties(String graphName, String prefix) {
+    return PrefixIndex.filter(getVertexProperties(graphName), prefix);
+  }
+
+  /**
+   * @return the edge properties that start with the given prefix, ignoring case
+   */
+  default List<String> getEdgeProperties(String graphName, String prefix) {
+    return PrefixIndex.filter(getEdgeProperties(graphName), prefix);
+  }
+
+  /**
+   * @return the vertex labels that start with the given prefix, ignoring case
+   */
+  default List<String> getVertexLabels(String graphName, String prefix) {
+    return PrefixIndex.filter(getVertexLabels(graphName), prefix);
+  }
+
+  /**
+   * @return the edge labels that start with the given prefix, ignoring case
+   */
+  default List<String> getEdgeLabels(String graphName, String prefix) {
+    return PrefixIndex.filter(getEdgeLabels(graphName), prefix);
+  }
 }
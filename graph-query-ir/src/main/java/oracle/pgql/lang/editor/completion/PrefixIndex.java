@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang.editor.completion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A sorted array of names that finds the names that start with a prefix, ignoring case, through binary search.
+ */
+class PrefixIndex {
+
+  private final String[] sortedNames;
+
+  PrefixIndex(List<String> names) {
+    sortedNames = names.toArray(new String[0]);
+    Arrays.sort(sortedNames, String.CASE_INSENSITIVE_ORDER);
+  }
+
+  /**
+   * @return the names that start with the prefix, ignoring case, in case-insensitive alphabetical order
+   */
+  List<String> lookup(String prefix) {
+    int low = 0;
+    int high = sortedNames.length;
+    while (low < high) { // find the first name that is not smaller than the prefix
+      int mid = (low + high) >>> 1;
+      if (String.CASE_INSENSITIVE_ORDER.compare(sortedNames[mid], prefix) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    List<String> result = new ArrayList<>();
+    for (int i = low; i < sortedNames.length && startsWithIgnoreCase(sortedNames[i], prefix); i++) {
+      result.add(sortedNames[i]);
+    }
+    return result;
+  }
+
+  /**
+   * Finds the names that start with the prefix, ignoring case, by scanning all of them.
+   *
+   * @return the names that start with the prefix, in their original order
+   */
+  static List<String> filter(List<String> names, String prefix) {
+    if (names == null) {
+      return Collections.emptyList();
+    }
+    List<String> result = new ArrayList<>();
+    for (String name : names) {
+      if (startsWithIgnoreCase(name, prefix)) {
+        result.add(name);
+      }
+    }
+    return result;
+  }
+
+  private static boolean startsWithIgnoreCase(String name, String prefix) {
+    return name.regionMatches(true, 0, prefix, 0, prefix.length());
+  }
+}
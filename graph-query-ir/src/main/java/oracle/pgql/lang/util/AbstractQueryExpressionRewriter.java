@@ -0,0 +1,588 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang.util;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import oracle.pgql.lang.ir.CommonPathExpression;
+import oracle.pgql.lang.ir.ExpAsVar;
+import oracle.pgql.lang.ir.GraphPattern;
+import oracle.pgql.lang.ir.GraphQuery;
+import oracle.pgql.lang.ir.GroupBy;
+import oracle.pgql.lang.ir.OrderBy;
+import oracle.pgql.lang.ir.OrderByElem;
+import oracle.pgql.lang.ir.Projection;
+import oracle.pgql.lang.ir.QueryExpression;
+import oracle.pgql.lang.ir.QueryExpression.Aggregation.AggrArrayAgg;
+import oracle.pgql.lang.ir.QueryExpression.Aggregation.AggrAvg;
+import oracle.pgql.lang.ir.QueryExpression.Aggregation.AggrCount;
+import oracle.pgql.lang.ir.QueryExpression.Aggregation.AggrListagg;
+import oracle.pgql.lang.ir.QueryExpression.Aggregation.AggrMax;
+import oracle.pgql.lang.ir.QueryExpression.Aggregation.AggrMin;
+import oracle.pgql.lang.ir.QueryExpression.Aggregation.AggrSum;
+import oracle.pgql.lang.ir.QueryExpression.Aggregation.AbstractAggregation;
+import oracle.pgql.lang.ir.QueryExpression.ArithmeticExpression.Add;
+import oracle.pgql.lang.ir.QueryExpression.ArithmeticExpression.Div;
+import oracle.pgql.lang.ir.QueryExpression.ArithmeticExpression.Mod;
+import oracle.pgql.lang.ir.QueryExpression.ArithmeticExpression.Mul;
+import oracle.pgql.lang.ir.QueryExpression.ArithmeticExpression.Sub;
+import oracle.pgql.lang.ir.QueryExpression.ArithmeticExpression.UMin;
+import oracle.pgql.lang.ir.QueryExpression.BinaryExpression;
+import oracle.pgql.lang.ir.QueryExpression.ConcatExpression;
+import oracle.pgql.lang.ir.QueryExpression.ExtractExpression;
+import oracle.pgql.lang.ir.QueryExpression.Function.Cast;
+import oracle.pgql.lang.ir.QueryExpression.Function.Exists;
+import oracle.pgql.lang.ir.QueryExpression.FunctionCall;
+import oracle.pgql.lang.ir.QueryExpression.IfElse;
+import oracle.pgql.lang.ir.QueryExpression.InPredicate;
+import oracle.pgql.lang.ir.QueryExpression.IsNull;
+import oracle.pgql.lang.ir.QueryExpression.LogicalExpression.And;
+import oracle.pgql.lang.ir.QueryExpression.LogicalExpression.Not;
+import oracle.pgql.lang.ir.QueryExpression.LogicalExpression.Or;
+import oracle.pgql.lang.ir.QueryExpression.PropertyAccess;
+import oracle.pgql.lang.ir.QueryExpression.RelationalExpression.Equal;
+import oracle.pgql.lang.ir.QueryExpression.RelationalExpression.Greater;
+import oracle.pgql.lang.ir.QueryExpression.RelationalExpression.GreaterEqual;
+import oracle.pgql.lang.ir.QueryExpression.RelationalExpression.Less;
+import oracle.pgql.lang.ir.QueryExpression.RelationalExpression.LessEqual;
+import oracle.pgql.lang.ir.QueryExpression.RelationalExpression.NotEqual;
+import oracle.pgql.lang.ir.QueryExpression.ScalarSubquery;
+import oracle.pgql.lang.ir.QueryExpression.SimpleCase;
+import oracle.pgql.lang.ir.QueryExpression.SubstringExpression;
+import oracle.pgql.lang.ir.QueryExpression.UnaryExpression;
+import oracle.pgql.lang.ir.QueryExpression.VarRef;
+import oracle.pgql.lang.ir.QueryExpression.WhenThenExpression;
+import oracle.pgql.lang.ir.QueryPath;
+import oracle.pgql.lang.ir.QueryVariable;
+import oracle.pgql.lang.ir.QueryVariable.VariableType;
+import oracle.pgql.lang.ir.SelectQuery;
+import oracle.pgql.lang.ir.VertexPairConnection;
+import oracle.pgql.lang.ir.modify.DeleteClause;
+import oracle.pgql.lang.ir.modify.EdgeInsertion;
+import oracle.pgql.lang.ir.modify.InsertClause;
+import oracle.pgql.lang.ir.modify.Insertion;
+import oracle.pgql.lang.ir.modify.Modification;
+import oracle.pgql.lang.ir.modify.ModifyQuery;
+import oracle.pgql.lang.ir.modify.SetPropertyExpression;
+import oracle.pgql.lang.ir.modify.Update;
+import oracle.pgql.lang.ir.modify.UpdateClause;
+import oracle.pgql.lang.ir.modify.VertexInsertion;
+
+/**
+ * Rewrites queries and expressions bottom-up. Subclasses override {@link #rewriteExpression(QueryExpression)}, which is
+ * called for every expression after its subexpressions have been rewritten, and return a replacement for the expression
+ * or the expression itself to keep it.
+ *
+ * The input is never modified. Nodes of which nothing changed are reused as they are, while nodes with a changed
+ * subtree are copied, such that rewriting a query that does not change returns the same query instance and rewriting a
+ * query that changes only copies the path from the root to each change. When a variable with an expression (e.g. an
+ * element of the SELECT or the GROUP BY) is copied, references to the variable elsewhere in the query, such as in the
+ * ORDER BY, are pointed to the copy. This only applies within a single call: rewriting for example the projection and
+ * the ORDER BY of a query through two separate calls does not point the references in the ORDER BY to the copied
+ * elements of the projection, so rewrite the whole query instead.
+ *
+ * A rewriter is not thread safe.
+ */
+public abstract class AbstractQueryExpressionRewriter {
+
+  private final Map<QueryVariable, QueryVariable> replacedVariables = new IdentityHashMap<>();
+
+  /**
+   * The number of calls to the rewrite methods that are in progress; the copied variables are forgotten when the
+   * outermost call returns.
+   */
+  private int depth = 0;
+
+  /**
+   * @param exp
+   *          the expression to rewrite, after its subexpressions have been rewritten
+   * @return the replacement for the expression, or the expression itself
+   */
+  protected QueryExpression rewriteExpression(QueryExpression exp) {
+    return exp;
+  }
+
+  /**
+   * @return the rewritten expression, which is the same instance if nothing changed; null if the expression is null
+   */
+  public QueryExpression rewrite(QueryExpression exp) {
+    if (exp == null) {
+      return null;
+    }
+    enter();
+    try {
+      return rewriteExpression(rewriteSubexpressions(exp));
+    } finally {
+      exit();
+    }
+  }
+
+  /**
+   * @return the rewritten query, which is the same instance if nothing changed
+   */
+  public GraphQuery rewrite(GraphQuery query) {
+    enter();
+    try {
+      switch (query.getQueryType()) {
+        case SELECT:
+          return rewriteSelectQuery((SelectQuery) query);
+        case MODIFY:
+          return rewriteModifyQuery((ModifyQuery) query);
+        default:
+          throw new IllegalArgumentException(query.getQueryType().toString());
+      }
+    } finally {
+      exit();
+    }
+  }
+
+  public GraphPattern rewrite(GraphPattern graphPattern) {
+    enter();
+    try {
+      Set<VertexPairConnection> connections = rewriteSet(graphPattern.getConnections(), this::rewriteConnection);
+      Set<QueryExpression> constraints = rewriteSet(graphPattern.getConstraints(), this::rewrite);
+      if (connections == graphPattern.getConnections() && constraints == graphPattern.getConstraints()) {
+        return graphPattern;
+      }
+      return new GraphPattern(graphPattern.getVertices(), new LinkedHashSet<>(connections),
+          new LinkedHashSet<>(constraints));
+    } finally {
+      exit();
+    }
+  }
+
+  public Projection rewrite(Projection projection) {
+    enter();
+    try {
+      List<ExpAsVar> elements = rewriteList(projection.getElements(), this::rewriteExpAsVar);
+      return elements == projection.getElements() ? projection : new Projection(projection.isDistinct(), elements);
+    } finally {
+      exit();
+    }
+  }
+
+  public GroupBy rewrite(GroupBy groupBy) {
+    enter();
+    try {
+      List<ExpAsVar> elements = rewriteList(groupBy.getElements(), this::rewriteExpAsVar);
+      return elements == groupBy.getElements() ? groupBy : new GroupBy(elements);
+    } finally {
+      exit();
+    }
+  }
+
+  public OrderBy rewrite(OrderBy orderBy) {
+    enter();
+    try {
+      List<OrderByElem> elements = rewriteList(orderBy.getElements(), this::rewriteOrderByElem);
+      return elements == orderBy.getElements() ? orderBy : new OrderBy(elements);
+    } finally {
+      exit();
+    }
+  }
+
+  public Modification rewrite(Modification modification) {
+    enter();
+    try {
+      return rewriteModification(modification);
+    } finally {
+      exit();
+    }
+  }
+
+  private void enter() {
+    depth++;
+  }
+
+  private void exit() {
+    if (--depth == 0) {
+      replacedVariables.clear();
+    }
+  }
+
+  private Modification rewriteModification(Modification modification) {
+    switch (modification.getModificationType()) {
+      case INSERT: {
+        InsertClause insertClause = (InsertClause) modification;
+        List<Insertion> insertions = rewriteList(insertClause.getInsertions(), this::rewriteInsertion);
+        return insertions == insertClause.getInsertions() ? insertClause
+            : new InsertClause(insertClause.getGraphName(), insertions);
+      }
+      case UPDATE: {
+        UpdateClause updateClause = (UpdateClause) modification;
+        List<Update> updates = rewriteList(updateClause.getUpdates(), this::rewriteUpdate);
+        return updates == updateClause.getUpdates() ? updateClause : new UpdateClause(updates);
+      }
+      case DELETE: {
+        DeleteClause deleteClause = (DeleteClause) modification;
+        List<VarRef> deletions = rewriteList(deleteClause.getDeletions(), this::replaceVariable);
+        return deletions == deleteClause.getDeletions() ? deleteClause : new DeleteClause(deletions);
+      }
+      default:
+        throw new IllegalArgumentException(modification.getModificationType().toString());
+    }
+  }
+
+  private SelectQuery rewriteSelectQuery(SelectQuery query) {
+    List<CommonPathExpression> commonPathExpressions = rewriteCommonPathExpressions(query);
+    GraphPattern graphPattern = query.getGraphPattern() == null ? null : rewrite(query.getGraphPattern());
+    GroupBy groupBy = query.getGroupBy() == null ? null : rewrite(query.getGroupBy());
+    Projection projection = rewrite(query.getProjection());
+    QueryExpression having = rewrite(query.getHaving());
+    OrderBy orderBy = query.getOrderBy() == null ? null : rewrite(query.getOrderBy());
+    QueryExpression limit = rewrite(query.getLimit());
+    QueryExpression offset = rewrite(query.getOffset());
+
+    if (commonPathExpressions == query.getCommonPathExpressions() && graphPattern == query.getGraphPattern()
+        && groupBy == query.getGroupBy() && projection == query.getProjection() && having == query.getHaving()
+        && orderBy == query.getOrderBy() && limit == query.getLimit() && offset == query.getOffset()) {
+      return query;
+    }
+    return new SelectQuery(commonPathExpressions, projection, query.getGraphName(), graphPattern, groupBy, having,
+        orderBy, limit, offset);
+  }
+
+  private ModifyQuery rewriteModifyQuery(ModifyQuery query) {
+    List<CommonPathExpression> commonPathExpressions = rewriteCommonPathExpressions(query);
+    GraphPattern graphPattern = query.getGraphPattern() == null ? null : rewrite(query.getGraphPattern());
+    GroupBy groupBy = query.getGroupBy() == null ? null : rewrite(query.getGroupBy());
+    List<Modification> modifications = rewriteList(query.getModifications(), this::rewrite);
+    QueryExpression having = rewrite(query.getHaving());
+    OrderBy orderBy = query.getOrderBy() == null ? null : rewrite(query.getOrderBy());
+    QueryExpression limit = rewrite(query.getLimit());
+    QueryExpression offset = rewrite(query.getOffset());
+
+    if (commonPathExpressions == query.getCommonPathExpressions() && graphPattern == query.getGraphPattern()
+        && groupBy == query.getGroupBy() && modifications == query.getModifications() && having == query.getHaving()
+        && orderBy == query.getOrderBy() && limit == query.getLimit() && offset == query.getOffset()) {
+      return query;
+    }
+    return new ModifyQuery(commonPathExpressions, modifications, query.getGraphName(), graphPattern, groupBy, having,
+        orderBy, limit, offset);
+  }
+
+  private List<CommonPathExpression> rewriteCommonPathExpressions(GraphQuery query) {
+    if (query.getCommonPathExpressions() == null) {
+      return null;
+    }
+    return rewriteList(query.getCommonPathExpressions(), this::rewriteCommonPathExpression);
+  }
+
+  private CommonPathExpression rewriteCommonPathExpression(CommonPathExpression commonPathExpression) {
+    Set<QueryExpression> constraints = rewriteSet(commonPathExpression.getConstraints(), this::rewrite);
+    QueryExpression cost = rewrite(commonPathExpression.getCost());
+    if (constraints == commonPathExpression.getConstraints() && cost == commonPathExpression.getCost()) {
+      return commonPathExpression;
+    }
+    return new CommonPathExpression(commonPathExpression.getName(), commonPathExpression.getVertices(),
+        commonPathExpression.getConnections(), constraints, cost);
+  }
+
+  private VertexPairConnection rewriteConnection(VertexPairConnection connection) {
+    if (connection.getVariableType() != VariableType.PATH) {
+      return connection; // edges do not have expressions
+    }
+    QueryPath path = (QueryPath) connection;
+    Set<QueryExpression> constraints = rewriteSet(path.getConstraints(), this::rewrite);
+    QueryExpression cost = rewrite(path.getCost());
+    if (constraints == path.getConstraints() && cost == path.getCost()) {
+      return path;
+    }
+    CommonPathExpression commonPathExpression = new CommonPathExpression(path.getPathExpressionName(),
+        path.getVertices(), path.getConnections(), constraints, cost);
+    QueryPath newPath = new QueryPath(path.getSrc(), path.getDst(), path.getName(), commonPathExpression,
+        path.isAnonymous(), path.getMinHops(), path.getMaxHops(), path.getPathFindingGoal(), path.getKValue(),
+        path.getDirection());
+    replacedVariables.put(path, newPath);
+    return newPath;
+  }
+
+  private ExpAsVar rewriteExpAsVar(ExpAsVar expAsVar) {
+    QueryExpression exp = rewrite(expAsVar.getExp());
+    if (exp == expAsVar.getExp()) {
+      return expAsVar;
+    }
+    ExpAsVar newExpAsVar = new ExpAsVar(exp, expAsVar.getName(), expAsVar.isAnonymous(),
+        expAsVar.getNameOriginText());
+    replacedVariables.put(expAsVar, newExpAsVar);
+    return newExpAsVar;
+  }
+
+  private OrderByElem rewriteOrderByElem(OrderByElem orderByElem) {
+    QueryExpression exp = rewrite(orderByElem.getExp());
+    return exp == orderByElem.getExp() ? orderByElem : new OrderByElem(exp, orderByElem.isAscending());
+  }
+
+  private Insertion rewriteInsertion(Insertion insertion) {
+    switch (insertion.getInsertionType()) {
+      case VERTEX_INSERTION: {
+        VertexInsertion vertexInsertion = (VertexInsertion) insertion;
+        List<QueryExpression> labels = rewriteList(vertexInsertion.getLabels(), this::rewrite);
+        List<SetPropertyExpression> properties = rewriteList(vertexInsertion.getProperties(),
+            this::rewriteSetPropertyExpression);
+        if (labels == vertexInsertion.getLabels() && properties == vertexInsertion.getProperties()) {
+          return vertexInsertion;
+        }
+        return new VertexInsertion(vertexInsertion.getVertex(), labels, properties);
+      }
+      case EDGE_INSERTION: {
+        EdgeInsertion edgeInsertion = (EdgeInsertion) insertion;
+        List<QueryExpression> labels = rewriteList(edgeInsertion.getLabels(), this::rewrite);
+        List<SetPropertyExpression> properties = rewriteList(edgeInsertion.getProperties(),
+            this::rewriteSetPropertyExpression);
+        if (labels == edgeInsertion.getLabels() && properties == edgeInsertion.getProperties()) {
+          return edgeInsertion;
+        }
+        return new EdgeInsertion(edgeInsertion.getEdge(), labels, properties);
+      }
+      default:
+        throw new IllegalArgumentException(insertion.getInsertionType().toString());
+    }
+  }
+
+  private Update rewriteUpdate(Update update) {
+    VarRef element = replaceVariable(update.getElement());
+    List<SetPropertyExpression> setPropertyExpressions = rewriteList(update.getSetPropertyExpressions(),
+        this::rewriteSetPropertyExpression);
+    if (element == update.getElement() && setPropertyExpressions == update.getSetPropertyExpressions()) {
+      return update;
+    }
+    return new Update(element, setPropertyExpressions);
+  }
+
+  private SetPropertyExpression rewriteSetPropertyExpression(SetPropertyExpression setPropertyExpression) {
+    PropertyAccess propertyAccess = replaceVariable(setPropertyExpression.getPropertyAccess());
+    QueryExpression valueExpression = rewrite(setPropertyExpression.getValueExpression());
+    if (propertyAccess == setPropertyExpression.getPropertyAccess()
+        && valueExpression == setPropertyExpression.getValueExpression()) {
+      return setPropertyExpression;
+    }
+    return new SetPropertyExpression(propertyAccess, valueExpression);
+  }
+
+  /**
+   * @return a reference to the copy of the variable if the variable was copied; the reference itself otherwise
+   */
+  private VarRef replaceVariable(VarRef varRef) {
+    QueryVariable variable = replacedVariables.get(varRef.getVariable());
+    return variable == null ? varRef : new VarRef(variable);
+  }
+
+  private PropertyAccess replaceVariable(PropertyAccess propAccess) {
+    QueryVariable variable = replacedVariables.get(propAccess.getVariable());
+    return variable == null ? propAccess : new PropertyAccess(variable, propAccess.getPropertyName());
+  }
+
+  /**
+   * @return the expression with rewritten subexpressions, which is the same instance if none of them changed
+   */
+  private QueryExpression rewriteSubexpressions(QueryExpression exp) {
+    switch (exp.getExpType()) {
+      case INTEGER:
+      case DECIMAL:
+      case STRING:
+      case BOOLEAN:
+      case DATE:
+      case TIME:
+      case TIMESTAMP:
+      case TIME_WITH_TIMEZONE:
+      case TIMESTAMP_WITH_TIMEZONE:
+      case BIND_VARIABLE:
+      case STAR:
+      case IN_VALUE_LIST:
+        return exp;
+      case SUB:
+        return rewriteBinary((BinaryExpression) exp, Sub::new);
+      case ADD:
+        return rewriteBinary((BinaryExpression) exp, Add::new);
+      case MUL:
+        return rewriteBinary((BinaryExpression) exp, Mul::new);
+      case DIV:
+        return rewriteBinary((BinaryExpression) exp, Div::new);
+      case MOD:
+        return rewriteBinary((BinaryExpression) exp, Mod::new);
+      case UMIN:
+        return rewriteUnary((UnaryExpression) exp, UMin::new);
+      case AND:
+        return rewriteBinary((BinaryExpression) exp, And::new);
+      case OR:
+        return rewriteBinary((BinaryExpression) exp, Or::new);
+      case NOT:
+        return rewriteUnary((UnaryExpression) exp, Not::new);
+      case EQUAL:
+        return rewriteBinary((BinaryExpression) exp, Equal::new);
+      case NOT_EQUAL:
+        return rewriteBinary((BinaryExpression) exp, NotEqual::new);
+      case GREATER:
+        return rewriteBinary((BinaryExpression) exp, Greater::new);
+      case GREATER_EQUAL:
+        return rewriteBinary((BinaryExpression) exp, GreaterEqual::new);
+      case LESS:
+        return rewriteBinary((BinaryExpression) exp, Less::new);
+      case LESS_EQUAL:
+        return rewriteBinary((BinaryExpression) exp, LessEqual::new);
+      case CONCAT:
+        return rewriteBinary((BinaryExpression) exp, ConcatExpression::new);
+      case AGGR_COUNT: {
+        boolean distinct = ((AbstractAggregation) exp).isDistinct();
+        return rewriteUnary((UnaryExpression) exp, e -> new AggrCount(distinct, e));
+      }
+      case AGGR_MIN: {
+        boolean distinct = ((AbstractAggregation) exp).isDistinct();
+        return rewriteUnary((UnaryExpression) exp, e -> new AggrMin(distinct, e));
+      }
+      case AGGR_MAX: {
+        boolean distinct = ((AbstractAggregation) exp).isDistinct();
+        return rewriteUnary((UnaryExpression) exp, e -> new AggrMax(distinct, e));
+      }
+      case AGGR_SUM: {
+        boolean distinct = ((AbstractAggregation) exp).isDistinct();
+        return rewriteUnary((UnaryExpression) exp, e -> new AggrSum(distinct, e));
+      }
+      case AGGR_AVG: {
+        boolean distinct = ((AbstractAggregation) exp).isDistinct();
+        return rewriteUnary((UnaryExpression) exp, e -> new AggrAvg(distinct, e));
+      }
+      case AGGR_ARRAY_AGG: {
+        boolean distinct = ((AbstractAggregation) exp).isDistinct();
+        return rewriteUnary((UnaryExpression) exp, e -> new AggrArrayAgg(distinct, e));
+      }
+      case AGGR_LISTAGG: {
+        AggrListagg listagg = (AggrListagg) exp;
+        return rewriteUnary(listagg, e -> new AggrListagg(listagg.isDistinct(), e, listagg.getSeparator()));
+      }
+      case VARREF:
+        return replaceVariable((VarRef) exp);
+      case PROP_ACCESS:
+        return replaceVariable((PropertyAccess) exp);
+      case SCALAR_SUBQUERY: {
+        SelectQuery query = ((ScalarSubquery) exp).getQuery();
+        SelectQuery newQuery = (SelectQuery) rewrite(query);
+        return newQuery == query ? exp : new ScalarSubquery(newQuery);
+      }
+      case EXISTS: {
+        SelectQuery query = ((Exists) exp).getQuery();
+        SelectQuery newQuery = (SelectQuery) rewrite(query);
+        return newQuery == query ? exp : new Exists(newQuery);
+      }
+      case CAST: {
+        Cast cast = (Cast) exp;
+        QueryExpression newExp = rewrite(cast.getExp());
+        return newExp == cast.getExp() ? cast : new Cast(newExp, cast.getTargetTypeName());
+      }
+      case FUNCTION_CALL: {
+        FunctionCall functionCall = (FunctionCall) exp;
+        List<QueryExpression> args = rewriteList(functionCall.getArgs(), this::rewrite);
+        return args == functionCall.getArgs() ? functionCall
+            : new FunctionCall(functionCall.getPackageName(), functionCall.getFunctionName(), args);
+      }
+      case EXTRACT_EXPRESSION: {
+        ExtractExpression extractExpression = (ExtractExpression) exp;
+        QueryExpression newExp = rewrite(extractExpression.getExp());
+        return newExp == extractExpression.getExp() ? extractExpression
+            : new ExtractExpression(extractExpression.getField(), newExp);
+      }
+      case IN_EXPRESSION: {
+        InPredicate inPredicate = (InPredicate) exp;
+        QueryExpression newExp = rewrite(inPredicate.getExp());
+        QueryExpression inValueList = rewrite(inPredicate.getInValueList());
+        return newExp == inPredicate.getExp() && inValueList == inPredicate.getInValueList() ? inPredicate
+            : new InPredicate(newExp, inValueList);
+      }
+      case IS_NULL: {
+        IsNull isNull = (IsNull) exp;
+        QueryExpression newExp = rewrite(isNull.getExp());
+        return newExp == isNull.getExp() ? isNull : new IsNull(newExp);
+      }
+      case IF_ELSE: {
+        IfElse ifElse = (IfElse) exp;
+        QueryExpression exp1 = rewrite(ifElse.getExp1());
+        QueryExpression exp2 = rewrite(ifElse.getExp2());
+        QueryExpression exp3 = rewrite(ifElse.getExp3());
+        return exp1 == ifElse.getExp1() && exp2 == ifElse.getExp2() && exp3 == ifElse.getExp3() ? ifElse
+            : new IfElse(exp1, exp2, exp3);
+      }
+      case SIMPLE_CASE: {
+        SimpleCase simpleCase = (SimpleCase) exp;
+        QueryExpression caseOperand = rewrite(simpleCase.getCaseOperand());
+        List<WhenThenExpression> whenThenExps = rewriteList(simpleCase.getWhenThenExps(), this::rewriteWhenThen);
+        QueryExpression elseExp = rewrite(simpleCase.getElseExp());
+        // the alternative representation must stay an IfElse, so only its subexpressions are rewritten
+        IfElse ifElse = simpleCase.getIfElseRepresentation() == null ? null
+            : (IfElse) rewriteSubexpressions(simpleCase.getIfElseRepresentation());
+        if (caseOperand == simpleCase.getCaseOperand() && whenThenExps == simpleCase.getWhenThenExps()
+            && elseExp == simpleCase.getElseExp() && ifElse == simpleCase.getIfElseRepresentation()) {
+          return simpleCase;
+        }
+        return new SimpleCase(caseOperand, whenThenExps, elseExp, ifElse);
+      }
+      case SUBSTRING: {
+        SubstringExpression substring = (SubstringExpression) exp;
+        QueryExpression newExp = rewrite(substring.getExp());
+        QueryExpression startPosition = rewrite(substring.getStartPosition());
+        QueryExpression stringLength = rewrite(substring.getStringLength());
+        if (newExp == substring.getExp() && startPosition == substring.getStartPosition()
+            && stringLength == substring.getStringLength()) {
+          return substring;
+        }
+        return new SubstringExpression(newExp, startPosition, stringLength);
+      }
+      default:
+        throw new IllegalArgumentException(exp.getExpType().toString());
+    }
+  }
+
+  private WhenThenExpression rewriteWhenThen(WhenThenExpression whenThen) {
+    QueryExpression when = rewrite(whenThen.getWhen());
+    QueryExpression then = rewrite(whenThen.getThen());
+    return when == whenThen.getWhen() && then == whenThen.getThen() ? whenThen : new WhenThenExpression(when, then);
+  }
+
+  private QueryExpression rewriteUnary(UnaryExpression exp, Function<QueryExpression, QueryExpression> constructor) {
+    QueryExpression newExp = rewrite(exp.getExp());
+    return newExp == exp.getExp() ? exp : constructor.apply(newExp);
+  }
+
+  private QueryExpression rewriteBinary(BinaryExpression exp,
+      BiFunction<QueryExpression, QueryExpression, QueryExpression> constructor) {
+    QueryExpression exp1 = rewrite(exp.getExp1());
+    QueryExpression exp2 = rewrite(exp.getExp2());
+    return exp1 == exp.getExp1() && exp2 == exp.getExp2() ? exp : constructor.apply(exp1, exp2);
+  }
+
+  /**
+   * @return the list with the rewritten elements, which is the same instance if none of the elements changed
+   */
+  private static <T> List<T> rewriteList(List<T> list, Function<T, T> rewriter) {
+    List<T> result = null;
+    for (int i = 0; i < list.size(); i++) {
+      T element = list.get(i);
+      T newElement = rewriter.apply(element);
+      if (result == null && newElement != element) {
+        result = new ArrayList<>(list.subList(0, i));
+      }
+      if (result != null) {
+        result.add(newElement);
+      }
+    }
+    return result == null ? list : result;
+  }
+
+  /**
+   * @return the set with the rewritten elements in the same order, which is the same instance if none of the elements
+   *         changed
+   */
+  private static <T> Set<T> rewriteSet(Set<T> set, Function<T, T> rewriter) {
+    List<T> elements = new ArrayList<>(set);
+    List<T> newElements = rewriteList(elements, rewriter);
+    return newElements == elements ? set : new LinkedHashSet<>(newElements);
+  }
+}
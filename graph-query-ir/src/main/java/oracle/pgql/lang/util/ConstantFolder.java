@@ -0,0 +1,474 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang.util;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import oracle.pgql.lang.ir.GraphPattern;
+import oracle.pgql.lang.ir.QueryExpression;
+import oracle.pgql.lang.ir.QueryExpression.BinaryExpression;
+import oracle.pgql.lang.ir.QueryExpression.Constant;
+import oracle.pgql.lang.ir.QueryExpression.Constant.ConstBoolean;
+import oracle.pgql.lang.ir.QueryExpression.Constant.ConstDecimal;
+import oracle.pgql.lang.ir.QueryExpression.Constant.ConstInteger;
+import oracle.pgql.lang.ir.QueryExpression.Constant.ConstString;
+import oracle.pgql.lang.ir.QueryExpression.ExpressionType;
+import oracle.pgql.lang.ir.QueryExpression.Function.Cast;
+import oracle.pgql.lang.ir.QueryExpression.IfElse;
+import oracle.pgql.lang.ir.QueryExpression.IsNull;
+import oracle.pgql.lang.ir.QueryExpression.SimpleCase;
+import oracle.pgql.lang.ir.QueryExpression.UnaryExpression;
+import oracle.pgql.lang.ir.QueryExpression.WhenThenExpression;
+
+/**
+ * Folds expressions over literals into literals and simplifies AND, OR, NOT, CASE and IS NULL with literal operands,
+ * such that engines do not need to evaluate them for every row:
+ *
+ * <ul>
+ * <li>integer arithmetic, comparisons and || over literals (e.g. 1 + 2 becomes 3)</li>
+ * <li>AND, OR and NOT following three-valued logic (e.g. x AND true becomes x, NOT NOT x becomes x)</li>
+ * <li>CASE with a literal condition or with a literal operand and literal WHEN values</li>
+ * <li>CAST of literals to STRING, BOOLEAN, INTEGER and DOUBLE</li>
+ * </ul>
+ *
+ * The constraints of a graph pattern are simplified in the same way as AND.
+ *
+ * Expressions are only folded if the result is the same for every engine. Integer overflow, division by zero, integer
+ * division with a remainder and integer modulo (engines round and pick signs differently), arithmetic on decimals
+ * (engines evaluate it either as doubles or as exact decimals), comparisons of strings (which depend on the collation
+ * and on whether trailing spaces count) and casts of which the result may depend on the engine, such as a boolean cast
+ * to a string or a string cast to a date, are left as they are. Subexpressions are only removed if they do not
+ * contain bind variables, aggregations or subqueries, since removing those would change the positions of the bind
+ * variables or whether the query aggregates.
+ */
+public class ConstantFolder extends AbstractQueryExpressionRewriter {
+
+  /**
+   * Also simplifies the constraints as a conjunction: constraints that fold to true are removed, and if a constraint
+   * folds to false then the other constraints are removed.
+   */
+  @Override
+  public GraphPattern rewrite(GraphPattern graphPattern) {
+    GraphPattern result = super.rewrite(graphPattern);
+    Set<QueryExpression> constraints = result.getConstraints();
+    LinkedHashSet<QueryExpression> newConstraints;
+    QueryExpression falseConstraint = constraints.stream().filter(ConstantFolder::isFalse).findFirst().orElse(null);
+    if (falseConstraint != null && constraints.size() > 1
+        && constraints.stream().allMatch(ConstantFolder::isRemovable)) {
+      newConstraints = new LinkedHashSet<>(Collections.singleton(falseConstraint));
+    } else if (constraints.stream().anyMatch(ConstantFolder::isTrue)) {
+      newConstraints = constraints.stream() //
+          .filter(constraint -> !isTrue(constraint)) //
+          .collect(Collectors.toCollection(LinkedHashSet::new));
+    } else {
+      return result;
+    }
+    return new GraphPattern(result.getVertices(), new LinkedHashSet<>(result.getConnections()), newConstraints);
+  }
+
+  @Override
+  protected QueryExpression rewriteExpression(QueryExpression exp) {
+    switch (exp.getExpType()) {
+      case ADD:
+      case SUB:
+      case MUL:
+      case DIV:
+      case MOD:
+        return foldArithmetic((BinaryExpression) exp);
+      case UMIN:
+        return foldUMin((UnaryExpression) exp);
+      case AND:
+        return simplifyAnd((BinaryExpression) exp);
+      case OR:
+        return simplifyOr((BinaryExpression) exp);
+      case NOT:
+        return simplifyNot((UnaryExpression) exp);
+      case EQUAL:
+      case NOT_EQUAL:
+      case GREATER:
+      case GREATER_EQUAL:
+      case LESS:
+      case LESS_EQUAL:
+        return foldComparison((BinaryExpression) exp);
+      case CONCAT:
+        return foldConcat((BinaryExpression) exp);
+      case IS_NULL:
+        return foldIsNull((IsNull) exp);
+      case IF_ELSE:
+        return simplifyIfElse((IfElse) exp);
+      case SIMPLE_CASE:
+        return simplifySimpleCase((SimpleCase) exp);
+      case CAST:
+        return foldCast((Cast) exp);
+      default:
+        return exp;
+    }
+  }
+
+  private static QueryExpression foldArithmetic(BinaryExpression exp) {
+    QueryExpression exp1 = exp.getExp1();
+    QueryExpression exp2 = exp.getExp2();
+    if (!isInteger(exp1) || !isInteger(exp2)) {
+      return exp; // engines evaluate decimals as doubles or exactly, e.g. 0.1 + 0.2 may or may not equal 0.3
+    }
+
+    long value1 = ((ConstInteger) exp1).getValue();
+    long value2 = ((ConstInteger) exp2).getValue();
+    long result;
+    try {
+      switch (exp.getExpType()) {
+        case ADD:
+          result = Math.addExact(value1, value2);
+          break;
+        case SUB:
+          result = Math.subtractExact(value1, value2);
+          break;
+        case MUL:
+          result = Math.multiplyExact(value1, value2);
+          break;
+        case DIV:
+          // only exact divisions, since engines may round the quotient differently
+          if (value2 == 0 || value1 % value2 != 0 || (value1 == Long.MIN_VALUE && value2 == -1)) {
+            return exp;
+          }
+          result = value1 / value2;
+          break;
+        case MOD:
+          return exp; // engines differ in the sign of the result for negative operands
+        default:
+          throw new IllegalArgumentException(exp.getExpType().toString());
+      }
+    } catch (ArithmeticException e) {
+      return exp; // overflow is left to the engine
+    }
+    if (fitsInt(value1) && fitsInt(value2) && !fitsInt(result)) {
+      return exp; // engines may evaluate this using 32-bit integers
+    }
+    return new ConstInteger(result);
+  }
+
+  private static QueryExpression foldUMin(UnaryExpression exp) {
+    QueryExpression operand = exp.getExp();
+    if (operand == null) {
+      return exp;
+    }
+    switch (operand.getExpType()) {
+      case INTEGER:
+        long value = ((ConstInteger) operand).getValue();
+        return value == Long.MIN_VALUE ? exp : new ConstInteger(-value);
+      case DECIMAL:
+        return new ConstDecimal(-((ConstDecimal) operand).getValue());
+      default:
+        return exp;
+    }
+  }
+
+  private static QueryExpression simplifyAnd(BinaryExpression exp) {
+    QueryExpression exp1 = exp.getExp1();
+    QueryExpression exp2 = exp.getExp2();
+    if (isFalse(exp1) && isRemovable(exp2)) {
+      return exp1; // false AND x is false, even if x is null
+    } else if (isFalse(exp2) && isRemovable(exp1)) {
+      return exp2;
+    } else if (isTrue(exp1) && exp2 != null) {
+      return exp2;
+    } else if (isTrue(exp2) && exp1 != null) {
+      return exp1;
+    }
+    return exp;
+  }
+
+  private static QueryExpression simplifyOr(BinaryExpression exp) {
+    QueryExpression exp1 = exp.getExp1();
+    QueryExpression exp2 = exp.getExp2();
+    if (isTrue(exp1) && isRemovable(exp2)) {
+      return exp1; // true OR x is true, even if x is null
+    } else if (isTrue(exp2) && isRemovable(exp1)) {
+      return exp2;
+    } else if (isFalse(exp1) && exp2 != null) {
+      return exp2;
+    } else if (isFalse(exp2) && exp1 != null) {
+      return exp1;
+    }
+    return exp;
+  }
+
+  private static QueryExpression simplifyNot(UnaryExpression exp) {
+    QueryExpression operand = exp.getExp();
+    if (operand == null) {
+      return exp;
+    } else if (operand.getExpType() == ExpressionType.BOOLEAN) {
+      return new ConstBoolean(!((ConstBoolean) operand).getValue());
+    } else if (operand.getExpType() == ExpressionType.NOT && ((UnaryExpression) operand).getExp() != null) {
+      return ((UnaryExpression) operand).getExp();
+    }
+    return exp;
+  }
+
+  private static QueryExpression foldComparison(BinaryExpression exp) {
+    ExpressionType expType = exp.getExpType();
+    boolean equality = expType == ExpressionType.EQUAL || expType == ExpressionType.NOT_EQUAL;
+    Integer comparison = compare(exp.getExp1(), exp.getExp2(), equality);
+    if (comparison == null) {
+      return exp;
+    }
+    switch (expType) {
+      case EQUAL:
+        return new ConstBoolean(comparison == 0);
+      case NOT_EQUAL:
+        return new ConstBoolean(comparison != 0);
+      case GREATER:
+        return new ConstBoolean(comparison > 0);
+      case GREATER_EQUAL:
+        return new ConstBoolean(comparison >= 0);
+      case LESS:
+        return new ConstBoolean(comparison < 0);
+      case LESS_EQUAL:
+        return new ConstBoolean(comparison <= 0);
+      default:
+        throw new IllegalArgumentException(expType.toString());
+    }
+  }
+
+  private static QueryExpression foldConcat(BinaryExpression exp) {
+    QueryExpression exp1 = exp.getExp1();
+    QueryExpression exp2 = exp.getExp2();
+    if (exp1 != null && exp2 != null && exp1.getExpType() == ExpressionType.STRING
+        && exp2.getExpType() == ExpressionType.STRING) {
+      return new ConstString(((ConstString) exp1).getValue() + ((ConstString) exp2).getValue());
+    }
+    return exp;
+  }
+
+  private static QueryExpression foldIsNull(IsNull exp) {
+    if (exp.getExp() == null) {
+      return new ConstBoolean(true); // NULL IS NULL
+    }
+    return isConstant(exp.getExp()) ? new ConstBoolean(false) : exp;
+  }
+
+  private static QueryExpression simplifyIfElse(IfElse exp) {
+    QueryExpression condition = exp.getExp1();
+    if (isTrue(condition) && exp.getExp2() != null && isRemovable(exp.getExp3())) {
+      return exp.getExp2();
+    } else if ((condition == null || isFalse(condition)) && exp.getExp3() != null && isRemovable(exp.getExp2())) {
+      return exp.getExp3(); // the ELSE is taken if the condition is false or null
+    }
+    return exp;
+  }
+
+  private static QueryExpression simplifySimpleCase(SimpleCase exp) {
+    List<WhenThenExpression> whenThenExps = exp.getWhenThenExps();
+    int match = -1;
+    for (int i = 0; i < whenThenExps.size() && match == -1; i++) {
+      Integer comparison = compare(exp.getCaseOperand(), whenThenExps.get(i).getWhen(), true);
+      if (comparison == null) {
+        return exp;
+      } else if (comparison == 0) {
+        match = i;
+      }
+    }
+
+    QueryExpression result = match == -1 ? exp.getElseExp() : whenThenExps.get(match).getThen();
+    if (result == null) {
+      return exp;
+    }
+    for (int i = 0; i < whenThenExps.size(); i++) {
+      if (i != match && (!isRemovable(whenThenExps.get(i).getWhen()) || !isRemovable(whenThenExps.get(i).getThen()))) {
+        return exp;
+      }
+    }
+    if (match != -1 && !isRemovable(exp.getElseExp())) {
+      return exp;
+    }
+    return result;
+  }
+
+  private static QueryExpression foldCast(Cast exp) {
+    QueryExpression operand = exp.getExp();
+    if (!isConstant(operand)) {
+      return exp;
+    }
+    ExpressionType operandType = operand.getExpType();
+    Object value = ((Constant<?>) operand).getValue();
+    switch (exp.getTargetTypeName().toUpperCase(Locale.ROOT)) {
+      case "STRING":
+        if (operandType == ExpressionType.STRING) {
+          return operand;
+        } else if (operandType == ExpressionType.INTEGER) {
+          return new ConstString(value.toString());
+        }
+        return exp; // e.g. engines spell booleans as true, TRUE or 1
+      case "BOOLEAN":
+        if (operandType == ExpressionType.BOOLEAN) {
+          return operand;
+        } else if (operandType == ExpressionType.STRING) {
+          String string = (String) value;
+          if (string.equalsIgnoreCase("true") || string.equalsIgnoreCase("false")) {
+            return new ConstBoolean(Boolean.parseBoolean(string));
+          }
+        }
+        return exp;
+      case "INTEGER":
+      case "INT": {
+        // only values that fit in 32 bits, since a literal outside that range may be typed as a LONG
+        Long integer = toInteger(operandType, value);
+        return integer != null && fitsInt(integer) ? new ConstInteger(integer) : exp;
+      }
+      case "LONG": {
+        // only values that do not fit in 32 bits, since a literal inside that range may be typed as an INTEGER
+        Long integer = toInteger(operandType, value);
+        return integer != null && !fitsInt(integer) ? new ConstInteger(integer) : exp;
+      }
+      case "DOUBLE":
+        if (operandType == ExpressionType.DECIMAL) {
+          return operand;
+        } else if (operandType == ExpressionType.INTEGER) {
+          return new ConstDecimal((Long) value);
+        }
+        return exp;
+      case "DATE":
+        // strings are not folded, since engines accept different date formats when casting a string to a date
+        return operandType == ExpressionType.DATE ? operand : exp;
+      default:
+        return exp;
+    }
+  }
+
+  private static Long toInteger(ExpressionType type, Object value) {
+    if (type == ExpressionType.INTEGER) {
+      return (Long) value;
+    } else if (type == ExpressionType.STRING) {
+      try {
+        return Long.parseLong((String) value);
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param equalityOnly
+   *          true if only equality needs to be decided, which is the case for = and <> and for CASE
+   * @return a negative number, zero or a positive number if the first literal is less than, equal to or greater than
+   *         the second literal; null if the expressions are not literals or cannot be compared the same way by every
+   *         engine
+   */
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  private static Integer compare(QueryExpression exp1, QueryExpression exp2, boolean equalityOnly) {
+    if (!isConstant(exp1) || !isConstant(exp2)) {
+      return null;
+    }
+    if (isNumeric(exp1) && isNumeric(exp2)) {
+      if (exp1.getExpType() == ExpressionType.INTEGER && exp2.getExpType() == ExpressionType.INTEGER) {
+        return Long.compare(((ConstInteger) exp1).getValue(), ((ConstInteger) exp2).getValue());
+      }
+      double value1 = doubleValue(exp1);
+      double value2 = doubleValue(exp2);
+      return value1 < value2 ? -1 : (value1 > value2 ? 1 : 0);
+    }
+    if (exp1.getExpType() != exp2.getExpType()) {
+      return null;
+    }
+    Object value1 = ((Constant<?>) exp1).getValue();
+    Object value2 = ((Constant<?>) exp2).getValue();
+    switch (exp1.getExpType()) {
+      case DATE:
+      case TIME:
+      case TIMESTAMP:
+        return ((Comparable) value1).compareTo(value2);
+      case BOOLEAN:
+        return equalityOnly ? (value1.equals(value2) ? 0 : 1) : null;
+      case STRING: // even equality depends on the collation and on whether trailing spaces are ignored
+      default:
+        return null;
+    }
+  }
+
+  private static boolean isConstant(QueryExpression exp) {
+    if (exp == null) {
+      return false;
+    }
+    switch (exp.getExpType()) {
+      case INTEGER:
+      case DECIMAL:
+      case STRING:
+      case BOOLEAN:
+      case DATE:
+      case TIME:
+      case TIMESTAMP:
+      case TIME_WITH_TIMEZONE:
+      case TIMESTAMP_WITH_TIMEZONE:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static boolean isInteger(QueryExpression exp) {
+    return exp != null && exp.getExpType() == ExpressionType.INTEGER;
+  }
+
+  private static boolean isNumeric(QueryExpression exp) {
+    return exp != null && (exp.getExpType() == ExpressionType.INTEGER || exp.getExpType() == ExpressionType.DECIMAL);
+  }
+
+  private static double doubleValue(QueryExpression exp) {
+    return ((Number) ((Constant<?>) exp).getValue()).doubleValue();
+  }
+
+  private static boolean fitsInt(long value) {
+    return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+  }
+
+  private static boolean isTrue(QueryExpression exp) {
+    return exp != null && exp.getExpType() == ExpressionType.BOOLEAN && ((ConstBoolean) exp).getValue();
+  }
+
+  private static boolean isFalse(QueryExpression exp) {
+    return exp != null && exp.getExpType() == ExpressionType.BOOLEAN && !((ConstBoolean) exp).getValue();
+  }
+
+  /**
+   * @return true if the expression may be removed from the query without changing the bind variables or whether the
+   *         query aggregates
+   */
+  private static boolean isRemovable(QueryExpression exp) {
+    RemovabilityCheck check = new RemovabilityCheck();
+    check.rewrite(exp);
+    return check.removable;
+  }
+
+  private static class RemovabilityCheck extends AbstractQueryExpressionRewriter {
+
+    private boolean removable = true;
+
+    @Override
+    protected QueryExpression rewriteExpression(QueryExpression exp) {
+      switch (exp.getExpType()) {
+        case BIND_VARIABLE:
+        case AGGR_COUNT:
+        case AGGR_MIN:
+        case AGGR_MAX:
+        case AGGR_SUM:
+        case AGGR_AVG:
+        case AGGR_ARRAY_AGG:
+        case AGGR_LISTAGG:
+        case EXISTS:
+        case SCALAR_SUBQUERY:
+          removable = false;
+          break;
+        default:
+          break;
+      }
+      return exp;
+    }
+  }
+}
@@ -18,11 +18,15 @@ cd graph-query-ir/; mvn clean install; cd ../
 
 cd pgql-lang/
 mkdir -p src/main/resources/
-rm -f src/main/resources/*.spoofax-language # remove any spoofax binaries from previous builds
+rm -f src/main/resources/*.spoofax-language src/main/resources/*.spoofax-language.sha256 # remove any spoofax binaries from previous builds
 cp ../pgql-spoofax/target/pgqllang-1.3.0-SNAPSHOT.spoofax-language src/main/resources/pgql.spoofax-language
+# the digest lets PGQL find its cached copy of the binary at startup without reading the binary from the jar
+(sha256sum src/main/resources/pgql.spoofax-language || shasum -a 256 src/main/resources/pgql.spoofax-language) | cut -d ' ' -f 1 > src/main/resources/pgql.spoofax-language.sha256
 mvn clean install
 cd ../
 
+cd pgql-benchmarks/; mvn clean package; cd ../
+
 cd pgql-tests/
 mvn test
 cd spring-boot-app/
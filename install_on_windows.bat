@@ -6,6 +6,7 @@ call mvn clean install
 
 cd ..\pgql-lang
 mkdir src\main\resources\
+if exist src\main\resources\pgql.spoofax-language.sha256 del src\main\resources\pgql.spoofax-language.sha256
 copy ..\pgql-spoofax\target\pgqllang-1.3.0-SNAPSHOT.spoofax-language src\main\resources\pgql.spoofax-language
 call mvn clean install
 
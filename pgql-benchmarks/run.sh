@@ -0,0 +1,8 @@
+#!/bin/bash
+
+# usage: bash run.sh [JMH options], e.g. bash run.sh QueryFileBenchmark -prof gc
+
+set -e
+
+mvn clean package
+java -jar target/benchmarks.jar "$@"
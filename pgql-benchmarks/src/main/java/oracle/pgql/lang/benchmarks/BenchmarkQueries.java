@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang.benchmarks;
+
+/**
+ * The queries that the benchmarks run on, by size.
+ */
+public class BenchmarkQueries {
+
+  public static final String SMALL = "SELECT n.name FROM MATCH (n:Person) WHERE n.age > 25";
+
+  public static final String MEDIUM = "" //
+      + "SELECT p.name AS name, COUNT(DISTINCT f) AS numFriends, AVG(f.age) AS avgAge\n" //
+      + "  FROM MATCH (p:Person) -[:knows]-> (f:Person) -[:livesIn]-> (c:City)\n" //
+      + "     , MATCH (p) -[e:worksFor]-> (o:Organization)\n" //
+      + " WHERE p.age >= 18 AND f.name <> 'Bob' AND c.name = 'Amsterdam' AND e.since < DATE '2018-01-01'\n" //
+      + " GROUP BY p.name\n" //
+      + "HAVING COUNT(*) > 2\n" //
+      + " ORDER BY numFriends DESC, name\n" //
+      + " LIMIT 10";
+
+  /**
+   * A query with many patterns and predicates, like the ones that are generated by tools.
+   */
+  public static final String HUGE = createHugeQuery(100);
+
+  /**
+   * Like the huge query, but with hundreds of vertex and edge variables, for measuring the cost per variable.
+   */
+  public static final String MANY_VARIABLES = createHugeQuery(300);
+
+  public static String get(String size) {
+    switch (size) {
+      case "small":
+        return SMALL;
+      case "medium":
+        return MEDIUM;
+      case "huge":
+        return HUGE;
+      case "many-variables":
+        return MANY_VARIABLES;
+      default:
+        throw new IllegalArgumentException("Unknown query size: " + size);
+    }
+  }
+
+  private static String createHugeQuery(int numPatterns) {
+    StringBuilder select = new StringBuilder("SELECT v0.name");
+    StringBuilder match = new StringBuilder(" FROM MATCH (v0:Person)");
+    StringBuilder where = new StringBuilder(" WHERE v0.age > 0");
+    for (int i = 1; i <= numPatterns; i++) {
+      select.append(", v").append(i).append(".name AS name").append(i);
+      match.append(" -[e").append(i).append(":knows]-> (v").append(i).append(":Person)");
+      where.append(" AND v").append(i).append(".age > ").append(i) //
+          .append(" AND e").append(i).append(".weight < ").append(i).append(".5") //
+          .append(" AND v").append(i).append(".name <> 'name").append(i).append("'");
+    }
+    return select.toString() + match + where + " ORDER BY v0.name LIMIT 100";
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import oracle.pgql.lang.Pgql;
+import oracle.pgql.lang.PgqlResult;
+
+/**
+ * Measures {@link Pgql#parse(String)} on INSERT statements that load a graph, with 1k, 10k and 100k insertions, when
+ * parsed in chunks (see {@link Pgql#setBulkInsertThreshold(int)}) and when parsed as a whole. Parsing the largest
+ * statement as a whole takes very long; exclude it with {@code -p insertions=1000,10000}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class BulkInsertBenchmark {
+
+  @Param({ "1000", "10000", "100000" })
+  public int insertions;
+
+  @Param({ "chunks", "whole" })
+  public String parseIn;
+
+  private Pgql pgql;
+
+  private String insert;
+
+  @Setup
+  public void setUp() throws Exception {
+    pgql = new Pgql();
+    pgql.setBulkInsertThreshold(parseIn.equals("chunks") ? 1 : 0);
+    insert = createInsert(insertions);
+  }
+
+  @TearDown
+  public void tearDown() {
+    pgql.close();
+  }
+
+  @Benchmark
+  public PgqlResult parse() throws Exception {
+    PgqlResult result = pgql.parse(insert);
+    if (!result.isQueryValid()) {
+      throw new IllegalStateException(result.getErrorMessages());
+    }
+    return result;
+  }
+
+  /**
+   * @return an INSERT statement with about as many vertex insertions as edge insertions, where each edge connects two
+   *         consecutive vertices with an even index
+   */
+  private static String createInsert(int numInsertions) {
+    StringBuilder insert = new StringBuilder("INSERT INTO g ");
+    for (int i = 0; i < numInsertions; i++) {
+      if (i > 0) {
+        insert.append(",\n  ");
+      }
+      if (i % 2 == 0 || i == 1) {
+        insert.append("VERTEX v").append(i).append(" LABELS (Person) PROPERTIES (v").append(i)
+            .append(".name = 'Person ").append(i).append("', v").append(i).append(".age = ").append(i % 100)
+            .append(")");
+      } else {
+        insert.append("EDGE e").append(i).append(" BETWEEN v").append(i - 3).append(" AND v").append(i - 1)
+            .append(" LABELS (knows) PROPERTIES (e").append(i).append(".since = DATE '2000-01-01')");
+      }
+    }
+    return insert.toString();
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang.benchmarks;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import oracle.pgql.lang.Pgql;
+import oracle.pgql.lang.PgqlResult;
+import oracle.pgql.lang.completion.PgqlCompletionGenerator;
+import oracle.pgql.lang.editor.completion.PgqlCompletion;
+import oracle.pgql.lang.editor.completion.PgqlCompletionContext;
+
+/**
+ * Measures {@link PgqlCompletionGenerator#generate}, which is the part of {@link Pgql#complete} that runs after the
+ * query is parsed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompletionBenchmark {
+
+  /**
+   * The query to complete; the cursor is at the "???".
+   */
+  @Param({ "???", //
+      "SELECT n.??? FROM MATCH (n:Person)", //
+      "SELECT n FROM MATCH (n:???)", //
+      "SELECT n.name FROM MATCH (n:Person) -[e:knows]-> (m) WHERE ???" })
+  public String query;
+
+  private PgqlResult pgqlResult;
+
+  private String queryString;
+
+  private int cursor;
+
+  private PgqlCompletionContext ctx;
+
+  @Setup
+  public void setUp() throws Exception {
+    cursor = query.indexOf("???");
+    queryString = query.replace("???", "");
+    try (Pgql pgql = new Pgql()) {
+      pgqlResult = pgql.parse(queryString);
+    }
+    ctx = new PgqlCompletionContext() {
+
+      @Override
+      public List<String> getGraphNames() {
+        return Arrays.asList("financial_transactions", "social_network");
+      }
+
+      @Override
+      public List<String> getVertexProperties(String graphName) {
+        return Arrays.asList("name", "age", "city", "email", "since");
+      }
+
+      @Override
+      public List<String> getEdgeProperties(String graphName) {
+        return Arrays.asList("weight", "since", "amount");
+      }
+
+      @Override
+      public List<String> getVertexLabels(String graphName) {
+        return Arrays.asList("Person", "Account", "Company", "City");
+      }
+
+      @Override
+      public List<String> getEdgeLabels(String graphName) {
+        return Arrays.asList("knows", "owns", "transaction", "livesIn", "worksFor");
+      }
+    };
+  }
+
+  @Benchmark
+  public List<PgqlCompletion> generate() throws Exception {
+    return PgqlCompletionGenerator.generate(pgqlResult, null, queryString, cursor, ctx);
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import oracle.pgql.lang.Pgql;
+import oracle.pgql.lang.PgqlResult;
+
+/**
+ * Measures the throughput of {@link Pgql#parse(String)} when it is called from multiple threads at the same time, with
+ * different numbers of parsers in the pool. Use JMH's -t option to change the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ConcurrentParseBenchmark {
+
+  @Param({ "1", "4" })
+  public int parsers;
+
+  @Param({ "small", "medium" })
+  public String size;
+
+  private Pgql pgql;
+
+  private String query;
+
+  @Setup
+  public void setUp() throws Exception {
+    pgql = new Pgql(parsers);
+    query = BenchmarkQueries.get(size);
+  }
+
+  @TearDown
+  public void tearDown() {
+    pgql.close();
+  }
+
+  @Benchmark
+  public PgqlResult parse() throws Exception {
+    return pgql.parse(query);
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import oracle.pgql.lang.Pgql;
+import oracle.pgql.lang.PgqlResult;
+
+/**
+ * Measures {@link Pgql#parse(String)}, which includes parsing, analysis and translation, on queries of different sizes,
+ * with and without the fast path for common queries (see {@link Pgql#setFastPathParsing(boolean)}). The medium query
+ * has a GROUP BY and is always parsed by Spoofax, so with the fast path it measures the cost of falling back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParseBenchmark {
+
+  @Param({ "small", "medium", "huge" })
+  public String size;
+
+  @Param({ "false", "true" })
+  public boolean fastPath;
+
+  private Pgql pgql;
+
+  private String query;
+
+  @Setup
+  public void setUp() throws Exception {
+    pgql = new Pgql();
+    pgql.setFastPathParsing(fastPath);
+    query = BenchmarkQueries.get(size);
+    PgqlResult result = pgql.parse(query);
+    if (!result.isQueryValid()) {
+      throw new IllegalStateException(result.getErrorMessages());
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    pgql.close();
+  }
+
+  @Benchmark
+  public PgqlResult parse() throws Exception {
+    return pgql.parse(query);
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import oracle.pgql.lang.Pgql;
+import oracle.pgql.lang.ir.GraphQuery;
+
+/**
+ * Measures pretty-printing of a {@link GraphQuery} back into a PGQL query string, through {@link GraphQuery#toString()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrettyPrintBenchmark {
+
+  @Param({ "small", "medium", "huge" })
+  public String size;
+
+  private GraphQuery graphQuery;
+
+  @Setup
+  public void setUp() throws Exception {
+    try (Pgql pgql = new Pgql()) {
+      graphQuery = pgql.parse(BenchmarkQueries.get(size)).getGraphQuery();
+    }
+  }
+
+  @Benchmark
+  public String prettyPrint() {
+    return graphQuery.toString();
+  }
+}
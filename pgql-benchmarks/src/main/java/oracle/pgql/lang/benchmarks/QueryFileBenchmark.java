@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang.benchmarks;
+
+import java.io.OutputStream;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.VFS;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import oracle.pgql.lang.Pgql;
+import oracle.pgql.lang.PgqlResult;
+
+/**
+ * Measures the per-query cost of the temporary ram:// file that parsing used to write and delete for every query,
+ * next to the cost of parsing a small query, which no longer includes it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryFileBenchmark {
+
+  private static final String QUERY = "SELECT n.name FROM MATCH (n:Person) -[e:knows]-> (m:Person) WHERE n.age > 25";
+
+  private Pgql pgql;
+
+  private FileObject queryDir;
+
+  @Setup
+  public void setUp() throws Exception {
+    pgql = new Pgql();
+    queryDir = VFS.getManager().resolveFile("ram://pgql-benchmark/");
+  }
+
+  @TearDown
+  public void tearDown() {
+    pgql.close();
+  }
+
+  /**
+   * The work that was removed from the parse path: create a uniquely named file, write the query to it, delete it.
+   */
+  @Benchmark
+  public FileObject writeAndDeleteQueryFile() throws Exception {
+    FileObject queryFile = queryDir.resolveFile(UUID.randomUUID().toString() + ".pgql");
+    try (OutputStream out = queryFile.getContent().getOutputStream()) {
+      IOUtils.write(QUERY.getBytes("UTF-8"), out);
+    }
+    queryFile.delete();
+    return queryFile;
+  }
+
+  @Benchmark
+  public PgqlResult parse() throws Exception {
+    return pgql.parse(QUERY);
+  }
+}
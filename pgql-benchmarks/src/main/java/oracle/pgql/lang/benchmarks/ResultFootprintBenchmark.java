@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import oracle.pgql.lang.Pgql;
+import oracle.pgql.lang.PgqlResult;
+
+/**
+ * Measures the heap that is retained by parse results, with and without compaction (see
+ * {@link Pgql#setCompactResults(boolean)}). Every invocation parses a number of queries, holds on to the results and
+ * reports the growth of the used heap after a full garbage collection, per result, as the {@code bytesPerResult}
+ * counter. The reported time includes the garbage collections and is only meant as a sanity check.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ResultFootprintBenchmark {
+
+  @Param({ "full", "compact" })
+  public String mode;
+
+  @Param({ "small", "medium", "huge" })
+  public String size;
+
+  @Param({ "1000" })
+  public int numResults;
+
+  private Pgql pgql;
+
+  private String query;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Footprint {
+
+    public long bytesPerResult;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      bytesPerResult = 0;
+    }
+  }
+
+  @Setup
+  public void setUp() throws Exception {
+    pgql = new Pgql();
+    pgql.setCompactResults(mode.equals("compact"));
+    query = BenchmarkQueries.get(size);
+  }
+
+  @TearDown
+  public void tearDown() {
+    pgql.close();
+  }
+
+  @Benchmark
+  public List<PgqlResult> retainResults(Footprint footprint) throws Exception {
+    long usedHeapBefore = getUsedHeapAfterGc();
+    List<PgqlResult> results = new ArrayList<>(numResults);
+    for (int i = 0; i < numResults; i++) {
+      results.add(pgql.parse(query));
+    }
+    footprint.bytesPerResult = (getUsedHeapAfterGc() - usedHeapBefore) / numResults;
+    return results;
+  }
+
+  private static long getUsedHeapAfterGc() {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    for (int i = 0; i < 3; i++) {
+      memory.gc();
+    }
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+}
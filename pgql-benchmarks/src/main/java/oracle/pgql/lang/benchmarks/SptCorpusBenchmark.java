@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang.benchmarks;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import oracle.pgql.lang.Pgql;
+import oracle.pgql.lang.PgqlException;
+import oracle.pgql.lang.PgqlResult;
+import oracle.pgql.lang.SptCorpus;
+import oracle.pgql.lang.SptCorpus.SptTest;
+
+/**
+ * Replays all the queries of the Spoofax tests in pgql-tests through {@link Pgql#parse(String)}, one query per
+ * operation, both from a single thread and from multiple threads. Throughput mode reports queries per millisecond and
+ * sample time mode reports the latency distribution, including the p50, p99 and p999.
+ *
+ * By default, the tests are read from ../pgql-tests, which works when the benchmarks are run from the pgql-benchmarks
+ * directory. Use -p corpusDir=... to read them from somewhere else.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SptCorpusBenchmark {
+
+  private static final int NUM_PARSERS = 4;
+
+  @Param("../pgql-tests")
+  public String corpusDir;
+
+  private Pgql pgql;
+
+  private String[] queries;
+
+  private final AtomicInteger threadCount = new AtomicInteger();
+
+  /**
+   * The position of a thread in the corpus. Threads start at different positions so that they do not all parse the
+   * same query at the same time.
+   */
+  @State(Scope.Thread)
+  public static class Cursor {
+
+    private int next;
+
+    @Setup
+    public void setUp(SptCorpusBenchmark benchmark) {
+      int numQueries = benchmark.queries.length;
+      next = (int) ((long) benchmark.threadCount.getAndIncrement() * numQueries / NUM_PARSERS % numQueries);
+    }
+  }
+
+  @Setup
+  public void setUp() throws Exception {
+    pgql = new Pgql(NUM_PARSERS);
+    List<String> parseableQueries = new ArrayList<>();
+    for (SptTest test : SptCorpus.load(Paths.get(corpusDir))) {
+      String query = test.getQuery();
+      try {
+        pgql.parse(query);
+        parseableQueries.add(query);
+      } catch (PgqlException e) {
+        // leave out the few queries for which Spoofax fails instead of reporting errors
+      }
+    }
+    queries = parseableQueries.toArray(new String[0]);
+  }
+
+  @TearDown
+  public void tearDown() {
+    pgql.close();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public PgqlResult singleThreaded(Cursor cursor) throws Exception {
+    return pgql.parse(nextQuery(cursor));
+  }
+
+  @Benchmark
+  @Threads(NUM_PARSERS)
+  public PgqlResult concurrent(Cursor cursor) throws Exception {
+    return pgql.parse(nextQuery(cursor));
+  }
+
+  private String nextQuery(Cursor cursor) {
+    String query = queries[cursor.next];
+    cursor.next = (cursor.next + 1) % queries.length;
+    return query;
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang.benchmarks;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.metaborg.spoofax.core.SpoofaxModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import oracle.pgql.lang.Pgql;
+import oracle.pgql.lang.PgqlException;
+import oracle.pgql.lang.PgqlResult;
+
+/**
+ * Measures the time it takes a new JVM to initialize PGQL. Every fork measures exactly one initialization, so the
+ * numbers include class loading and JIT warm-up, just like the start of a short-lived process.
+ *
+ * With {@code cache=cold}, the Spoofax binary is extracted to an empty directory, like on the very first start. With
+ * {@code cache=warm}, the binary that was extracted by an earlier fork is reused; the warm-up fork populates it.
+ *
+ * {@link #firstParse()} measures the time to the first parse, which also includes parsing a query on the new instance.
+ * To see what the build-time digest of the binary saves, run it with {@code cache=warm} against a pgql-lang jar with
+ * and without pgql.spoofax-language.sha256.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 10, warmups = 1)
+public class StartupBenchmark {
+
+  @Param({ "cold", "warm" })
+  public String cache;
+
+  private File tmpDir;
+
+  private Pgql pgql;
+
+  @Setup
+  public void setUp() throws Exception {
+    if (cache.equals("cold")) {
+      tmpDir = Files.createTempDirectory("pgql-startup-cold").toFile();
+    } else {
+      tmpDir = new File(System.getProperty("java.io.tmpdir"), "pgql-startup-warm");
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    if (pgql != null) {
+      pgql.close();
+    }
+    if (cache.equals("cold")) {
+      FileUtils.deleteDirectory(tmpDir);
+    }
+  }
+
+  @Benchmark
+  public Pgql initialize() throws PgqlException {
+    pgql = new Pgql(new SpoofaxModule(), tmpDir.getAbsolutePath());
+    return pgql;
+  }
+
+  @Benchmark
+  public PgqlResult firstParse() throws PgqlException {
+    pgql = new Pgql(new SpoofaxModule(), tmpDir.getAbsolutePath());
+    return pgql.parse(BenchmarkQueries.SMALL);
+  }
+}
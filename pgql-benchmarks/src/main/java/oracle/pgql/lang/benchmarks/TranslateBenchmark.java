@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import oracle.pgql.lang.ParseMetrics;
+import oracle.pgql.lang.Pgql;
+import oracle.pgql.lang.PgqlResult;
+
+/**
+ * Measures the translation of the analyzed Spoofax AST into a PgqlStatement, including a query with hundreds of
+ * variables. The translation cannot be called on its own through the public API, so the benchmark parses the query and
+ * takes the translation time from the {@link ParseMetrics} of every parse. The score is the time of the whole parse;
+ * the average translation time is printed at the end of every iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TranslateBenchmark {
+
+  @Param({ "small", "medium", "huge", "many-variables" })
+  public String size;
+
+  private Pgql pgql;
+
+  private String query;
+
+  private long numParses;
+
+  private long translationNanos;
+
+  private long totalNanos;
+
+  @Setup
+  public void setUp() throws Exception {
+    pgql = new Pgql();
+    pgql.addParseListener(this::queryParsed);
+    query = BenchmarkQueries.get(size);
+    PgqlResult result = pgql.parse(query);
+    if (!result.isQueryValid()) {
+      throw new IllegalStateException(result.getErrorMessages());
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    pgql.close();
+  }
+
+  @Setup(Level.Iteration)
+  public void resetMetrics() {
+    numParses = 0;
+    translationNanos = 0;
+    totalNanos = 0;
+  }
+
+  @TearDown(Level.Iteration)
+  public void printMetrics() {
+    if (numParses > 0) {
+      System.out.printf("translation: %.3f us/op of %.3f us/op%n", translationNanos / 1000.0 / numParses,
+          totalNanos / 1000.0 / numParses);
+    }
+  }
+
+  @Benchmark
+  public PgqlResult parse() throws Exception {
+    return pgql.parse(query);
+  }
+
+  /**
+   * Called on the benchmark thread, since the parse cache is disabled and queries are parsed synchronously.
+   */
+  private void queryParsed(ParseMetrics metrics) {
+    numParses++;
+    translationNanos += metrics.getTranslationNanos();
+    totalNanos += metrics.getTotalNanos();
+  }
+}
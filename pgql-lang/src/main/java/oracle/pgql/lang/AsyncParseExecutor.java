@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs parse tasks on a fixed number of threads with a bounded queue. Tasks that are submitted while the queue is full
+ * are rejected instead of blocking the caller.
+ */
+class AsyncParseExecutor {
+
+  private static final AtomicInteger executorCount = new AtomicInteger();
+
+  interface ParseTask<T> {
+
+    T run() throws PgqlException;
+  }
+
+  private final ThreadPoolExecutor executor;
+
+  private final int queueCapacity;
+
+  private final AtomicLong rejectedCount = new AtomicLong();
+
+  AsyncParseExecutor(int numThreads, int queueCapacity) {
+    if (queueCapacity < 1) {
+      throw new IllegalArgumentException("Queue capacity should be at least 1 but was " + queueCapacity);
+    }
+    this.queueCapacity = queueCapacity;
+    String threadNamePrefix = "pgql-parser-" + executorCount.incrementAndGet() + "-";
+    AtomicInteger threadCount = new AtomicInteger();
+    ThreadFactory threadFactory = runnable -> {
+      Thread thread = new Thread(runnable, threadNamePrefix + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+    executor = new ThreadPoolExecutor(numThreads, numThreads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+  }
+
+  /**
+   * @return a future that completes with the result of the task, or that completes exceptionally with a
+   *         {@link PgqlException} if the task failed or if the queue was full
+   */
+  <T> CompletableFuture<T> submit(ParseTask<T> task) {
+    CompletableFuture<T> future = new CompletableFuture<>();
+    try {
+      executor.execute(new FutureRunnable<>(task, future));
+    } catch (RejectedExecutionException e) {
+      rejectedCount.incrementAndGet();
+      String message = executor.isShutdown() ? "Pgql instance was closed"
+          : "Too many queries waiting to be parsed (queue capacity is " + queueCapacity + ")";
+      future.completeExceptionally(new PgqlException(message, e));
+    }
+    return future;
+  }
+
+  int getQueueDepth() {
+    return executor.getQueue().size();
+  }
+
+  long getRejectedCount() {
+    return rejectedCount.get();
+  }
+
+  /**
+   * Stops accepting new tasks. Tasks that were already submitted are still run.
+   */
+  void shutdownGracefully() {
+    executor.shutdown();
+  }
+
+  /**
+   * Stops accepting new tasks and fails the tasks that did not start yet. Tasks that are running are not interrupted.
+   */
+  void shutdown() {
+    executor.shutdown();
+    List<Runnable> queuedTasks = new ArrayList<>();
+    executor.getQueue().drainTo(queuedTasks);
+    for (Runnable queuedTask : queuedTasks) {
+      ((FutureRunnable<?>) queuedTask).future.completeExceptionally(new PgqlException("Pgql instance was closed"));
+    }
+  }
+
+  private static class FutureRunnable<T> implements Runnable {
+
+    private final ParseTask<T> task;
+
+    private final CompletableFuture<T> future;
+
+    FutureRunnable(ParseTask<T> task, CompletableFuture<T> future) {
+      this.task = task;
+      this.future = future;
+    }
+
+    @Override
+    public void run() {
+      try {
+        future.complete(task.run());
+      } catch (Throwable t) {
+        future.completeExceptionally(t);
+      }
+    }
+  }
+}
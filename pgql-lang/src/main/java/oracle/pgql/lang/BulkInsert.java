@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import oracle.pgql.lang.PgqlLexer.TokenKind;
+import oracle.pgql.lang.ir.QueryEdge;
+import oracle.pgql.lang.ir.QueryExpression.PropertyAccess;
+import oracle.pgql.lang.ir.QueryExpression.VarRef;
+import oracle.pgql.lang.ir.QueryVariable;
+import oracle.pgql.lang.ir.QueryVertex;
+import oracle.pgql.lang.ir.SchemaQualifiedName;
+import oracle.pgql.lang.ir.modify.EdgeInsertion;
+import oracle.pgql.lang.ir.modify.InsertClause;
+import oracle.pgql.lang.ir.modify.Insertion;
+import oracle.pgql.lang.ir.modify.Modification;
+import oracle.pgql.lang.ir.modify.ModifyQuery;
+import oracle.pgql.lang.ir.modify.VertexInsertion;
+import oracle.pgql.lang.util.AbstractQueryExpressionVisitor;
+
+/**
+ * A large INSERT statement, such as the ones that are generated to load a graph, split into chunks of insertions.
+ *
+ * The time it takes Spoofax to parse and analyze a statement grows faster than linearly with the size of the
+ * statement, so instead of parsing one huge statement, each chunk of insertions is parsed as a statement of its own and
+ * the insertions of all the chunks are merged into a single query afterwards. Insertions may refer to variables that are
+ * inserted in other chunks (e.g. the source vertex of an edge); such variables are bound through a MATCH in the chunk
+ * that refers to them, and the references are pointed to the inserted variables again when merging.
+ *
+ * Only statements that consist of a single INSERT clause without FROM clause and without bind variables are split.
+ * Statements with variables that are inserted twice or that refer to variables that are not inserted by the statement
+ * are not split either, so that the regular parser reports the errors.
+ */
+class BulkInsert {
+
+  private static final Set<String> OTHER_CLAUSES = new HashSet<>(Arrays.asList("SELECT", "INSERT", "UPDATE", "DELETE",
+      "FROM", "WHERE", "GROUP", "HAVING", "ORDER", "LIMIT", "OFFSET"));
+
+  private final String queryString;
+
+  private final String intoClause;
+
+  private final List<InsertionText> insertions;
+
+  /**
+   * The text of each inserted variable, by normalized name.
+   */
+  private final Map<String, String> insertedVariables;
+
+  private BulkInsert(String queryString, String intoClause, List<InsertionText> insertions,
+      Map<String, String> insertedVariables) {
+    this.queryString = queryString;
+    this.intoClause = intoClause;
+    this.insertions = insertions;
+    this.insertedVariables = insertedVariables;
+  }
+
+  /**
+   * @param minInsertions
+   *          the minimum number of insertions for the statement to be split
+   * @return the split statement, or null if the query is not an INSERT statement that can be split or if it has less
+   *         than minInsertions insertions
+   */
+  static BulkInsert fromQuery(String queryString, int minInsertions) {
+    PgqlLexer lexer = new PgqlLexer(queryString);
+    if (!nextNonLayout(lexer) || !isKeyword(lexer, "INSERT") || !nextNonLayout(lexer)) {
+      return null;
+    }
+
+    String intoClause = null;
+    if (isKeyword(lexer, "INTO")) {
+      int intoStart = lexer.getStart();
+      while (!isKeyword(lexer, "VERTEX") && !isKeyword(lexer, "EDGE")) {
+        if (!nextNonLayout(lexer)) {
+          return null;
+        }
+      }
+      intoClause = queryString.substring(intoStart, lexer.getStart()).trim();
+    }
+
+    List<InsertionText> insertions = new ArrayList<>();
+    Map<String, String> insertedVariables = new HashMap<>();
+    Set<String> vertices = new HashSet<>();
+    Set<String> references = new HashSet<>();
+    Set<String> endpoints = new HashSet<>();
+    InsertionText insertion = null;
+    int depth = 0;
+    int positionInInsertion = 0;
+    String previousKeyword = null;
+    String previousIdentifier = null;
+    do {
+      TokenKind kind = lexer.getKind();
+      if (kind == TokenKind.BIND_VARIABLE || kind == TokenKind.SINGLE_LINE_COMMENT) {
+        return null;
+      }
+      if (lexer.isLayout()) {
+        continue;
+      }
+
+      if (insertion == null) { // first token of an insertion
+        boolean isVertex = isKeyword(lexer, "VERTEX");
+        if (!isVertex && !isKeyword(lexer, "EDGE")) {
+          return null;
+        }
+        insertion = new InsertionText(lexer.getStart(), isVertex);
+        positionInInsertion = 0;
+      }
+
+      String identifier = isIdentifier(kind) ? normalize(lexer) : null;
+      if (positionInInsertion == 1) { // the inserted variable
+        if (identifier == null || insertedVariables.put(identifier, lexer.getText()) != null) {
+          return null;
+        }
+        insertion.name = identifier;
+        if (insertion.isVertex) {
+          vertices.add(identifier);
+        }
+      } else if (kind == TokenKind.SYMBOL) {
+        char c = lexer.getFirstChar();
+        if (c == '(') {
+          depth++;
+        } else if (c == ')') {
+          depth--;
+        } else if (c == '.' && previousIdentifier != null) {
+          insertion.references.add(previousIdentifier); // property access
+          references.add(previousIdentifier);
+        } else if (c == ',' && depth == 0) {
+          insertion.end = lexer.getStart();
+          insertions.add(insertion);
+          insertion = null;
+        }
+      } else if (depth == 0 && identifier != null) {
+        if (kind == TokenKind.REGULAR_IDENTIFIER && OTHER_CLAUSES.contains(identifier)) {
+          return null;
+        }
+        if (!insertion.isVertex && ("BETWEEN".equals(previousKeyword) || "AND".equals(previousKeyword))) {
+          insertion.references.add(identifier); // source or destination of an edge
+          endpoints.add(identifier);
+        }
+      }
+
+      previousKeyword = kind == TokenKind.REGULAR_IDENTIFIER ? identifier : null;
+      previousIdentifier = identifier;
+      positionInInsertion++;
+    } while (lexer.next());
+
+    if (insertion == null) {
+      return null; // trailing comma
+    }
+    insertion.end = queryString.length();
+    insertions.add(insertion);
+
+    if (insertions.size() < minInsertions || !vertices.containsAll(endpoints)
+        || !insertedVariables.keySet().containsAll(references)) {
+      return null;
+    }
+    return new BulkInsert(queryString, intoClause, insertions, insertedVariables);
+  }
+
+  /**
+   * @return the INTO clause of the statement, or null if it has none
+   */
+  String getIntoClause() {
+    return intoClause;
+  }
+
+  int getNumInsertions() {
+    return insertions.size();
+  }
+
+  /**
+   * @return INSERT statements without INTO clause that together insert the same variables as the original statement,
+   *         with at most chunkSize insertions each
+   */
+  List<String> getChunkStatements(int chunkSize) {
+    List<String> statements = new ArrayList<>();
+    for (int chunkStart = 0; chunkStart < insertions.size(); chunkStart += chunkSize) {
+      List<InsertionText> chunk = insertions.subList(chunkStart, Math.min(chunkStart + chunkSize, insertions.size()));
+      StringBuilder statement = new StringBuilder("INSERT ");
+      Set<String> insertedInChunk = new HashSet<>();
+      Map<String, String> matchedInChunk = new LinkedHashMap<>();
+      for (int i = 0; i < chunk.size(); i++) {
+        InsertionText insertion = chunk.get(i);
+        if (i > 0) {
+          statement.append(", ");
+        }
+        statement.append(queryString, insertion.start, insertion.end);
+        insertedInChunk.add(insertion.name);
+      }
+      for (InsertionText insertion : chunk) {
+        for (String reference : insertion.references) {
+          if (!insertedInChunk.contains(reference)) {
+            matchedInChunk.put(reference, insertedVariables.get(reference));
+          }
+        }
+      }
+      String separator = " FROM ";
+      for (String variable : matchedInChunk.values()) {
+        statement.append(separator).append("MATCH (").append(variable).append(")");
+        separator = ", ";
+      }
+      statements.add(statement.toString());
+    }
+    return statements;
+  }
+
+  /**
+   * Merges the queries that resulted from parsing the chunks (see {@link #getChunkStatements(int)}) into a single
+   * query with a single INSERT clause. The first chunk query is reused for the result.
+   */
+  static ModifyQuery merge(List<ModifyQuery> chunkQueries, SchemaQualifiedName graphName) {
+    List<Insertion> insertions = new ArrayList<>();
+    Map<String, QueryVariable> insertedVariables = new HashMap<>();
+    for (ModifyQuery chunkQuery : chunkQueries) {
+      InsertClause insertClause = (InsertClause) chunkQuery.getModifications().get(0);
+      for (Insertion insertion : insertClause.getInsertions()) {
+        insertions.add(insertion);
+        if (insertion instanceof VertexInsertion) {
+          QueryVertex vertex = ((VertexInsertion) insertion).getVertex();
+          insertedVariables.put(vertex.getName(), vertex);
+        } else {
+          QueryEdge edge = ((EdgeInsertion) insertion).getEdge();
+          insertedVariables.put(edge.getName(), edge);
+        }
+      }
+    }
+
+    // point the references to variables that were matched in a chunk to the inserted variables
+    AbstractQueryExpressionVisitor referenceVisitor = new AbstractQueryExpressionVisitor() {
+
+      @Override
+      public void visit(VarRef varRef) {
+        varRef.setVariable(insertedVariables.getOrDefault(varRef.getVariable().getName(), varRef.getVariable()));
+      }
+
+      @Override
+      public void visit(PropertyAccess propAccess) {
+        QueryVariable variable = propAccess.getVariable();
+        propAccess.setVariable(insertedVariables.getOrDefault(variable.getName(), variable));
+      }
+    };
+    for (Insertion insertion : insertions) {
+      if (insertion instanceof EdgeInsertion) {
+        QueryEdge edge = ((EdgeInsertion) insertion).getEdge();
+        edge.setSrc((QueryVertex) insertedVariables.getOrDefault(edge.getSrc().getName(), edge.getSrc()));
+        edge.setDst((QueryVertex) insertedVariables.getOrDefault(edge.getDst().getName(), edge.getDst()));
+      }
+      insertion.accept(referenceVisitor);
+    }
+
+    List<Modification> modifications = new ArrayList<>();
+    modifications.add(new InsertClause(graphName, insertions));
+    ModifyQuery result = chunkQueries.get(0);
+    result.setModifications(modifications);
+    result.setGraphPattern(null); // the statement has no FROM clause
+    return result;
+  }
+
+  private static boolean nextNonLayout(PgqlLexer lexer) {
+    while (lexer.next()) {
+      if (!lexer.isLayout()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isKeyword(PgqlLexer lexer, String keyword) {
+    return lexer.getKind() == TokenKind.REGULAR_IDENTIFIER && lexer.getText().equalsIgnoreCase(keyword);
+  }
+
+  private static boolean isIdentifier(TokenKind kind) {
+    return kind == TokenKind.REGULAR_IDENTIFIER || kind == TokenKind.DELIMITED_IDENTIFIER;
+  }
+
+  /**
+   * Normalizes identifiers like the PGQL parser does: regular identifiers are upper-cased and delimited identifiers are
+   * unquoted, so that v, V and "V" all refer to the same variable.
+   */
+  private static String normalize(PgqlLexer lexer) {
+    String text = lexer.getText();
+    if (lexer.getKind() == TokenKind.REGULAR_IDENTIFIER) {
+      return text.toUpperCase();
+    }
+    return text.substring(1, Math.max(1, text.length() - 1)).replace("\"\"", "\"");
+  }
+
+  private static class InsertionText {
+
+    private final int start;
+
+    private final boolean isVertex;
+
+    private int end;
+
+    private String name;
+
+    private final Set<String> references = new HashSet<>();
+
+    InsertionText(int start, boolean isVertex) {
+      this.start = start;
+      this.isVertex = isVertex;
+    }
+  }
+}
@@ -3,98 +3,23 @@
  */
 package oracle.pgql.lang;
 
+import oracle.pgql.lang.PgqlLexer.TokenKind;
+
 public class CheckInvalidJavaComment {
 
   public static void checkInvalidJavaComment(String queryString, PgqlVersion pgqlVersion) throws PgqlException {
     if (pgqlVersion != PgqlVersion.V_1_0 && pgqlVersion != PgqlVersion.V_1_1_OR_V_1_2) {
+      if (queryString.indexOf("//") == -1) {
+        return; // most queries don't contain "//" at all, so there is no need to tokenize them
+      }
 
-      char[] chars = queryString.toCharArray();
-      int i = 0;
-      while (i < chars.length) {
-        if (isDoubleQuote(chars, i)) { // identifiers
-          i++;
-          while (i < chars.length) {
-            if (isEscapedDoubleQuote(chars, i)) {
-              i = i + 2;
-            } else if (isDoubleQuote(chars, i)) {
-              i++;
-              break;
-            } else {
-              i++;
-            }
-          }
-        } else if (isSingleQuote(chars, i)) { // literals
-          i++;
-          while (i < chars.length) {
-            if (isEscapedSingleQuote(chars, i)) {
-              i = i + 2;
-            } else if (isSingleQuote(chars, i)) {
-              i++;
-              break;
-            } else {
-              i++;
-            }
-          }
-        } else if (isMultiLineCommentStart(chars, i)) { // multi-line comment /* .. */
-          i = i + 2;
-          while (i < chars.length) {
-            if (isMultiLineCommentEnd(chars, i)) {
-              i = i + 2;
-              break;
-            } else {
-              i++;
-            }
-          }
-        } else if (isSingleLineCommentStart(chars, i)) { // single-line comment // ..
+      // "//" inside literals, quoted identifiers and multi-line comments is fine
+      PgqlLexer lexer = new PgqlLexer(queryString);
+      while (lexer.next()) {
+        if (lexer.getKind() == TokenKind.SINGLE_LINE_COMMENT) {
           throw new PgqlException("Use /* .. */ instead of // .. to introduce a comment");
-        } else {
-          i++;
         }
       }
     }
   }
-
-  private static boolean isDoubleQuote(char[] chars, int index) {
-    return isCharAtIndex(chars, index, '"');
-  }
-
-  private static boolean isEscapedDoubleQuote(char[] chars, int index) {
-    return areCharsAtIndex(chars, index, '"', '"');
-  }
-
-  private static boolean isSingleQuote(char[] chars, int index) {
-    return isCharAtIndex(chars, index, '\'');
-  }
-
-  private static boolean isEscapedSingleQuote(char[] chars, int index) {
-    return areCharsAtIndex(chars, index, '\'', '\'');
-  }
-
-  private static boolean isMultiLineCommentStart(char[] chars, int index) {
-    return areCharsAtIndex(chars, index, '/', '*');
-  }
-
-  private static boolean isMultiLineCommentEnd(char[] chars, int index) {
-    return areCharsAtIndex(chars, index, '*', '/');
-  }
-
-  private static boolean isSingleLineCommentStart(char[] chars, int index) {
-    return areCharsAtIndex(chars, index, '/', '/');
-  }
-
-  private static boolean isCharAtIndex(char[] chars, int index, char c) {
-    if (index >= chars.length) {
-      return false;
-    } else {
-      return chars[index] == c;
-    }
-  }
-
-  private static boolean areCharsAtIndex(char[] chars, int index, char c1, char c2) {
-    if (index + 1 >= chars.length) {
-      return false;
-    } else {
-      return chars[index] == c1 && chars[index + 1] == c2;
-    }
-  }
 }
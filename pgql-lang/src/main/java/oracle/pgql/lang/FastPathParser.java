@@ -0,0 +1,1051 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import oracle.pgql.lang.PgqlLexer.Token;
+import oracle.pgql.lang.PgqlLexer.TokenKind;
+import oracle.pgql.lang.ir.Direction;
+import oracle.pgql.lang.ir.ExpAsVar;
+import oracle.pgql.lang.ir.GraphPattern;
+import oracle.pgql.lang.ir.OrderBy;
+import oracle.pgql.lang.ir.OrderByElem;
+import oracle.pgql.lang.ir.Projection;
+import oracle.pgql.lang.ir.QueryEdge;
+import oracle.pgql.lang.ir.QueryExpression;
+import oracle.pgql.lang.ir.QueryExpression.ArithmeticExpression.Add;
+import oracle.pgql.lang.ir.QueryExpression.ArithmeticExpression.Div;
+import oracle.pgql.lang.ir.QueryExpression.ArithmeticExpression.Mod;
+import oracle.pgql.lang.ir.QueryExpression.ArithmeticExpression.Mul;
+import oracle.pgql.lang.ir.QueryExpression.ArithmeticExpression.Sub;
+import oracle.pgql.lang.ir.QueryExpression.ArithmeticExpression.UMin;
+import oracle.pgql.lang.ir.QueryExpression.BinaryExpression;
+import oracle.pgql.lang.ir.QueryExpression.ConcatExpression;
+import oracle.pgql.lang.ir.QueryExpression.Constant.ConstBoolean;
+import oracle.pgql.lang.ir.QueryExpression.Constant.ConstDecimal;
+import oracle.pgql.lang.ir.QueryExpression.Constant.ConstInteger;
+import oracle.pgql.lang.ir.QueryExpression.Constant.ConstString;
+import oracle.pgql.lang.ir.QueryExpression.ExpressionType;
+import oracle.pgql.lang.ir.QueryExpression.FunctionCall;
+import oracle.pgql.lang.ir.QueryExpression.LogicalExpression.And;
+import oracle.pgql.lang.ir.QueryExpression.LogicalExpression.Not;
+import oracle.pgql.lang.ir.QueryExpression.LogicalExpression.Or;
+import oracle.pgql.lang.ir.QueryExpression.PropertyAccess;
+import oracle.pgql.lang.ir.QueryExpression.RelationalExpression.Equal;
+import oracle.pgql.lang.ir.QueryExpression.RelationalExpression.Greater;
+import oracle.pgql.lang.ir.QueryExpression.RelationalExpression.GreaterEqual;
+import oracle.pgql.lang.ir.QueryExpression.RelationalExpression.Less;
+import oracle.pgql.lang.ir.QueryExpression.RelationalExpression.LessEqual;
+import oracle.pgql.lang.ir.QueryExpression.RelationalExpression.NotEqual;
+import oracle.pgql.lang.ir.QueryExpression.VarRef;
+import oracle.pgql.lang.ir.QueryVariable;
+import oracle.pgql.lang.ir.QueryVariable.VariableType;
+import oracle.pgql.lang.ir.QueryVertex;
+import oracle.pgql.lang.ir.SchemaQualifiedName;
+import oracle.pgql.lang.ir.SelectQuery;
+import oracle.pgql.lang.ir.VertexPairConnection;
+
+/**
+ * A hand-written parser for the most common kind of query: a PGQL 1.3 SELECT query over a graph pattern with only
+ * fixed-length edges, with an optional WHERE, ORDER BY, LIMIT and OFFSET clause and with only simple expressions
+ * (literals, property accesses, arithmetic, comparisons and boolean operators).
+ *
+ * The parser produces the same GraphQuery as parsing the query with Spoofax would, without the cost of Spoofax parsing
+ * and analysis. It deliberately gives up on anything it is not sure about, including every query that has errors, so
+ * that such queries are parsed by Spoofax, which reports the errors. GROUP BY, aggregations, function calls, bind
+ * variables, path queries, subqueries and queries in older PGQL versions are not supported either.
+ *
+ * Expressions are type checked using the types of literals and operators, with property accesses being of any type.
+ * Queries with an operand of the wrong type, like 'x' + 1 or a WHERE clause that is not a boolean, are left to Spoofax
+ * as well.
+ */
+class FastPathParser {
+
+  /**
+   * Identifiers that are or may become keywords. Regular identifiers that match are not accepted as names, so that
+   * queries like "SELECT n AS count ..." are left to Spoofax.
+   */
+  private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList("SELECT", "FROM", "MATCH", "WHERE", "ORDER",
+      "BY", "GROUP", "HAVING", "LIMIT", "OFFSET", "ON", "AS", "ASC", "DESC", "AND", "OR", "NOT", "TRUE", "FALSE", "NULL",
+      "DISTINCT", "IS", "IN", "CASE", "WHEN", "THEN", "ELSE", "END", "CAST", "EXISTS", "PATH", "SHORTEST", "CHEAPEST",
+      "TOP", "COST", "DATE", "TIME", "TIMESTAMP", "INSERT", "UPDATE", "DELETE", "INTO", "VERTEX", "EDGE", "LABELS",
+      "PROPERTIES", "SET", "BETWEEN", "EXTRACT", "SUBSTRING", "FOR"));
+
+  /**
+   * Prefix of the names that the translation gives to anonymous variables; user-defined names with this prefix are
+   * left to Spoofax since the generated names would need to be made unique.
+   */
+  private static final String ANONYMOUS_PREFIX = "anonymous";
+
+  private static final UnsupportedQueryException UNSUPPORTED = new UnsupportedQueryException();
+
+  private final String queryString;
+
+  private final List<Token> tokens = new ArrayList<>();
+
+  private int pos;
+
+  private int anonymousCounter;
+
+  /**
+   * The vertices and edges of the graph pattern, by name.
+   */
+  private final Map<String, QueryVariable> patternVariables = new HashMap<>();
+
+  private final List<QueryVertex> vertices = new ArrayList<>();
+
+  private final LinkedHashSet<VertexPairConnection> connections = new LinkedHashSet<>();
+
+  private final List<QueryExpression> vertexLabelConstraints = new ArrayList<>();
+
+  private final List<QueryExpression> edgeLabelConstraints = new ArrayList<>();
+
+  private final Set<String> verticesWithLabels = new HashSet<>();
+
+  private boolean hasMatch;
+
+  private SchemaQualifiedName graphName;
+
+  private final List<SelectItem> selectItems = new ArrayList<>();
+
+  private FastPathParser(String queryString) {
+    this.queryString = queryString;
+  }
+
+  /**
+   * @return the query, or null if the query is not supported by this parser and needs to be parsed by Spoofax
+   */
+  static SelectQuery parse(String queryString) {
+    try {
+      return new FastPathParser(queryString).parseQuery();
+    } catch (UnsupportedQueryException e) {
+      return null;
+    }
+  }
+
+  private SelectQuery parseQuery() throws UnsupportedQueryException {
+    tokenize();
+
+    expectKeyword("SELECT");
+    boolean distinct = acceptKeyword("DISTINCT");
+    List<Exp> selectExps = new ArrayList<>();
+    List<Token> aliases = new ArrayList<>();
+    do {
+      int itemStart = pos;
+      Exp exp = parseExp();
+      if (exp.start != itemStart) {
+        throw UNSUPPORTED; // parenthesized expression
+      }
+      selectExps.add(exp);
+      aliases.add(acceptKeyword("AS") ? nextIdentifierToken() : null);
+    } while (acceptSymbol(','));
+
+    expectKeyword("FROM");
+    do {
+      parseGraphMatch();
+    } while (acceptSymbol(','));
+
+    Exp whereExp = acceptKeyword("WHERE") ? parseExp() : null;
+
+    List<Exp> orderByExps = new ArrayList<>();
+    List<Boolean> ascending = new ArrayList<>();
+    if (acceptKeyword("ORDER")) {
+      expectKeyword("BY");
+      do {
+        orderByExps.add(parseExp());
+        if (acceptKeyword("DESC")) {
+          ascending.add(false);
+        } else {
+          acceptKeyword("ASC");
+          ascending.add(true);
+        }
+      } while (acceptSymbol(','));
+    }
+
+    QueryExpression limit = null;
+    QueryExpression offset = null;
+    if (acceptKeyword("LIMIT")) {
+      limit = parseLimitOrOffset();
+      if (acceptKeyword("OFFSET")) {
+        offset = parseLimitOrOffset();
+      }
+    } else if (acceptKeyword("OFFSET")) {
+      offset = parseLimitOrOffset();
+      if (acceptKeyword("LIMIT")) {
+        limit = parseLimitOrOffset();
+      }
+    }
+
+    if (pos != tokens.size()) {
+      throw UNSUPPORTED;
+    }
+
+    // SELECT
+    Set<String> selectNames = new HashSet<>();
+    Set<String> selectOriginTexts = new HashSet<>();
+    List<ExpAsVar> expAsVars = new ArrayList<>();
+    for (int i = 0; i < selectExps.size(); i++) {
+      Exp exp = selectExps.get(i);
+      Token alias = aliases.get(i);
+      QueryExpression resolvedExp = exp.op == Op.VAR ? new VarRef(getPatternVariable(exp.name))
+          : resolve(exp, null, false);
+      typeOf(resolvedExp);
+      ExpAsVar expAsVar;
+      if (alias != null) {
+        expAsVar = new ExpAsVar(resolvedExp, normalize(alias), false, originText(alias));
+      } else if (exp.op == Op.PROP) {
+        expAsVar = new ExpAsVar(resolvedExp, exp.propertyName, false, originText(tokens.get(exp.end)));
+      } else if (exp.op == Op.VAR) {
+        expAsVar = new ExpAsVar(resolvedExp, exp.name, true, originText(tokens.get(exp.start)));
+      } else {
+        if (exp.op == Op.NEQ || exp.op == Op.LITERAL && tokens.get(exp.start).getKind() == TokenKind.STRING
+            || isNegatedNumber(exp)) {
+          throw UNSUPPORTED; // the name is taken from the origin of a term that is rewritten by the normalization
+        }
+        String text = queryString.substring(tokens.get(exp.start).getStart(), tokens.get(exp.end).getEnd());
+        if (text.contains("/*")) {
+          throw UNSUPPORTED;
+        }
+        expAsVar = new ExpAsVar(resolvedExp, text, true, text);
+      }
+      if (!selectNames.add(expAsVar.getName()) || !selectOriginTexts.add(expAsVar.getNameOriginText())) {
+        throw UNSUPPORTED; // duplicate column
+      }
+      expAsVars.add(expAsVar);
+      selectItems.add(new SelectItem(exp, expAsVar));
+    }
+
+    // WHERE
+    LinkedHashSet<QueryExpression> constraints = new LinkedHashSet<>();
+    constraints.addAll(vertexLabelConstraints);
+    constraints.addAll(edgeLabelConstraints);
+    if (whereExp != null) {
+      QueryExpression resolvedWhereExp = resolve(whereExp, null, false);
+      checkType(resolvedWhereExp, Type.BOOLEAN);
+      addConstraints(resolvedWhereExp, constraints);
+    }
+
+    // ORDER BY
+    List<OrderByElem> orderByElems = new ArrayList<>();
+    for (int i = 0; i < orderByExps.size(); i++) {
+      QueryExpression exp = replaceSelectExpressions(orderByExps.get(i));
+      typeOf(exp);
+      if (distinct && !(exp.getExpType() == ExpressionType.VARREF
+          && ((VarRef) exp).getVariable().getVariableType() == VariableType.EXP_AS_VAR)) {
+        throw UNSUPPORTED;
+      }
+      for (OrderByElem elem : orderByElems) {
+        if (elem.getExp().equals(exp)) {
+          throw UNSUPPORTED;
+        }
+      }
+      orderByElems.add(new OrderByElem(exp, ascending.get(i)));
+    }
+
+    GraphPattern graphPattern = new GraphPattern(new HashSet<>(vertices), connections, constraints);
+    return new SelectQuery(new ArrayList<>(), new Projection(distinct, expAsVars), graphName, graphPattern, null, null,
+        new OrderBy(orderByElems), limit, offset);
+  }
+
+  private void tokenize() throws UnsupportedQueryException {
+    PgqlLexer lexer = new PgqlLexer(queryString);
+    while (lexer.next()) {
+      String text = lexer.getText();
+      switch (lexer.getKind()) {
+        case WHITESPACE:
+          continue;
+        case MULTI_LINE_COMMENT:
+          if (text.length() < 4 || !text.endsWith("*/")) {
+            throw UNSUPPORTED;
+          }
+          continue;
+        case STRING:
+        case DELIMITED_IDENTIFIER:
+          if (text.length() < 2 || text.charAt(text.length() - 1) != text.charAt(0) || text.indexOf('\\') != -1) {
+            throw UNSUPPORTED;
+          }
+          break;
+        case SINGLE_LINE_COMMENT:
+        case BIND_VARIABLE:
+          throw UNSUPPORTED;
+        default:
+          break;
+      }
+      tokens.add(lexer.getToken());
+    }
+  }
+
+  // graph pattern
+
+  private void parseGraphMatch() throws UnsupportedQueryException {
+    expectKeyword("MATCH");
+    parsePathPattern();
+    SchemaQualifiedName name = null;
+    if (acceptKeyword("ON")) {
+      String schemaName = null;
+      String localName = normalize(nextIdentifierToken());
+      if (acceptSymbol('.')) {
+        schemaName = localName;
+        localName = normalize(nextIdentifierToken());
+      }
+      name = new SchemaQualifiedName(schemaName, localName);
+    }
+    if (!hasMatch) {
+      graphName = name;
+      hasMatch = true;
+    } else if (graphName == null ? name != null : !graphName.equals(name)) {
+      throw UNSUPPORTED;
+    }
+  }
+
+  private void parsePathPattern() throws UnsupportedQueryException {
+    QueryVertex src = parseVertex();
+    while (isSymbol(pos, '-') || isSymbol(pos, '<')) {
+      Direction direction;
+      boolean reverse = false;
+      QueryEdge edge;
+      String name = null;
+      List<String> labels = null;
+      if (acceptSymbol('<')) {
+        expectAdjacentSymbol('-');
+        direction = Direction.INCOMING;
+        reverse = true;
+      } else {
+        expectSymbol('-');
+        direction = Direction.ANY;
+      }
+
+      if (acceptSymbol('[')) {
+        if (isIdentifier()) {
+          name = variableName(nextIdentifierToken());
+        }
+        if (acceptSymbol(':')) {
+          labels = parseLabels();
+        }
+        expectSymbol(']');
+        if (reverse) {
+          expectSymbol('-');
+        } else if (acceptSymbol('-')) {
+          if (acceptAdjacentSymbol('>')) {
+            direction = Direction.OUTGOING;
+          }
+        } else {
+          throw UNSUPPORTED;
+        }
+      } else if (!reverse && acceptAdjacentSymbol('>')) {
+        direction = Direction.OUTGOING;
+      }
+
+      if (!isSymbol(pos, '(')) {
+        throw UNSUPPORTED; // path quantifier, path, vertex without brackets, ...
+      }
+
+      // the edge is named before the destination vertex, just like in the normalization
+      boolean anonymous = name == null;
+      if (anonymous) {
+        name = nextAnonymousName();
+      } else if (patternVariables.containsKey(name)) {
+        throw UNSUPPORTED; // duplicate variable
+      }
+      QueryVertex dst = parseVertex();
+      if (reverse) {
+        edge = new QueryEdge(dst, src, name, anonymous, direction);
+      } else {
+        edge = new QueryEdge(src, dst, name, anonymous, direction);
+      }
+      if (!anonymous && patternVariables.put(name, edge) != null) {
+        throw UNSUPPORTED; // the destination vertex has the same name as the edge
+      }
+      connections.add(edge);
+      if (labels != null) {
+        edgeLabelConstraints.add(toLabelConstraint(edge, labels));
+      }
+      src = dst;
+    }
+  }
+
+  private QueryVertex parseVertex() throws UnsupportedQueryException {
+    expectSymbol('(');
+    String name = isIdentifier() ? variableName(nextIdentifierToken()) : null;
+    List<String> labels = acceptSymbol(':') ? parseLabels() : null;
+    expectSymbol(')');
+
+    QueryVertex vertex;
+    if (name == null) {
+      vertex = new QueryVertex(nextAnonymousName(), true);
+      vertices.add(vertex);
+    } else {
+      QueryVariable variable = patternVariables.get(name);
+      if (variable == null) {
+        vertex = new QueryVertex(name, false);
+        patternVariables.put(name, vertex);
+        vertices.add(vertex);
+      } else if (variable.getVariableType() == VariableType.VERTEX) {
+        vertex = (QueryVertex) variable;
+      } else {
+        throw UNSUPPORTED; // duplicate variable
+      }
+    }
+
+    if (labels != null) {
+      if (name != null && !verticesWithLabels.add(name)) {
+        throw UNSUPPORTED; // labels are specified more than once for the same vertex
+      }
+      vertexLabelConstraints.add(toLabelConstraint(vertex, labels));
+    }
+    return vertex;
+  }
+
+  private List<String> parseLabels() throws UnsupportedQueryException {
+    List<String> labels = new ArrayList<>();
+    do {
+      labels.add(normalize(nextIdentifierToken()));
+    } while (acceptSymbol('|'));
+    return labels;
+  }
+
+  /**
+   * @return has_label(variable, 'label') for a single label, or a left-associative disjunction of such function calls
+   */
+  private static QueryExpression toLabelConstraint(QueryVariable variable, List<String> labels) {
+    QueryExpression result = null;
+    for (String label : labels) {
+      List<QueryExpression> args = new ArrayList<>();
+      args.add(new VarRef(variable));
+      args.add(new ConstString(label));
+      QueryExpression hasLabel = new FunctionCall(null, "has_label", args);
+      result = result == null ? hasLabel : new Or(result, hasLabel);
+    }
+    return result;
+  }
+
+  private String nextAnonymousName() {
+    return ANONYMOUS_PREFIX + "_" + anonymousCounter++;
+  }
+
+  private QueryExpression parseLimitOrOffset() throws UnsupportedQueryException {
+    if (pos == tokens.size() || tokens.get(pos).getKind() != TokenKind.INTEGER) {
+      throw UNSUPPORTED;
+    }
+    return new ConstInteger(parseLong(tokens.get(pos++).getText(queryString)));
+  }
+
+  // expressions
+
+  private Exp parseExp() throws UnsupportedQueryException {
+    int start = pos;
+    Exp exp = parseAnd();
+    while (acceptKeyword("OR")) {
+      exp = new Exp(Op.OR, exp, parseAnd(), start, pos - 1);
+    }
+    return exp;
+  }
+
+  private Exp parseAnd() throws UnsupportedQueryException {
+    int start = pos;
+    Exp exp = parseNot();
+    while (acceptKeyword("AND")) {
+      exp = new Exp(Op.AND, exp, parseNot(), start, pos - 1);
+    }
+    return exp;
+  }
+
+  private Exp parseNot() throws UnsupportedQueryException {
+    int start = pos;
+    if (acceptKeyword("NOT")) {
+      return new Exp(Op.NOT, parseNot(), null, start, pos - 1);
+    }
+    return parseComparison();
+  }
+
+  private Exp parseComparison() throws UnsupportedQueryException {
+    int start = pos;
+    Exp exp = parseAdditive();
+    while (true) {
+      Op op;
+      if (acceptSymbol('=')) {
+        op = Op.EQ;
+      } else if (acceptSymbol('!')) {
+        expectAdjacentSymbol('=');
+        op = Op.NEQ;
+      } else if (acceptSymbol('<')) {
+        if (isAdjacentSymbol('-')) {
+          throw UNSUPPORTED;
+        }
+        op = acceptAdjacentSymbol('=') ? Op.LE : acceptAdjacentSymbol('>') ? Op.NEQ : Op.LT;
+      } else if (acceptSymbol('>')) {
+        op = acceptAdjacentSymbol('=') ? Op.GE : Op.GT;
+      } else {
+        return exp;
+      }
+      exp = new Exp(op, exp, parseAdditive(), start, pos - 1);
+    }
+  }
+
+  private Exp parseAdditive() throws UnsupportedQueryException {
+    int start = pos;
+    Exp exp = parseMultiplicative();
+    while (true) {
+      Op op;
+      if (acceptSymbol('+')) {
+        op = Op.ADD;
+      } else if (acceptSymbol('-')) {
+        op = Op.SUB;
+      } else {
+        return exp;
+      }
+      exp = new Exp(op, exp, parseMultiplicative(), start, pos - 1);
+    }
+  }
+
+  private Exp parseMultiplicative() throws UnsupportedQueryException {
+    int start = pos;
+    Exp exp = parseConcat();
+    while (true) {
+      Op op;
+      if (acceptSymbol('*')) {
+        op = Op.MUL;
+      } else if (acceptSymbol('/')) {
+        op = Op.DIV;
+      } else if (acceptSymbol('%')) {
+        op = Op.MOD;
+      } else {
+        return exp;
+      }
+      exp = new Exp(op, exp, parseConcat(), start, pos - 1);
+    }
+  }
+
+  private Exp parseConcat() throws UnsupportedQueryException {
+    int start = pos;
+    Exp exp = parseUnary();
+    while (isSymbol(pos, '|') && isSymbol(pos + 1, '|')
+        && tokens.get(pos).getEnd() == tokens.get(pos + 1).getStart()) {
+      pos += 2;
+      exp = new Exp(Op.CONCAT, exp, parseUnary(), start, pos - 1);
+    }
+    return exp;
+  }
+
+  private Exp parseUnary() throws UnsupportedQueryException {
+    int start = pos;
+    if (acceptSymbol('-')) {
+      return new Exp(Op.UMIN, parseUnary(), null, start, pos - 1);
+    }
+    return parsePrimary();
+  }
+
+  private Exp parsePrimary() throws UnsupportedQueryException {
+    if (pos == tokens.size()) {
+      throw UNSUPPORTED;
+    }
+    int start = pos;
+    Token token = tokens.get(pos);
+    switch (token.getKind()) {
+      case INTEGER:
+      case DECIMAL:
+      case STRING:
+        pos++;
+        return new Exp(Op.LITERAL, null, null, start, start);
+      case SYMBOL:
+        expectSymbol('(');
+        Exp exp = parseExp();
+        expectSymbol(')');
+        return exp;
+      case REGULAR_IDENTIFIER:
+        if (acceptKeyword("TRUE") || acceptKeyword("FALSE")) {
+          return new Exp(Op.LITERAL, null, null, start, start);
+        }
+        // fall through
+      case DELIMITED_IDENTIFIER:
+        exp = new Exp(Op.VAR, null, null, start, start);
+        exp.name = variableName(nextIdentifierToken());
+        if (acceptSymbol('.')) {
+          exp.op = Op.PROP;
+          exp.propertyName = normalize(nextIdentifierToken());
+          exp.end = pos - 1;
+        }
+        if (isSymbol(pos, '(')) {
+          throw UNSUPPORTED; // function call or legacy syntax
+        }
+        return exp;
+      default:
+        throw UNSUPPORTED;
+    }
+  }
+
+  // resolution and translation of expressions
+
+  /**
+   * @param orderByItems
+   *          null for expressions in SELECT and WHERE, which only see the variables in the graph pattern; the SELECT
+   *          items for expressions in ORDER BY, which see the SELECT items before the variables in the graph pattern
+   * @param elementAllowed
+   *          whether the expression may be a reference to a vertex or an edge
+   */
+  private QueryExpression resolve(Exp exp, List<SelectItem> orderByItems, boolean elementAllowed)
+      throws UnsupportedQueryException {
+    switch (exp.op) {
+      case LITERAL:
+        return toConstant(tokens.get(exp.start), false);
+      case VAR: {
+        SelectItem item = orderByItems == null ? null : getSelectItem(exp.name);
+        if (item != null) {
+          if (item.expAsVar.isAnonymous() || item.expAsVar.getExp().getExpType() == ExpressionType.VARREF) {
+            throw UNSUPPORTED; // may be a vertex or an edge
+          }
+          return new VarRef(item.expAsVar);
+        }
+        QueryVariable variable = getPatternVariable(exp.name);
+        if (!elementAllowed) {
+          throw UNSUPPORTED; // vertices and edges are not allowed here
+        }
+        return new VarRef(variable);
+      }
+      case PROP:
+        if (orderByItems != null && getSelectItem(exp.name) != null) {
+          throw UNSUPPORTED;
+        }
+        return new PropertyAccess(getPatternVariable(exp.name), exp.propertyName);
+      case UMIN:
+        if (isNegatedNumber(exp)) {
+          return toConstant(tokens.get(exp.exp1.start), true); // like the normalization, which folds -5 into a literal
+        }
+        return new UMin(resolve(exp.exp1, orderByItems, false));
+      case NOT:
+        return new Not(resolve(exp.exp1, orderByItems, false));
+      default:
+        boolean isEquality = exp.op == Op.EQ || exp.op == Op.NEQ;
+        return toBinaryExpression(exp.op, resolve(exp.exp1, orderByItems, isEquality),
+            resolve(exp.exp2, orderByItems, isEquality));
+    }
+  }
+
+  /**
+   * Replaces the (sub)expressions of an ORDER BY expression that are the same as the expression of a SELECT item by a
+   * reference to that SELECT item, top-down.
+   */
+  private QueryExpression replaceSelectExpressions(Exp exp) throws UnsupportedQueryException {
+    QueryExpression resolvedExp = resolve(exp, selectItems, false);
+    for (SelectItem item : selectItems) {
+      if (item.expAsVar.getExp().equals(resolvedExp)) {
+        if (!haveSameTokens(exp, item.exp)) {
+          throw UNSUPPORTED; // spelled differently, e.g. with different case or different brackets
+        }
+        return new VarRef(item.expAsVar);
+      }
+    }
+
+    switch (exp.op) {
+      case LITERAL:
+      case VAR:
+        return resolvedExp;
+      case PROP:
+        VarRef varRef = new VarRef(((PropertyAccess) resolvedExp).getVariable());
+        for (SelectItem item : selectItems) {
+          if (item.expAsVar.getExp().equals(varRef)) {
+            throw UNSUPPORTED;
+          }
+        }
+        return resolvedExp;
+      case UMIN:
+        if (resolvedExp.getExpType() != ExpressionType.UMIN) {
+          return resolvedExp; // negative literal
+        }
+        return new UMin(replaceSelectExpressions(exp.exp1));
+      case NOT:
+        return new Not(replaceSelectExpressions(exp.exp1));
+      default:
+        return toBinaryExpression(exp.op, replaceSelectExpressions(exp.exp1), replaceSelectExpressions(exp.exp2));
+    }
+  }
+
+  private boolean haveSameTokens(Exp exp1, Exp exp2) {
+    if (exp1.end - exp1.start != exp2.end - exp2.start) {
+      return false;
+    }
+    for (int i = 0; i <= exp1.end - exp1.start; i++) {
+      if (!tokens.get(exp1.start + i).getText(queryString).equals(tokens.get(exp2.start + i).getText(queryString))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private SelectItem getSelectItem(String name) {
+    for (SelectItem item : selectItems) {
+      if (item.expAsVar.getName().equals(name)) {
+        return item;
+      }
+    }
+    return null;
+  }
+
+  private QueryVariable getPatternVariable(String name) throws UnsupportedQueryException {
+    QueryVariable variable = patternVariables.get(name);
+    if (variable == null) {
+      throw UNSUPPORTED; // unresolved variable
+    }
+    return variable;
+  }
+
+  private static void addConstraints(QueryExpression exp, Set<QueryExpression> constraints) {
+    if (exp.getExpType() == ExpressionType.AND) {
+      And and = (And) exp;
+      addConstraints(and.getExp1(), constraints);
+      addConstraints(and.getExp2(), constraints);
+    } else {
+      constraints.add(exp);
+    }
+  }
+
+  /**
+   * @return the type of the expression
+   * @throws UnsupportedQueryException
+   *           if an operand is not of the type that its operator expects
+   */
+  private static Type typeOf(QueryExpression exp) throws UnsupportedQueryException {
+    switch (exp.getExpType()) {
+      case INTEGER:
+      case DECIMAL:
+        return Type.NUMERIC;
+      case STRING:
+        return Type.STRING;
+      case BOOLEAN:
+        return Type.BOOLEAN;
+      case PROP_ACCESS:
+        return Type.ANY;
+      case VARREF: {
+        QueryVariable variable = ((VarRef) exp).getVariable();
+        switch (variable.getVariableType()) {
+          case VERTEX:
+            return Type.VERTEX;
+          case EDGE:
+            return Type.EDGE;
+          default:
+            return typeOf(((ExpAsVar) variable).getExp());
+        }
+      }
+      case UMIN:
+        checkType(((UMin) exp).getExp(), Type.NUMERIC);
+        return Type.NUMERIC;
+      case NOT:
+        checkType(((Not) exp).getExp(), Type.BOOLEAN);
+        return Type.BOOLEAN;
+      case AND:
+      case OR:
+        checkOperandTypes((BinaryExpression) exp, Type.BOOLEAN);
+        return Type.BOOLEAN;
+      case ADD:
+      case SUB:
+      case MUL:
+      case DIV:
+      case MOD:
+        checkOperandTypes((BinaryExpression) exp, Type.NUMERIC);
+        return Type.NUMERIC;
+      case CONCAT:
+        checkOperandTypes((BinaryExpression) exp, Type.STRING);
+        return Type.STRING;
+      case EQUAL:
+      case NOT_EQUAL:
+      case GREATER:
+      case GREATER_EQUAL:
+      case LESS:
+      case LESS_EQUAL: {
+        Type type1 = typeOf(((BinaryExpression) exp).getExp1());
+        Type type2 = typeOf(((BinaryExpression) exp).getExp2());
+        if (type1 != type2 && (type1 != Type.ANY && type2 != Type.ANY || type1.isElement() || type2.isElement())) {
+          throw UNSUPPORTED; // e.g. n.age = 'x' or n = e
+        }
+        return Type.BOOLEAN;
+      }
+      default:
+        throw UNSUPPORTED;
+    }
+  }
+
+  private static void checkOperandTypes(BinaryExpression exp, Type expectedType) throws UnsupportedQueryException {
+    checkType(exp.getExp1(), expectedType);
+    checkType(exp.getExp2(), expectedType);
+  }
+
+  private static void checkType(QueryExpression exp, Type expectedType) throws UnsupportedQueryException {
+    Type type = typeOf(exp);
+    if (type != expectedType && type != Type.ANY) {
+      throw UNSUPPORTED;
+    }
+  }
+
+  private static QueryExpression toBinaryExpression(Op op, QueryExpression exp1, QueryExpression exp2) {
+    switch (op) {
+      case OR:
+        return new Or(exp1, exp2);
+      case AND:
+        return new And(exp1, exp2);
+      case EQ:
+        return new Equal(exp1, exp2);
+      case NEQ:
+        return new NotEqual(exp1, exp2);
+      case GT:
+        return new Greater(exp1, exp2);
+      case GE:
+        return new GreaterEqual(exp1, exp2);
+      case LT:
+        return new Less(exp1, exp2);
+      case LE:
+        return new LessEqual(exp1, exp2);
+      case ADD:
+        return new Add(exp1, exp2);
+      case SUB:
+        return new Sub(exp1, exp2);
+      case MUL:
+        return new Mul(exp1, exp2);
+      case DIV:
+        return new Div(exp1, exp2);
+      case MOD:
+        return new Mod(exp1, exp2);
+      case CONCAT:
+        return new ConcatExpression(exp1, exp2);
+      default:
+        throw new IllegalArgumentException(op.toString());
+    }
+  }
+
+  private QueryExpression toConstant(Token token, boolean negate) throws UnsupportedQueryException {
+    String text = token.getText(queryString);
+    String sign = negate ? "-" : "";
+    switch (token.getKind()) {
+      case INTEGER:
+        return new ConstInteger(parseLong(sign + text));
+      case DECIMAL:
+        return new ConstDecimal(Double.parseDouble(sign + text));
+      case STRING:
+        return new ConstString(unquote(text, '\''));
+      default:
+        return new ConstBoolean(text.equalsIgnoreCase("TRUE"));
+    }
+  }
+
+  private boolean isNegatedNumber(Exp exp) {
+    return exp.op == Op.UMIN && exp.exp1.op == Op.LITERAL
+        && (tokens.get(exp.exp1.start).getKind() == TokenKind.INTEGER
+            || tokens.get(exp.exp1.start).getKind() == TokenKind.DECIMAL);
+  }
+
+  private static long parseLong(String text) throws UnsupportedQueryException {
+    try {
+      return Long.parseLong(text);
+    } catch (NumberFormatException e) {
+      throw UNSUPPORTED;
+    }
+  }
+
+  // names
+
+  private String variableName(Token token) throws UnsupportedQueryException {
+    String name = normalize(token);
+    if (name.regionMatches(true, 0, ANONYMOUS_PREFIX, 0, ANONYMOUS_PREFIX.length())) {
+      throw UNSUPPORTED;
+    }
+    return name;
+  }
+
+  /**
+   * Regular identifiers are upper-cased and delimited identifiers are unquoted, like in the normalization of PGQL 1.3
+   * queries.
+   */
+  private String normalize(Token token) {
+    String text = token.getText(queryString);
+    return token.getKind() == TokenKind.REGULAR_IDENTIFIER ? text.toUpperCase() : unquote(text, '"');
+  }
+
+  /**
+   * @return the name of the identifier as it was written, without quotes for delimited identifiers
+   */
+  private String originText(Token token) {
+    String text = token.getText(queryString);
+    return token.getKind() == TokenKind.REGULAR_IDENTIFIER ? text : unquote(text, '"');
+  }
+
+  private static String unquote(String text, char quote) {
+    String escapedQuote = String.valueOf(quote) + quote;
+    return text.substring(1, text.length() - 1).replace(escapedQuote, String.valueOf(quote));
+  }
+
+  // tokens
+
+  private boolean isIdentifier() {
+    if (pos == tokens.size()) {
+      return false;
+    }
+    Token token = tokens.get(pos);
+    return token.getKind() == TokenKind.DELIMITED_IDENTIFIER || token.getKind() == TokenKind.REGULAR_IDENTIFIER
+        && !KEYWORDS.contains(token.getText(queryString).toUpperCase());
+  }
+
+  private Token nextIdentifierToken() throws UnsupportedQueryException {
+    if (!isIdentifier() || tokens.get(pos).getEnd() - tokens.get(pos).getStart() == 2
+        && tokens.get(pos).getKind() == TokenKind.DELIMITED_IDENTIFIER) {
+      throw UNSUPPORTED; // keyword or empty delimited identifier
+    }
+    return tokens.get(pos++);
+  }
+
+  private boolean acceptKeyword(String keyword) {
+    if (pos < tokens.size() && tokens.get(pos).getKind() == TokenKind.REGULAR_IDENTIFIER
+        && tokens.get(pos).getText(queryString).equalsIgnoreCase(keyword)) {
+      pos++;
+      return true;
+    }
+    return false;
+  }
+
+  private void expectKeyword(String keyword) throws UnsupportedQueryException {
+    if (!acceptKeyword(keyword)) {
+      throw UNSUPPORTED;
+    }
+  }
+
+  private boolean isSymbol(int index, char symbol) {
+    return index < tokens.size() && tokens.get(index).getKind() == TokenKind.SYMBOL
+        && queryString.charAt(tokens.get(index).getStart()) == symbol;
+  }
+
+  /**
+   * @return true if the current token is the given symbol and directly follows the previous token, such that the two
+   *         form a single symbol such as -> or <=
+   */
+  private boolean isAdjacentSymbol(char symbol) {
+    return isSymbol(pos, symbol) && tokens.get(pos - 1).getEnd() == tokens.get(pos).getStart();
+  }
+
+  private boolean acceptSymbol(char symbol) {
+    if (isSymbol(pos, symbol)) {
+      pos++;
+      return true;
+    }
+    return false;
+  }
+
+  private boolean acceptAdjacentSymbol(char symbol) {
+    if (isAdjacentSymbol(symbol)) {
+      pos++;
+      return true;
+    }
+    return false;
+  }
+
+  private void expectSymbol(char symbol) throws UnsupportedQueryException {
+    if (!acceptSymbol(symbol)) {
+      throw UNSUPPORTED;
+    }
+  }
+
+  private void expectAdjacentSymbol(char symbol) throws UnsupportedQueryException {
+    if (!acceptAdjacentSymbol(symbol)) {
+      throw UNSUPPORTED;
+    }
+  }
+
+  private enum Op {
+    LITERAL,
+    VAR,
+    PROP,
+    UMIN,
+    NOT,
+    OR,
+    AND,
+    EQ,
+    NEQ,
+    GT,
+    GE,
+    LT,
+    LE,
+    ADD,
+    SUB,
+    MUL,
+    DIV,
+    MOD,
+    CONCAT
+  }
+
+  private enum Type {
+    BOOLEAN,
+    NUMERIC,
+    STRING,
+    VERTEX,
+    EDGE,
+    /**
+     * The type of a property, which is only known when the query is executed.
+     */
+    ANY;
+
+    boolean isElement() {
+      return this == VERTEX || this == EDGE;
+    }
+  }
+
+  /**
+   * An expression as it was written, with the indexes of its first and last token.
+   */
+  private static class Exp {
+
+    private Op op;
+
+    private final Exp exp1;
+
+    private final Exp exp2;
+
+    private final int start;
+
+    private int end;
+
+    /**
+     * The normalized name of the variable for VAR and PROP expressions.
+     */
+    private String name;
+
+    private String propertyName;
+
+    Exp(Op op, Exp exp1, Exp exp2, int start, int end) {
+      this.op = op;
+      this.exp1 = exp1;
+      this.exp2 = exp2;
+      this.start = start;
+      this.end = end;
+    }
+  }
+
+  private static class SelectItem {
+
+    private final Exp exp;
+
+    private final ExpAsVar expAsVar;
+
+    SelectItem(Exp exp, ExpAsVar expAsVar) {
+      this.exp = exp;
+      this.expAsVar = expAsVar;
+    }
+  }
+
+  /**
+   * Signals that the query needs to be parsed by Spoofax. Thrown without stack trace since it is not an error.
+   */
+  private static class UnsupportedQueryException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    UnsupportedQueryException() {
+      super(null, null, false, false);
+    }
+  }
+}
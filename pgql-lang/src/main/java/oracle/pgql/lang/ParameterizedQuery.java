@@ -0,0 +1,392 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.spoofax.interpreter.terms.IStrategoAppl;
+import org.spoofax.interpreter.terms.IStrategoConstructor;
+import org.spoofax.interpreter.terms.IStrategoInt;
+import org.spoofax.interpreter.terms.IStrategoTerm;
+import org.spoofax.interpreter.terms.ITermFactory;
+import org.spoofax.terms.TermFactory;
+
+import oracle.pgql.lang.PgqlLexer.Token;
+import oracle.pgql.lang.PgqlLexer.TokenKind;
+import oracle.pgql.lang.util.SqlDateTimeFormatter;
+
+/**
+ * A query in which the string, numeric and datetime literals are replaced by bind variables. For example,
+ * "SELECT n FROM MATCH (n) WHERE n.age > 25" becomes "SELECT n FROM MATCH (n) WHERE n.age > ?". The literals are kept
+ * so that they can be substituted into the analyzed AST of the template (see {@link QueryTemplate}).
+ */
+class ParameterizedQuery {
+
+  enum LiteralKind {
+    INTEGER,
+    DECIMAL,
+    STRING,
+    DATE,
+    TIME,
+    TIMESTAMP
+  }
+
+  private static final ITermFactory TERM_FACTORY = new TermFactory();
+
+  private static final IStrategoConstructor BIND_VARIABLE = TERM_FACTORY.makeConstructor("BindVariable", 1);
+
+  private static final IStrategoConstructor INTEGER = TERM_FACTORY.makeConstructor("Integer", 1);
+
+  private static final IStrategoConstructor DECIMAL = TERM_FACTORY.makeConstructor("Decimal", 1);
+
+  private static final IStrategoConstructor STRING = TERM_FACTORY.makeConstructor("String", 1);
+
+  private static final IStrategoConstructor DATE = TERM_FACTORY.makeConstructor("Date", 1);
+
+  private static final IStrategoConstructor TIME = TERM_FACTORY.makeConstructor("Time", 1);
+
+  private static final IStrategoConstructor TIMESTAMP = TERM_FACTORY.makeConstructor("Timestamp", 1);
+
+  private final String templateString;
+
+  private final String templateKey;
+
+  /**
+   * The bind variables of the template in the order in which they appear in the query. The bind variables that were in
+   * the original query are represented by null.
+   */
+  private final List<Literal> parameters;
+
+  /**
+   * For each bind variable of the template that was in the original query, its index in the original query.
+   */
+  private final int[] originalParameterIndexes;
+
+  private ParameterizedQuery(String templateString, String templateKey, List<Literal> parameters) {
+    this.templateString = templateString;
+    this.templateKey = templateKey;
+    this.parameters = Collections.unmodifiableList(parameters);
+    this.originalParameterIndexes = new int[parameters.size()];
+    int originalParameterIndex = 0;
+    for (int i = 0; i < parameters.size(); i++) {
+      if (parameters.get(i) == null) {
+        originalParameterIndexes[i] = originalParameterIndex++;
+      }
+    }
+  }
+
+  /**
+   * @return the parameterized query, or null if the query does not contain any literals that can be parameterized
+   */
+  static ParameterizedQuery fromQuery(String queryString) {
+    PgqlLexer lexer = new PgqlLexer(queryString);
+    StringBuilder templateString = new StringBuilder(queryString.length());
+    StringBuilder signature = new StringBuilder();
+    List<Literal> parameters = new ArrayList<>();
+    Map<Literal, Integer> literalIndexes = new HashMap<>(); // index of the first occurrence of each literal
+    int literalCount = 0;
+    int copiedUntil = 0;
+    int braceDepth = 0;
+    Token previous = null;
+    Token beforePrevious = null;
+    while (lexer.next()) {
+      if (lexer.isLayout()) {
+        continue;
+      }
+      Token token = lexer.getToken(); // kept as the previous token for the next iterations
+
+      Literal literal = null;
+      int literalStart = token.getStart();
+      switch (token.getKind()) {
+        case SYMBOL:
+          char c = queryString.charAt(token.getStart());
+          if (c == '{') {
+            braceDepth++;
+          } else if (c == '}') {
+            braceDepth--;
+          }
+          break;
+        case BIND_VARIABLE:
+          parameters.add(null);
+          break;
+        case INTEGER:
+        case DECIMAL:
+          // quantifiers like {1,3} and TOP k do not allow for bind variables
+          if (braceDepth == 0 && !isKeyword(queryString, previous, beforePrevious, "TOP")) {
+            LiteralKind kind = token.getKind() == TokenKind.INTEGER ? LiteralKind.INTEGER : LiteralKind.DECIMAL;
+            literal = new Literal(kind, token.getText(queryString));
+          }
+          break;
+        case STRING:
+          if (braceDepth == 0) {
+            LiteralKind kind = LiteralKind.STRING;
+            if (isKeyword(queryString, previous, beforePrevious, "DATE")) {
+              kind = LiteralKind.DATE;
+            } else if (isKeyword(queryString, previous, beforePrevious, "TIME")) {
+              kind = LiteralKind.TIME;
+            } else if (isKeyword(queryString, previous, beforePrevious, "TIMESTAMP")) {
+              kind = LiteralKind.TIMESTAMP;
+            }
+            if (kind != LiteralKind.STRING) {
+              literalStart = previous.getStart(); // the keyword is part of the literal
+            }
+            literal = new Literal(kind, token.getText(queryString));
+          }
+          break;
+        default:
+          break;
+      }
+
+      if (literal != null) {
+        templateString.append(queryString, copiedUntil, literalStart).append('?');
+        copiedUntil = token.getEnd();
+
+        // literals that are equal to each other may be treated differently by the analysis than literals that are not
+        // (e.g. ORDER BY expressions that are equal to SELECT expressions), so queries with different patterns of
+        // equal literals get different templates
+        Integer firstEqualLiteral = literalIndexes.putIfAbsent(literal, literalCount);
+        signature.append(literal.getKind().ordinal()).append(':')
+            .append(firstEqualLiteral == null ? literalCount : firstEqualLiteral).append(',');
+
+        literalCount++;
+        parameters.add(literal);
+      }
+
+      beforePrevious = previous;
+      previous = token;
+    }
+
+    if (literalCount == 0) {
+      return null;
+    }
+
+    templateString.append(queryString, copiedUntil, queryString.length());
+    String templateKey = templateString + "\u0000" + signature;
+    return new ParameterizedQuery(templateString.toString(), templateKey, parameters);
+  }
+
+  private static boolean isKeyword(String queryString, Token token, Token previousToken, String keyword) {
+    if (token == null || token.getKind() != TokenKind.REGULAR_IDENTIFIER) {
+      return false;
+    }
+    if (previousToken != null && previousToken.getKind() == TokenKind.SYMBOL
+        && queryString.charAt(previousToken.getStart()) == '.') {
+      return false; // property access like n.date
+    }
+    return token.getText(queryString).equalsIgnoreCase(keyword);
+  }
+
+  String getTemplateString() {
+    return templateString;
+  }
+
+  /**
+   * @return a key that is equal for two queries if and only if they can share the same template
+   */
+  String getTemplateKey() {
+    return templateKey;
+  }
+
+  /**
+   * Substitutes the literals of this query into the analyzed AST of the template.
+   *
+   * @return the AST of this query, or null if one of the literals is invalid, in which case the query should be parsed
+   *         so that a proper error message is generated
+   */
+  IStrategoTerm substituteLiterals(IStrategoTerm templateAst) {
+    try {
+      return substitute(templateAst);
+    } catch (InvalidLiteralException e) {
+      return null;
+    }
+  }
+
+  private IStrategoTerm substitute(IStrategoTerm t) throws InvalidLiteralException {
+    switch (t.getTermType()) {
+      case IStrategoTerm.APPL:
+        String constructorName = ((IStrategoAppl) t).getConstructor().getName();
+        if (constructorName.equals("BindVariable")) {
+          return substituteBindVariable(t);
+        } else if (constructorName.equals("UMin")) {
+          // the normalizer folds the minus into numeric literals, so we do the same
+          IStrategoTerm expT = t.getSubterm(0);
+          Literal literal = getLiteral(expT);
+          if (literal != null && (literal.getKind() == LiteralKind.INTEGER || literal.getKind() == LiteralKind.DECIMAL)) {
+            IStrategoConstructor constructor = literal.getKind() == LiteralKind.INTEGER ? INTEGER : DECIMAL;
+            return TERM_FACTORY.makeAppl(constructor, TERM_FACTORY.makeString("-" + literal.getText()));
+          }
+        }
+        IStrategoTerm[] kids = substituteSubterms(t);
+        return kids == null ? t
+            : TERM_FACTORY.makeAppl(((IStrategoAppl) t).getConstructor(), kids, t.getAnnotations());
+      case IStrategoTerm.LIST:
+        kids = substituteSubterms(t);
+        return kids == null ? t : TERM_FACTORY.makeList(kids, t.getAnnotations());
+      case IStrategoTerm.TUPLE:
+        kids = substituteSubterms(t);
+        return kids == null ? t : TERM_FACTORY.makeTuple(kids, t.getAnnotations());
+      default:
+        return t;
+    }
+  }
+
+  /**
+   * @return the new subterms, or null if none of the subterms changed
+   */
+  private IStrategoTerm[] substituteSubterms(IStrategoTerm t) throws InvalidLiteralException {
+    IStrategoTerm[] kids = null;
+    int subtermCount = t.getSubtermCount();
+    for (int i = 0; i < subtermCount; i++) {
+      IStrategoTerm kid = t.getSubterm(i);
+      IStrategoTerm newKid = substitute(kid);
+      if (newKid != kid && kids == null) {
+        kids = t.getAllSubterms().clone();
+      }
+      if (kids != null) {
+        kids[i] = newKid;
+      }
+    }
+    return kids;
+  }
+
+  private IStrategoTerm substituteBindVariable(IStrategoTerm bindVariableT) throws InvalidLiteralException {
+    int parameterIndex = getParameterIndex(bindVariableT);
+    Literal literal = parameters.get(parameterIndex);
+    if (literal == null) {
+      // a bind variable of the original query; renumber it since the literals before it are no longer bind variables
+      return TERM_FACTORY.makeAppl(BIND_VARIABLE, TERM_FACTORY.makeInt(originalParameterIndexes[parameterIndex]));
+    }
+
+    String text = literal.getText();
+    switch (literal.getKind()) {
+      case INTEGER:
+        return TERM_FACTORY.makeAppl(INTEGER, TERM_FACTORY.makeString(text));
+      case DECIMAL:
+        return TERM_FACTORY.makeAppl(DECIMAL, TERM_FACTORY.makeString(text));
+      case STRING:
+        String s = unquote(text);
+        if (s.contains("\\'")) {
+          throw new InvalidLiteralException(); // not allowed since PGQL 1.3
+        }
+        return TERM_FACTORY.makeAppl(STRING, TERM_FACTORY.makeString(s.replace("''", "'")));
+      case DATE:
+        s = unquote(text);
+        try {
+          LocalDate.parse(s, SqlDateTimeFormatter.SQL_DATE);
+        } catch (DateTimeParseException e) {
+          throw new InvalidLiteralException();
+        }
+        return TERM_FACTORY.makeAppl(DATE, TERM_FACTORY.makeString(s));
+      case TIME:
+        s = unquote(text);
+        try {
+          LocalTime.parse(s, SqlDateTimeFormatter.SQL_TIME);
+        } catch (DateTimeParseException e) {
+          try {
+            OffsetTime.parse(s, SqlDateTimeFormatter.SQL_TIME_WITH_TIMEZONE);
+          } catch (DateTimeParseException e2) {
+            throw new InvalidLiteralException();
+          }
+        }
+        return TERM_FACTORY.makeAppl(TIME, TERM_FACTORY.makeString(s));
+      case TIMESTAMP:
+        s = unquote(text);
+        try {
+          LocalDateTime.parse(s, SqlDateTimeFormatter.SQL_TIMESTAMP);
+        } catch (DateTimeParseException e) {
+          try {
+            OffsetDateTime.parse(s, SqlDateTimeFormatter.SQL_TIMESTAMP_WITH_TIMEZONE);
+          } catch (DateTimeParseException e2) {
+            throw new InvalidLiteralException();
+          }
+        }
+        return TERM_FACTORY.makeAppl(TIMESTAMP, TERM_FACTORY.makeString(s));
+      default:
+        throw new IllegalArgumentException(literal.getKind().toString());
+    }
+  }
+
+  /**
+   * @return the literal that the given term is a bind variable for, or null if the term is not such a bind variable
+   */
+  private Literal getLiteral(IStrategoTerm t) throws InvalidLiteralException {
+    if (t.getTermType() != IStrategoTerm.APPL
+        || !((IStrategoAppl) t).getConstructor().getName().equals("BindVariable")) {
+      return null;
+    }
+    return parameters.get(getParameterIndex(t));
+  }
+
+  private int getParameterIndex(IStrategoTerm bindVariableT) throws InvalidLiteralException {
+    IStrategoTerm indexT = bindVariableT.getSubterm(0);
+    int parameterIndex = indexT.getTermType() == IStrategoTerm.INT ? ((IStrategoInt) indexT).intValue() : -1;
+    if (parameterIndex < 0 || parameterIndex >= parameters.size()) {
+      // the lexer and the parser disagree about the bind variables (e.g. because of a ? path quantifier)
+      throw new InvalidLiteralException();
+    }
+    return parameterIndex;
+  }
+
+  private static String unquote(String text) throws InvalidLiteralException {
+    if (text.length() < 2 || text.charAt(text.length() - 1) != '\'') {
+      throw new InvalidLiteralException(); // unterminated string
+    }
+    return text.substring(1, text.length() - 1);
+  }
+
+  static class Literal {
+
+    private final LiteralKind kind;
+
+    private final String text;
+
+    Literal(LiteralKind kind, String text) {
+      this.kind = kind;
+      this.text = text;
+    }
+
+    LiteralKind getKind() {
+      return kind;
+    }
+
+    /**
+     * @return the literal as it appears in the query, but without the DATE/TIME/TIMESTAMP keyword
+     */
+    String getText() {
+      return text;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * kind.hashCode() + text.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      Literal other = (Literal) obj;
+      return kind == other.kind && text.equals(other.text);
+    }
+  }
+
+  private static class InvalidLiteralException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+  }
+}
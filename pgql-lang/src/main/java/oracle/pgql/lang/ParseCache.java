@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size-bounded, thread-safe cache keyed by query string. The least recently used entry is evicted when the cache is
+ * full.
+ */
+class ParseCache<V> {
+
+  private final int maxSize;
+
+  private final LinkedHashMap<String, V> entries;
+
+  private long hitCount = 0;
+
+  private long missCount = 0;
+
+  private long evictionCount = 0;
+
+  ParseCache(int maxSize) {
+    if (maxSize < 1) {
+      throw new IllegalArgumentException("Cache size should be at least 1 but was " + maxSize);
+    }
+    this.maxSize = maxSize;
+    this.entries = new LinkedHashMap<String, V>(16, 0.75f, true) {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+        if (size() > ParseCache.this.maxSize) {
+          evictionCount++;
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * @return the cached value for the query, or null if there is none
+   */
+  synchronized V get(String queryString) {
+    V value = entries.get(queryString);
+    if (value == null) {
+      missCount++;
+    } else {
+      hitCount++;
+    }
+    return value;
+  }
+
+  synchronized void put(String queryString, V value) {
+    entries.put(queryString, value);
+  }
+
+  synchronized void clear() {
+    entries.clear();
+  }
+
+  synchronized ParseCacheStatistics getStatistics() {
+    return new ParseCacheStatistics(maxSize, entries.size(), hitCount, missCount, evictionCount);
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+/**
+ * A snapshot of the counters of the parse cache of a {@link Pgql} instance.
+ */
+public class ParseCacheStatistics {
+
+  private final int maxSize;
+
+  private final int size;
+
+  private final long hitCount;
+
+  private final long missCount;
+
+  private final long evictionCount;
+
+  public ParseCacheStatistics(int maxSize, int size, long hitCount, long missCount, long evictionCount) {
+    this.maxSize = maxSize;
+    this.size = size;
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.evictionCount = evictionCount;
+  }
+
+  /**
+   * @return the maximum number of results that the cache holds
+   */
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * @return the number of results currently in the cache
+   */
+  public int getSize() {
+    return size;
+  }
+
+  /**
+   * @return the number of lookups that returned a cached result
+   */
+  public long getHitCount() {
+    return hitCount;
+  }
+
+  /**
+   * @return the number of lookups that required a query to be parsed
+   */
+  public long getMissCount() {
+    return missCount;
+  }
+
+  /**
+   * @return the number of results that were removed from the cache to make room for new ones
+   */
+  public long getEvictionCount() {
+    return evictionCount;
+  }
+
+  @Override
+  public String toString() {
+    return "ParseCacheStatistics [maxSize=" + maxSize + ", size=" + size + ", hitCount=" + hitCount + ", missCount="
+        + missCount + ", evictionCount=" + evictionCount + "]";
+  }
+}
@@ -0,0 +1,16 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+/**
+ * Receives the metrics of every query that is parsed by a {@link Pgql} instance (see
+ * {@link Pgql#addParseListener(ParseListener)}).
+ *
+ * Listeners are called on the thread that parsed the query, right after parsing, so they should return quickly.
+ * Exceptions thrown by a listener are logged and otherwise ignored.
+ */
+public interface ParseListener {
+
+  void queryParsed(ParseMetrics metrics);
+}
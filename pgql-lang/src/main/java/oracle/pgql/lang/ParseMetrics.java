@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+/**
+ * Timings and outcome of parsing a single query. All times are in nanoseconds. Phases that did not run take 0
+ * nanoseconds, for example all phases of a query that was found in the parse cache.
+ */
+public class ParseMetrics {
+
+  public enum Source {
+    /**
+     * The result was found in the parse cache (see {@link Pgql#setParseCacheSize(int)}).
+     */
+    PARSE_CACHE,
+
+    /**
+     * The result was created from a query template (see {@link Pgql#setQueryTemplateCacheSize(int)}).
+     */
+    QUERY_TEMPLATE,
+
+    /**
+     * The query was parsed and analyzed by Spoofax.
+     */
+    PARSER,
+
+    /**
+     * The query was parsed without Spoofax (see {@link Pgql#setFastPathParsing(boolean)}).
+     */
+    FAST_PATH
+  }
+
+  public enum Outcome {
+    VALID,
+
+    SYNTAX_ERROR,
+
+    /**
+     * The syntax of the query is valid but the query has semantic errors, such as undefined variables.
+     */
+    ANALYSIS_ERROR,
+
+    /**
+     * Parsing failed with an exception.
+     */
+    FAILED
+  }
+
+  private final int queryLength;
+
+  private final long startTime;
+
+  private Source source = Source.PARSER;
+
+  private Outcome outcome;
+
+  private long lockWaitNanos;
+
+  private long parseNanos;
+
+  private long analysisNanos;
+
+  private long translationNanos;
+
+  private long versionDetectionNanos;
+
+  private long totalNanos;
+
+  ParseMetrics(int queryLength) {
+    this.queryLength = queryLength;
+    this.startTime = System.nanoTime();
+  }
+
+  /**
+   * @return the number of characters in the query string
+   */
+  public int getQueryLength() {
+    return queryLength;
+  }
+
+  public Source getSource() {
+    return source;
+  }
+
+  public Outcome getOutcome() {
+    return outcome;
+  }
+
+  /**
+   * @return the time spent waiting for a parser to become available, including waiting for PGQL to be initialized
+   */
+  public long getLockWaitNanos() {
+    return lockWaitNanos;
+  }
+
+  /**
+   * @return the time spent parsing the query string into an AST
+   */
+  public long getParseNanos() {
+    return parseNanos;
+  }
+
+  /**
+   * @return the time spent on name resolution and type checking of the AST
+   */
+  public long getAnalysisNanos() {
+    return analysisNanos;
+  }
+
+  /**
+   * @return the time spent translating the analyzed AST into a {@link oracle.pgql.lang.ir.PgqlStatement}
+   */
+  public long getTranslationNanos() {
+    return translationNanos;
+  }
+
+  /**
+   * @return the time spent detecting the PGQL version of the query and counting its bind variables
+   */
+  public long getVersionDetectionNanos() {
+    return versionDetectionNanos;
+  }
+
+  /**
+   * @return the time from the start of the parse call until the result was available, including time spent in a
+   *         queue (see {@link Pgql#parseAsync(String)})
+   */
+  public long getTotalNanos() {
+    return totalNanos;
+  }
+
+  void setSource(Source source) {
+    this.source = source;
+  }
+
+  void setLockWaitNanos(long lockWaitNanos) {
+    this.lockWaitNanos = lockWaitNanos;
+  }
+
+  void setParseNanos(long parseNanos) {
+    this.parseNanos = parseNanos;
+  }
+
+  void setAnalysisNanos(long analysisNanos) {
+    this.analysisNanos = analysisNanos;
+  }
+
+  void setTranslationNanos(long translationNanos) {
+    this.translationNanos = translationNanos;
+  }
+
+  void setVersionDetectionNanos(long versionDetectionNanos) {
+    this.versionDetectionNanos = versionDetectionNanos;
+  }
+
+  /**
+   * @param result
+   *          the parse result, or null if parsing failed with an exception
+   */
+  void complete(PgqlResult result) {
+    totalNanos = System.nanoTime() - startTime;
+    if (result == null) {
+      outcome = Outcome.FAILED;
+    } else if (result.isQueryValid()) {
+      outcome = Outcome.VALID;
+    } else if (result.isSyntaxValid()) {
+      outcome = Outcome.ANALYSIS_ERROR;
+    } else {
+      outcome = Outcome.SYNTAX_ERROR;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "ParseMetrics [queryLength=" + queryLength + ", source=" + source + ", outcome=" + outcome
+        + ", lockWaitNanos=" + lockWaitNanos + ", parseNanos=" + parseNanos + ", analysisNanos=" + analysisNanos
+        + ", translationNanos=" + translationNanos + ", versionDetectionNanos=" + versionDetectionNanos
+        + ", totalNanos=" + totalNanos + "]";
+  }
+}
@@ -6,36 +6,34 @@ package oracle.pgql.lang;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStream;
-import java.io.UnsupportedEncodingException;
 import java.net.URL;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.vfs2.FileObject;
 import org.metaborg.core.MetaborgException;
 import org.metaborg.core.analysis.AnalysisException;
 import org.metaborg.core.completion.ICompletion;
-import org.metaborg.core.config.IProjectConfig;
-import org.metaborg.core.config.ISourceConfig;
 import org.metaborg.core.context.ContextException;
 import org.metaborg.core.context.ITemporaryContext;
-import org.metaborg.core.language.ILanguageComponent;
-import org.metaborg.core.language.ILanguageDiscoveryRequest;
-import org.metaborg.core.language.ILanguageImpl;
-import org.metaborg.core.language.LanguageIdentifier;
-import org.metaborg.core.language.LanguageUtils;
 import org.metaborg.core.messages.IMessage;
-import org.metaborg.core.project.IProject;
-import org.metaborg.core.project.Project;
 import org.metaborg.core.source.AffectedSourceHelper;
+import org.metaborg.core.source.ISourceRegion;
 import org.metaborg.core.syntax.ParseException;
 import org.metaborg.spoofax.core.Spoofax;
 import org.metaborg.spoofax.core.SpoofaxModule;
@@ -43,6 +41,8 @@ import org.metaborg.spoofax.core.unit.ISpoofaxAnalyzeUnit;
 import org.metaborg.spoofax.core.unit.ISpoofaxInputUnit;
 import org.metaborg.spoofax.core.unit.ISpoofaxParseUnit;
 import org.metaborg.util.concurrent.IClosableLock;
+import org.metaborg.util.task.ICancel;
+import org.metaborg.util.task.NullProgress;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spoofax.interpreter.terms.IStrategoInt;
@@ -54,15 +54,22 @@ import com.google.common.collect.Lists;
 import oracle.pgql.lang.completion.PgqlCompletionGenerator;
 import oracle.pgql.lang.editor.completion.PgqlCompletion;
 import oracle.pgql.lang.editor.completion.PgqlCompletionContext;
+import oracle.pgql.lang.ir.GraphQuery;
 import oracle.pgql.lang.ir.PgqlStatement;
+import oracle.pgql.lang.ir.SchemaQualifiedName;
+import oracle.pgql.lang.ir.SelectQuery;
 import oracle.pgql.lang.ir.StatementType;
+import oracle.pgql.lang.ir.modify.InsertClause;
+import oracle.pgql.lang.ir.modify.ModifyQuery;
+import oracle.pgql.lang.util.ConstantFolder;
 
 import static oracle.pgql.lang.CheckInvalidJavaComment.checkInvalidJavaComment;
 
 public class Pgql implements Closeable {
 
   /**
-   * Spoofax is not thread safe, so any method that uses Spoofax should use the lock.
+   * Guards the global initialization and the set of instances. Spoofax is not thread safe, so any method that uses
+   * Spoofax should first acquire a runtime from the runtime pool.
    */
   private static final Object lock = new Object();
 
@@ -77,25 +84,61 @@ public class Pgql implements Closeable {
 
   private static final String SPOOFAX_BINARIES = "pgql.spoofax-language";
 
+  private static final String SPOOFAX_BINARIES_DIGEST = SPOOFAX_BINARIES + ".sha256";
+
   private static final int POS_PGQL_VERSION = 9;
 
   private static final int POS_BIND_VARIABLE_COUNT = 10;
 
   private static final PgqlVersion LATEST_VERSION = PgqlVersion.V_1_3_OR_UP;
 
-  private static boolean isGloballyInitialized = false;
+  private static final int DEFAULT_PARSER_POOL_SIZE = 1;
+
+  private static final int DEFAULT_ASYNC_PARSE_QUEUE_CAPACITY = 1024;
+
+  private static final int DEFAULT_BULK_INSERT_THRESHOLD = 1000;
+
+  private static final int BULK_INSERT_CHUNK_SIZE = 100;
+
+  /**
+   * Completes with the runtime pool once the global initialization has finished; null if PGQL is not initialized.
+   */
+  private static CompletableFuture<SpoofaxRuntimePool> globalInitialization;
+
+  private static int globalParserPoolSize;
+
+  private static long keepAliveMillis = 0;
+
+  private static ScheduledThreadPoolExecutor keepAliveScheduler;
+
+  private static ScheduledFuture<?> scheduledRelease;
+
+  /**
+   * Incremented whenever a scheduled release of the global instance becomes obsolete.
+   */
+  private static long releaseGeneration;
+
+  private volatile boolean isInitialized;
+
+  private final CompletableFuture<SpoofaxRuntimePool> initialization;
+
+  private final int parserPoolSize;
 
-  private static Spoofax spoofax;
+  private volatile ParseCache<PgqlResult> parseCache;
 
-  private static ILanguageImpl pgqlLang;
+  private volatile ParseCache<QueryTemplate> templateCache;
 
-  private static FileObject dummyProjectDir;
+  private volatile boolean compactResults = false;
 
-  private static IProject dummyProject;
+  private volatile int bulkInsertThreshold = DEFAULT_BULK_INSERT_THRESHOLD;
 
-  private static File spoofaxBinaryFile;
+  private volatile boolean fastPathParsing = false;
 
-  private boolean isInitialized;
+  private volatile boolean constantFolding = false;
+
+  private volatile AsyncParseExecutor asyncParseExecutor;
+
+  private final List<ParseListener> parseListeners = new CopyOnWriteArrayList<>();
 
   /**
    * Loads PGQL Spoofax binaries if not done already.
@@ -106,103 +149,946 @@ public class Pgql implements Closeable {
     this(new PgqlConfig(), null);
   }
 
+  /**
+   * Loads PGQL Spoofax binaries if not done already.
+   *
+   * @param parserPoolSize
+   *          the number of independent parsers to load, which bounds the number of queries that can be parsed in
+   *          parallel; only has an effect if the global PGQL instance is not initialized yet
+   */
+  public Pgql(int parserPoolSize) throws PgqlException {
+    this(new PgqlConfig(), null, parserPoolSize);
+  }
+
   public Pgql(SpoofaxModule module, String tmpDir) throws PgqlException {
+    this(module, tmpDir, DEFAULT_PARSER_POOL_SIZE);
+  }
+
+  public Pgql(SpoofaxModule module, String tmpDir, int parserPoolSize) throws PgqlException {
+    this(module, tmpDir, parserPoolSize, false);
+    try {
+      awaitInitialization();
+    } catch (PgqlException e) {
+      close();
+      throw e;
+    }
+  }
+
+  private Pgql(SpoofaxModule module, String tmpDir, int parserPoolSize, boolean initializeInBackground) {
+    if (parserPoolSize < 1) {
+      throw new IllegalArgumentException("Parser pool size should be at least 1 but was " + parserPoolSize);
+    }
+    CompletableFuture<SpoofaxRuntimePool> newInitialization = null;
     synchronized (lock) {
-      if (!isGloballyInitialized) {
-        initializeGlobalInstance(module, tmpDir);
+      cancelScheduledRelease();
+      if (globalInitialization == null) {
+        newInitialization = new CompletableFuture<>();
+        globalInitialization = newInitialization;
+        globalParserPoolSize = parserPoolSize;
+      } else if (globalParserPoolSize != parserPoolSize) {
+        LOG.info("PGQL is already initialized with " + globalParserPoolSize + " parser(s); ignoring requested pool size "
+            + parserPoolSize);
       }
+      initialization = globalInitialization;
+      this.parserPoolSize = globalParserPoolSize;
       instances.add(this);
       isInitialized = true;
     }
+
+    if (newInitialization != null) {
+      CompletableFuture<SpoofaxRuntimePool> future = newInitialization;
+      Runnable initializer = () -> initializeGlobalInstance(future, module, tmpDir, parserPoolSize);
+      if (initializeInBackground) {
+        Thread thread = new Thread(initializer, "pgql-initializer");
+        thread.setDaemon(true);
+        thread.start();
+      } else {
+        initializer.run();
+      }
+    }
+  }
+
+  /**
+   * Creates a PGQL instance without waiting for the PGQL Spoofax binaries to be loaded. If they are not loaded yet,
+   * loading starts on a background thread. Parsing and completion wait until loading has finished.
+   *
+   * @return a PGQL instance that may not be initialized yet (see {@link #whenInitialized()})
+   */
+  public static Pgql initializeInBackground() {
+    return initializeInBackground(new PgqlConfig(), null, DEFAULT_PARSER_POOL_SIZE);
+  }
+
+  /**
+   * Same as {@link #initializeInBackground()}, but with the parameters of {@link #Pgql(SpoofaxModule, String, int)}.
+   */
+  public static Pgql initializeInBackground(SpoofaxModule module, String tmpDir, int parserPoolSize) {
+    return new Pgql(module, tmpDir, parserPoolSize, true);
+  }
+
+  /**
+   * Keeps the PGQL Spoofax binaries loaded for some time after the last PGQL instance was closed, so that code that
+   * creates and closes PGQL instances frequently does not have to load them again every time. By default, they are
+   * released as soon as the last PGQL instance is closed.
+   *
+   * @param keepAliveTime
+   *          the time to keep the binaries loaded while there are no open PGQL instances, or 0 to release them right
+   *          away
+   * @param unit
+   *          the unit of keepAliveTime
+   */
+  public static void setKeepAliveTime(long keepAliveTime, TimeUnit unit) {
+    if (keepAliveTime < 0) {
+      throw new IllegalArgumentException("Keep-alive time should not be negative but was " + keepAliveTime);
+    }
+    synchronized (lock) {
+      keepAliveMillis = unit.toMillis(keepAliveTime);
+    }
+  }
+
+  /**
+   * @return true if the PGQL Spoofax binaries are loaded or being loaded, even if no PGQL instance is open
+   */
+  static boolean isGloballyInitialized() {
+    synchronized (lock) {
+      return globalInitialization != null;
+    }
+  }
+
+  /**
+   * @return a future that completes with this instance once the PGQL Spoofax binaries are loaded, or that completes
+   *         exceptionally with a {@link PgqlException} if loading them failed
+   */
+  public CompletableFuture<Pgql> whenInitialized() {
+    CompletableFuture<Pgql> future = new CompletableFuture<>();
+    initialization.whenComplete((pool, exception) -> {
+      if (exception == null) {
+        future.complete(this);
+      } else {
+        future.completeExceptionally(exception);
+      }
+    });
+    return future;
   }
 
-  private void initializeGlobalInstance(SpoofaxModule spoofaxModule, String tmpDir) throws PgqlException {
+  private void initializeGlobalInstance(CompletableFuture<SpoofaxRuntimePool> future,
+      SpoofaxModule spoofaxModule, String tmpDir, int parserPoolSize) {
+    SpoofaxRuntimePool pool;
     try {
-      // initialize a new Spoofax
-      spoofax = new Spoofax(spoofaxModule);
+      pool = createRuntimePool(spoofaxModule, tmpDir, parserPoolSize);
+    } catch (PgqlException | RuntimeException e) {
+      synchronized (lock) {
+        if (globalInitialization == future) {
+          globalInitialization = null; // the next instance tries again
+        }
+      }
+      future.completeExceptionally(e);
+      return;
+    }
+    future.complete(pool);
+  }
 
+  private SpoofaxRuntimePool createRuntimePool(SpoofaxModule spoofaxModule, String tmpDir, int parserPoolSize)
+      throws PgqlException {
+    List<SpoofaxRuntime> runtimes = new ArrayList<>(parserPoolSize);
+    SpoofaxBinary spoofaxBinary = null;
+    try {
       // copy the PGQL Spoofax binary to the local file system.
       // IMPORTANT: don't replace this with resolveFile("res:...") or resolve("res:...") because VFS will fail to
       // replicate the resource when it's nested inside multiple JAR or WAR files.
+      // the binary is cached on disk across JVMs, so usually this only checks that the cached copy is intact
       URL inputUrl = getClass().getResource("/" + SPOOFAX_BINARIES);
-      spoofaxBinaryFile = tmpDir == null ? File.createTempFile(SPOOFAX_BINARIES, UUID.randomUUID().toString())
-          : new File(tmpDir, SPOOFAX_BINARIES + UUID.randomUUID());
-      FileUtils.copyURLToFile(inputUrl, spoofaxBinaryFile);
-      FileObject fileObject = spoofax.resourceService.resolve("jar:" + spoofaxBinaryFile.getAbsolutePath() + "!");
-
-      Iterable<ILanguageDiscoveryRequest> requests = spoofax.languageDiscoveryService.request(fileObject);
-      Iterable<ILanguageComponent> components = spoofax.languageDiscoveryService.discover(requests);
-      Set<ILanguageImpl> implementations = LanguageUtils.toImpls(components);
-      pgqlLang = LanguageUtils.active(implementations);
-      assert (pgqlLang != null);
-      dummyProjectDir = spoofax.resourceService.resolve("ram://pgql/");
-
-      final LanguageIdentifier id = pgqlLang.id();
-      dummyProject = new Project(dummyProjectDir, new IProjectConfig() {
-
-        @Override
-        public Collection<LanguageIdentifier> sourceDeps() {
-          Set<LanguageIdentifier> sourceDeps = new HashSet<>();
-          sourceDeps.add(id);
-          return sourceDeps;
+      URL digestUrl = getClass().getResource("/" + SPOOFAX_BINARIES_DIGEST); // null if not generated by the build
+      spoofaxBinary = SpoofaxBinary.extract(inputUrl, digestUrl, SPOOFAX_BINARIES, tmpDir);
+      File spoofaxBinaryFile = spoofaxBinary.getFile();
+
+      // each runtime is a separate Spoofax instance, all of them loading the same binary
+      for (int i = 0; i < parserPoolSize; i++) {
+        SpoofaxRuntime runtime = new SpoofaxRuntime(spoofaxModule, spoofaxBinaryFile);
+        runtimes.add(runtime);
+        parseQuery("SELECT * FROM MATCH (initQuery)", runtime); // make Spoofax initialize the language
+      }
+    } catch (MetaborgException | IOException e) {
+      runtimes.forEach(SpoofaxRuntime::close);
+      if (spoofaxBinary != null) {
+        spoofaxBinary.release();
+      }
+      throw new PgqlException("Failed to initialize PGQL", e);
+    }
+
+    return new SpoofaxRuntimePool(runtimes, spoofaxBinary);
+  }
+
+  /**
+   * Waits for the global initialization if it is still in progress.
+   */
+  private SpoofaxRuntimePool awaitInitialization() throws PgqlException {
+    try {
+      return initialization.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new PgqlException("Interrupted while waiting for PGQL to initialize", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof PgqlException) {
+        throw (PgqlException) e.getCause();
+      }
+      throw new PgqlException("Failed to initialize PGQL", e.getCause());
+    }
+  }
+
+  /**
+   * Parse a PGQL query (either a SELECT or MODIFY query).
+   *
+   * @param queryString
+   *          PGQL query to parse
+   * @return parse result holding either an AST or error messages
+   * @throws PgqlException
+   *           if the query contains errors
+   */
+  public PgqlResult parse(String queryString) throws PgqlException {
+    return parse(queryString, new PgqlCancellationToken());
+  }
+
+  /**
+   * Parse a PGQL query, giving up once the timeout has passed. This protects other queries against queries that take
+   * a very long time to parse, since such queries hold on to a parser until they are done.
+   *
+   * @param queryString
+   *          PGQL query to parse
+   * @param timeout
+   *          the maximum time to wait for a parser and to parse the query
+   * @param unit
+   *          the unit of timeout
+   * @return parse result holding either an AST or error messages
+   * @throws PgqlException
+   *           if the query contains errors or if parsing did not finish before the timeout
+   */
+  public PgqlResult parse(String queryString, long timeout, TimeUnit unit) throws PgqlException {
+    return parse(queryString, new PgqlCancellationToken(timeout, unit));
+  }
+
+  /**
+   * Parse a PGQL query that can be cancelled through the given token (see {@link PgqlCancellationToken}).
+   *
+   * @param queryString
+   *          PGQL query to parse
+   * @param cancellationToken
+   *          token to cancel parsing with
+   * @return parse result holding either an AST or error messages
+   * @throws PgqlException
+   *           if the query contains errors or if the token was cancelled before parsing finished
+   */
+  public PgqlResult parse(String queryString, PgqlCancellationToken cancellationToken) throws PgqlException {
+    checkInitialized();
+    ParseMetrics metrics = new ParseMetrics(queryString.length());
+    ParseCache<PgqlResult> cache = parseCache;
+    if (cache != null) {
+      PgqlResult cachedResult = cache.get(queryString);
+      if (cachedResult != null) {
+        metrics.setSource(ParseMetrics.Source.PARSE_CACHE);
+        notifyParseListeners(metrics, cachedResult);
+        return cachedResult;
+      }
+    }
+    return parseUncached(queryString, cache, metrics, cancellationToken);
+  }
+
+  /**
+   * Parse a PGQL query asynchronously. Queries are parsed by a fixed number of background threads (one per parser in
+   * the pool, see {@link #Pgql(int)}). Queries that are waiting for a thread are held in a bounded queue; if the queue
+   * is full, the query is not parsed and the returned future fails immediately, so that the caller can shed load or
+   * retry later. Cached results (see {@link #setParseCacheSize(int)}) are returned without queuing.
+   *
+   * @param queryString
+   *          PGQL query to parse
+   * @return a future holding the parse result, or that completes exceptionally with a {@link PgqlException} if the
+   *         queue is full or if parsing failed
+   */
+  public CompletableFuture<PgqlResult> parseAsync(String queryString) {
+    ParseMetrics metrics = new ParseMetrics(queryString.length());
+    ParseCache<PgqlResult> cache = parseCache;
+    AsyncParseExecutor executor;
+    try {
+      checkInitialized();
+      if (cache != null) {
+        PgqlResult cachedResult = cache.get(queryString);
+        if (cachedResult != null) {
+          metrics.setSource(ParseMetrics.Source.PARSE_CACHE);
+          notifyParseListeners(metrics, cachedResult);
+          return CompletableFuture.completedFuture(cachedResult);
         }
+      }
+      executor = getAsyncParseExecutor();
+    } catch (PgqlException e) {
+      CompletableFuture<PgqlResult> future = new CompletableFuture<>();
+      future.completeExceptionally(e);
+      return future;
+    }
+    return executor.submit(() -> parseUncached(queryString, cache, metrics, new PgqlCancellationToken()));
+  }
+
+  /**
+   * Sets the maximum number of queries that can wait to be parsed by {@link #parseAsync(String)}. Queries that are
+   * already waiting when the capacity is changed are still parsed.
+   *
+   * @param queueCapacity
+   *          the capacity of the queue (default: 1024)
+   */
+  public void setAsyncParseQueueCapacity(int queueCapacity) throws PgqlException {
+    checkInitialized();
+    AsyncParseExecutor newExecutor = new AsyncParseExecutor(parserPoolSize, queueCapacity);
+    AsyncParseExecutor oldExecutor;
+    synchronized (this) {
+      // close() may have run since the check above; it shuts down the executor while holding this monitor, so checking
+      // again here guarantees that it also shuts down the new executor
+      if (!isInitialized) {
+        newExecutor.shutdown();
+        checkInitialized();
+      }
+      oldExecutor = asyncParseExecutor;
+      asyncParseExecutor = newExecutor;
+    }
+    if (oldExecutor != null) {
+      oldExecutor.shutdownGracefully();
+    }
+  }
+
+  /**
+   * @return the number of queries that are waiting to be parsed by {@link #parseAsync(String)}, excluding the queries
+   *         that are being parsed
+   */
+  public int getAsyncParseQueueDepth() {
+    AsyncParseExecutor executor = asyncParseExecutor;
+    return executor == null ? 0 : executor.getQueueDepth();
+  }
+
+  /**
+   * @return the number of queries that were rejected by {@link #parseAsync(String)} because the queue was full
+   */
+  public long getAsyncParseRejectedCount() {
+    AsyncParseExecutor executor = asyncParseExecutor;
+    return executor == null ? 0 : executor.getRejectedCount();
+  }
 
-        @Override
-        public Collection<LanguageIdentifier> javaDeps() {
-          return Collections.emptySet();
+  private synchronized AsyncParseExecutor getAsyncParseExecutor() throws PgqlException {
+    if (asyncParseExecutor == null) {
+      checkInitialized();
+      asyncParseExecutor = new AsyncParseExecutor(parserPoolSize, DEFAULT_ASYNC_PARSE_QUEUE_CAPACITY);
+    }
+    return asyncParseExecutor;
+  }
+
+  private PgqlResult parseUncached(String queryString, ParseCache<PgqlResult> cache, ParseMetrics metrics,
+      PgqlCancellationToken cancellationToken) throws PgqlException {
+    PgqlResult result = null;
+    try {
+      result = parseUncachedHelper(queryString, cache, metrics, templateCache, cancellationToken);
+      return result;
+    } finally {
+      notifyParseListeners(metrics, result);
+    }
+  }
+
+  private PgqlResult parseUncachedHelper(String queryString, ParseCache<PgqlResult> cache, ParseMetrics metrics,
+      ParseCache<QueryTemplate> templates, PgqlCancellationToken cancellationToken) throws PgqlException {
+    PgqlResult result = null;
+    ParameterizedQuery parameterizedQuery = null;
+    boolean createTemplate = false;
+    if (fastPathParsing) {
+      SelectQuery query = FastPathParser.parse(queryString);
+      if (query != null) {
+        result = new PgqlResult(queryString, true, null, query, null, LATEST_VERSION, 0);
+        metrics.setSource(ParseMetrics.Source.FAST_PATH);
+      }
+    }
+    if (result == null && templates != null) {
+      parameterizedQuery = ParameterizedQuery.fromQuery(queryString);
+      if (parameterizedQuery != null) {
+        QueryTemplate template = templates.get(parameterizedQuery.getTemplateKey());
+        if (template == null) {
+          createTemplate = true;
+        } else if (template.isApplicable()) {
+          result = instantiateTemplate(queryString, parameterizedQuery, template);
+          if (result != null) {
+            metrics.setSource(ParseMetrics.Source.QUERY_TEMPLATE);
+          }
         }
+      }
+    }
 
-        @Override
-        public Collection<LanguageIdentifier> compileDeps() {
-          return Collections.emptySet();
+    if (result == null) {
+      long lockStartTime = System.nanoTime();
+      SpoofaxRuntimePool pool = getRuntimePool();
+      SpoofaxRuntime runtime = pool.acquire(cancellationToken);
+      metrics.setLockWaitNanos(System.nanoTime() - lockStartTime);
+      try {
+        int threshold = bulkInsertThreshold;
+        BulkInsert bulkInsert = threshold == 0 ? null : BulkInsert.fromQuery(queryString, threshold);
+        if (bulkInsert != null) {
+          result = parseBulkInsert(queryString, bulkInsert, runtime, metrics, cancellationToken);
+          createTemplate = false;
         }
+        if (result == null) {
+          result = parseQuery(queryString, runtime, null, metrics, cancellationToken).getResult();
+        }
+        if (createTemplate && result.isQueryValid()) {
+          templates.put(parameterizedQuery.getTemplateKey(), createTemplate(parameterizedQuery, result, runtime));
+        }
+      } finally {
+        pool.release(runtime);
+      }
+    }
+
+    if (constantFolding && result.isQueryValid()) {
+      result = foldConstants(result);
+    }
+    if (compactResults) {
+      result = result.compact();
+    }
+    if (cache != null) {
+      cache.put(queryString, result);
+    }
+    return result;
+  }
+
+  private static PgqlResult foldConstants(PgqlResult result) {
+    PgqlStatement statement = result.getPgqlStatement();
+    if (statement == null || (statement.getStatementType() != StatementType.SELECT
+        && statement.getStatementType() != StatementType.GRAPH_MODIFY)) {
+      return result;
+    }
+    return result.withStatement(new ConstantFolder().rewrite((GraphQuery) statement));
+  }
+
+  /**
+   * Parses a large INSERT statement in chunks (see {@link BulkInsert}).
+   *
+   * @return the parse result, or null if any of the chunks is invalid, in which case the statement needs to be parsed
+   *         as a whole to get the right error messages
+   */
+  private PgqlResult parseBulkInsert(String queryString, BulkInsert bulkInsert, SpoofaxRuntime runtime,
+      ParseMetrics metrics, PgqlCancellationToken cancellationToken) throws PgqlException {
+    SchemaQualifiedName graphName = null;
+    if (bulkInsert.getIntoClause() != null) {
+      String intoStatement = "INSERT " + bulkInsert.getIntoClause() + " VERTEX v";
+      PgqlResult intoResult = parseQuery(intoStatement, runtime, null, new ParseMetrics(intoStatement.length()),
+          cancellationToken).getResult();
+      if (!intoResult.isQueryValid()) {
+        return null;
+      }
+      ModifyQuery intoQuery = (ModifyQuery) intoResult.getGraphQuery();
+      graphName = ((InsertClause) intoQuery.getModifications().get(0)).getGraphName();
+    }
+
+    List<ModifyQuery> chunkQueries = new ArrayList<>();
+    PgqlVersion pgqlVersion = LATEST_VERSION;
+    long parseNanos = 0;
+    long analysisNanos = 0;
+    long translationNanos = 0;
+    long versionDetectionNanos = 0;
+    for (String chunkStatement : bulkInsert.getChunkStatements(BULK_INSERT_CHUNK_SIZE)) {
+      ParseMetrics chunkMetrics = new ParseMetrics(chunkStatement.length());
+      PgqlResult chunkResult = parseQuery(chunkStatement, runtime, null, chunkMetrics, cancellationToken).getResult();
+      parseNanos += chunkMetrics.getParseNanos();
+      analysisNanos += chunkMetrics.getAnalysisNanos();
+      translationNanos += chunkMetrics.getTranslationNanos();
+      versionDetectionNanos += chunkMetrics.getVersionDetectionNanos();
+      if (!chunkResult.isQueryValid() || !(chunkResult.getPgqlStatement() instanceof ModifyQuery)) {
+        return null;
+      }
+      chunkQueries.add((ModifyQuery) chunkResult.getPgqlStatement());
+      pgqlVersion = chunkResult.getPgqlVersion();
+    }
+    metrics.setParseNanos(parseNanos);
+    metrics.setAnalysisNanos(analysisNanos);
+    metrics.setTranslationNanos(translationNanos);
+    metrics.setVersionDetectionNanos(versionDetectionNanos);
+
+    ModifyQuery query = BulkInsert.merge(chunkQueries, graphName);
+    return new PgqlResult(queryString, true, null, query, null, pgqlVersion, 0);
+  }
+
+  /**
+   * Parse a batch of PGQL queries. This is cheaper than parsing the queries one by one: the queries are distributed
+   * over all the parsers in the pool (see {@link #Pgql(int)}), and each parser analyzes all its queries in the same
+   * context. The parse cache and query templates are bypassed.
+   *
+   * @param queryStrings
+   *          PGQL queries to parse
+   * @return the parse results, in the same order as the queries
+   * @throws PgqlException
+   *           if parsing any of the queries failed
+   */
+  public List<PgqlResult> parseAll(List<String> queryStrings) throws PgqlException {
+    return parseAll(queryStrings, new PgqlCancellationToken());
+  }
 
-        @Override
-        public String metaborgVersion() {
-          return null;
+  /**
+   * Parse a batch of PGQL queries (see {@link #parseAll(List)}), giving up once the token is cancelled (see
+   * {@link PgqlCancellationToken}). A timeout of the token applies to the batch as a whole.
+   *
+   * @param queryStrings
+   *          PGQL queries to parse
+   * @param cancellationToken
+   *          token to cancel parsing with
+   * @return the parse results, in the same order as the queries
+   * @throws PgqlException
+   *           if parsing any of the queries failed or if the token was cancelled before parsing finished
+   */
+  public List<PgqlResult> parseAll(List<String> queryStrings, PgqlCancellationToken cancellationToken)
+      throws PgqlException {
+    SpoofaxRuntimePool pool = getRuntimePool();
+    PgqlResult[] results = new PgqlResult[queryStrings.size()];
+    AtomicInteger nextQuery = new AtomicInteger();
+    int numParsers = Math.min(pool.size(), queryStrings.size());
+    if (numParsers <= 1) {
+      parseBatch(queryStrings, results, nextQuery, pool, cancellationToken);
+    } else {
+      // the calling thread is one of the parsers
+      AtomicInteger threadCount = new AtomicInteger();
+      ExecutorService executor = Executors.newFixedThreadPool(numParsers - 1, runnable -> {
+        Thread thread = new Thread(runnable, "pgql-batch-parser-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+      try {
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < numParsers - 1; i++) {
+          futures.add(executor.submit(() -> {
+            parseBatch(queryStrings, results, nextQuery, pool, cancellationToken);
+            return null;
+          }));
         }
+        parseBatch(queryStrings, results, nextQuery, pool, cancellationToken);
+        for (Future<Void> future : futures) {
+          future.get();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new PgqlException("Interrupted while parsing PGQL queries", e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof PgqlException) {
+          throw (PgqlException) e.getCause();
+        }
+        throw new PgqlException("Failed to parse PGQL queries", e.getCause());
+      } finally {
+        nextQuery.set(queryStrings.size()); // stop the other parsers in case of an exception
+        executor.shutdown();
+      }
+    }
+    return Arrays.asList(results);
+  }
+
+  /**
+   * Parse a script of PGQL queries that are separated by semicolons (see {@link #parseAll(List)}).
+   *
+   * @param script
+   *          PGQL queries separated by semicolons
+   * @return the parse results, in the same order as the queries in the script
+   * @throws PgqlException
+   *           if parsing any of the queries failed
+   */
+  public List<PgqlResult> parseScript(String script) throws PgqlException {
+    return parseAll(PgqlLexer.splitStatements(script));
+  }
+
+  /**
+   * Parse a script of PGQL queries that are separated by semicolons, giving up once the token is cancelled (see
+   * {@link #parseAll(List, PgqlCancellationToken)}).
+   *
+   * @param script
+   *          PGQL queries separated by semicolons
+   * @param cancellationToken
+   *          token to cancel parsing with
+   * @return the parse results, in the same order as the queries in the script
+   * @throws PgqlException
+   *           if parsing any of the queries failed or if the token was cancelled before parsing finished
+   */
+  public List<PgqlResult> parseScript(String script, PgqlCancellationToken cancellationToken) throws PgqlException {
+    return parseAll(PgqlLexer.splitStatements(script), cancellationToken);
+  }
 
-        @Override
-        public Collection<ISourceConfig> sources() {
-          return Collections.emptySet();
+  /**
+   * Parses queries until there are no more queries left, using a single parser and analysis context.
+   */
+  private void parseBatch(List<String> queryStrings, PgqlResult[] results, AtomicInteger nextQuery,
+      SpoofaxRuntimePool pool, PgqlCancellationToken cancellationToken) throws PgqlException {
+    long lockStartTime = System.nanoTime();
+    SpoofaxRuntime runtime = pool.acquire(cancellationToken);
+    long lockWaitNanos = System.nanoTime() - lockStartTime;
+    ITemporaryContext context = null;
+    List<ParseMetrics> completedMetrics = new ArrayList<>();
+    try {
+      int i;
+      while ((i = nextQuery.getAndIncrement()) < queryStrings.size()) {
+        String queryString = queryStrings.get(i);
+        ParseMetrics metrics = new ParseMetrics(queryString.length());
+        if (context == null) {
+          metrics.setLockWaitNanos(lockWaitNanos); // only the first query waits for the parser
+          context = createContext(runtime);
         }
-      });
+        try {
+          results[i] = parseQuery(queryString, runtime, context, metrics, cancellationToken).getResult();
+          if (constantFolding && results[i].isQueryValid()) {
+            results[i] = foldConstants(results[i]);
+          }
+          if (compactResults) {
+            results[i] = results[i].compact();
+          }
+        } finally {
+          metrics.complete(results[i]);
+          completedMetrics.add(metrics);
+        }
+      }
+    } catch (ContextException e) {
+      throw new PgqlException("Failed to parse PGQL query", e);
+    } catch (PgqlException | RuntimeException e) {
+      nextQuery.set(queryStrings.size()); // stop the other parsers
+      throw e;
+    } finally {
+      if (context != null) {
+        context.close();
+      }
+      pool.release(runtime);
+      // listeners are only notified once the parser is released, so that they cannot block other threads that need it
+      for (ParseMetrics metrics : completedMetrics) {
+        notifyParseListeners(metrics);
+      }
+    }
+  }
 
-      parseInternal("SELECT * FROM MATCH (initQuery)"); // make Spoofax initialize the language
-    } catch (MetaborgException | IOException e) {
-      throw new PgqlException("Failed to initialize PGQL", e);
+  /**
+   * Registers a listener that receives the timings and outcome of every query that is parsed by this instance through
+   * {@link #parse(String)}, {@link #parseAsync(String)}, {@link #parseAll(List)} or {@link #parseScript(String)}.
+   *
+   * @param listener
+   *          the listener to add
+   */
+  public void addParseListener(ParseListener listener) {
+    parseListeners.add(listener);
+  }
+
+  /**
+   * @param listener
+   *          the listener to remove
+   */
+  public void removeParseListener(ParseListener listener) {
+    parseListeners.remove(listener);
+  }
+
+  /**
+   * @param result
+   *          the parse result, or null if parsing failed with an exception
+   */
+  private void notifyParseListeners(ParseMetrics metrics, PgqlResult result) {
+    if (parseListeners.isEmpty()) {
+      return;
     }
+    metrics.complete(result);
+    notifyParseListeners(metrics);
+  }
 
-    isGloballyInitialized = true;
+  private void notifyParseListeners(ParseMetrics completedMetrics) {
+    for (ParseListener listener : parseListeners) {
+      try {
+        listener.queryParsed(completedMetrics);
+      } catch (RuntimeException e) {
+        LOG.warn("parse listener failed", e);
+      }
+    }
   }
 
   /**
-   * Parse a PGQL query (either a SELECT or MODIFY query).
+   * Checks the syntax of a query without analyzing it or translating it into a {@link PgqlStatement}. This is cheaper
+   * than {@link #parse(String)} but only detects errors in the grammar, not semantic errors such as undefined
+   * variables.
    *
    * @param queryString
-   *          PGQL query to parse
-   * @return parse result holding either an AST or error messages
+   *          PGQL query to validate
+   * @return the syntax errors of the query, if any
+   */
+  public SyntaxValidationResult validateSyntax(String queryString) throws PgqlException {
+    return validateSyntax(queryString, new PgqlCancellationToken());
+  }
+
+  /**
+   * Checks the syntax of a query (see {@link #validateSyntax(String)}), giving up once the token is cancelled (see
+   * {@link PgqlCancellationToken}).
+   *
+   * @param queryString
+   *          PGQL query to validate
+   * @param cancellationToken
+   *          token to cancel the validation with
+   * @return the syntax errors of the query, if any
    * @throws PgqlException
-   *           if the query contains errors
+   *           if the token was cancelled before the validation finished
    */
-  public PgqlResult parse(String queryString) throws PgqlException {
-    synchronized (lock) {
-      checkInitialized();
-      return parseInternal(queryString);
+  public SyntaxValidationResult validateSyntax(String queryString, PgqlCancellationToken cancellationToken)
+      throws PgqlException {
+    checkInitialized();
+    if (queryString.equals("")) {
+      String error = "Empty query string";
+      return new SyntaxValidationResult(queryString,
+          Collections.singletonList(new SyntaxError(error, -1, -1, -1, -1)), error);
+    }
+
+    SpoofaxRuntimePool pool = getRuntimePool();
+    SpoofaxRuntime runtime = pool.acquire(cancellationToken);
+    ISpoofaxParseUnit parseResult;
+    try {
+      parseResult = parseHelper(queryString, runtime.getQueryFile(), runtime, new SpoofaxCancel(cancellationToken));
+    } catch (ParseException e) {
+      throw new PgqlException("Failed to parse PGQL query", e);
+    } catch (InterruptedException e) {
+      if (cancellationToken.isCancelled()) {
+        throw cancellationToken.cancelledException(e);
+      }
+      Thread.currentThread().interrupt();
+      throw new PgqlException("Interrupted while parsing PGQL query", e);
+    } finally {
+      pool.release(runtime);
+    }
+
+    if (parseResult.success()) {
+      return new SyntaxValidationResult(queryString, Collections.emptyList(), null);
+    }
+
+    // Reverse the messages to have them in the right order (top to bottom)
+    List<IMessage> messages = Lists.reverse(Lists.newArrayList(parseResult.messages().iterator()));
+    List<SyntaxError> syntaxErrors = new ArrayList<>(messages.size());
+    for (IMessage message : messages) {
+      ISourceRegion region = message.region();
+      if (region == null) {
+        syntaxErrors.add(new SyntaxError(getMessageText(message), -1, -1, -1, -1));
+      } else {
+        syntaxErrors.add(new SyntaxError(getMessageText(message), region.startOffset(), region.endOffset(),
+            region.startRow() + 1, region.startColumn() + 1));
+      }
+    }
+    return new SyntaxValidationResult(queryString, Collections.unmodifiableList(syntaxErrors),
+        getMessages(parseResult.messages(), queryString));
+  }
+
+  SpoofaxRuntimePool getRuntimePool() throws PgqlException {
+    checkInitialized();
+    return awaitInitialization();
+  }
+
+  /**
+   * Enables or disables the parse cache of this instance. When enabled, parsing a query string that was parsed before
+   * returns the earlier {@link PgqlResult} without invoking the parser. Cached results (including their
+   * {@link PgqlStatement}) are shared between callers and should therefore not be modified.
+   *
+   * @param maxSize
+   *          the maximum number of results to keep, after which the least recently used result is evicted; 0 disables
+   *          the cache
+   */
+  public synchronized void setParseCacheSize(int maxSize) {
+    if (maxSize < 0) {
+      throw new IllegalArgumentException("Cache size should not be negative but was " + maxSize);
+    }
+    parseCache = maxSize == 0 ? null : new ParseCache<>(maxSize);
+  }
+
+  /**
+   * Empties the parse cache after a setting that affects the parse results has changed. The cache is replaced rather
+   * than cleared, such that parses that started before the change and are still in progress add their results to the
+   * old cache only.
+   */
+  private synchronized void discardCachedResults() {
+    ParseCache<PgqlResult> cache = parseCache;
+    if (cache != null) {
+      parseCache = new ParseCache<>(cache.getMaxSize());
+    }
+  }
+
+  /**
+   * Enables or disables compact results. When enabled, all parse results of this instance are compacted (see
+   * {@link PgqlResult#compact()}) before they are cached or returned, which considerably reduces their memory footprint.
+   * This is recommended when the parse cache is enabled or when many results are kept around.
+   *
+   * Changing this setting empties the parse cache (see {@link #setParseCacheSize(int)}).
+   *
+   * @param compactResults
+   *          true to return compact results (default: false)
+   */
+  public void setCompactResults(boolean compactResults) {
+    this.compactResults = compactResults;
+    discardCachedResults();
+  }
+
+  /**
+   * Sets the number of insertions from which INSERT statements without FROM clause, like the ones that are generated to
+   * load a graph, are parsed in chunks of insertions rather than as a whole. Parsing in chunks takes time linear in the
+   * number of insertions, while parsing a huge statement as a whole takes time that grows much faster. The result is the
+   * same, except that it does not hold a Spoofax parse unit. Statements with errors are always parsed as a whole so that
+   * the right error messages are reported.
+   *
+   * Changing this setting empties the parse cache (see {@link #setParseCacheSize(int)}).
+   *
+   * @param minInsertions
+   *          the minimum number of insertions (default: 1000); 0 disables parsing in chunks
+   */
+  public void setBulkInsertThreshold(int minInsertions) {
+    if (minInsertions < 0) {
+      throw new IllegalArgumentException("Threshold should not be negative but was " + minInsertions);
+    }
+    this.bulkInsertThreshold = minInsertions;
+    discardCachedResults();
+  }
+
+  /**
+   * Enables or disables the fast path for common queries. When enabled, PGQL 1.3 SELECT queries with fixed-length
+   * graph patterns and simple expressions in SELECT, WHERE and ORDER BY, and without GROUP BY, are translated by a
+   * hand-written parser instead of by Spoofax, which takes a fraction of the time. The resulting query is the same, but
+   * the result does not hold a Spoofax parse unit. All other queries, including all queries with errors, are still
+   * parsed by Spoofax.
+   *
+   * Changing this setting empties the parse cache (see {@link #setParseCacheSize(int)}).
+   *
+   * @param fastPathParsing
+   *          true to parse common queries without Spoofax (default: false)
+   */
+  public void setFastPathParsing(boolean fastPathParsing) {
+    this.fastPathParsing = fastPathParsing;
+    discardCachedResults();
+  }
+
+  /**
+   * Enables or disables constant folding. When enabled, the expressions of valid SELECT and INSERT/UPDATE/DELETE queries
+   * are simplified before the result is returned, for example 1 + 2 becomes 3 and x AND true becomes x, such that they
+   * do not need to be evaluated for every row (see {@link ConstantFolder}). This applies to every parse method,
+   * including {@link #parseAll(List)} and {@link #parseScript(String)}.
+   *
+   * Changing this setting empties the parse cache (see {@link #setParseCacheSize(int)}).
+   *
+   * @param constantFolding
+   *          true to fold constants in the resulting queries (default: false)
+   */
+  public void setConstantFolding(boolean constantFolding) {
+    this.constantFolding = constantFolding;
+    discardCachedResults();
+  }
+
+  /**
+   * @return the hit/miss/eviction counters of the parse cache, or null if the parse cache is not enabled (see
+   *         {@link #setParseCacheSize(int)})
+   */
+  public ParseCacheStatistics getParseCacheStatistics() {
+    ParseCache<PgqlResult> cache = parseCache;
+    return cache == null ? null : cache.getStatistics();
+  }
+
+  /**
+   * Enables or disables query templates for this instance. When enabled, the string, numeric and datetime literals of
+   * a query are replaced by bind variables and the resulting template is parsed only once; queries that only differ in
+   * their literals are then translated from the parsed template instead of being parsed again. For example, after
+   * parsing "SELECT n FROM MATCH (n) WHERE n.age > 25", the query "SELECT n FROM MATCH (n) WHERE n.age > 30" no longer
+   * needs to be parsed.
+   *
+   * The result is the same as when the query is parsed: a template is only used if parsing the first query that it was
+   * created for gave the same result as translating the template. Queries with invalid literals are always parsed so
+   * that the right error messages are reported.
+   *
+   * Only queries that are valid PGQL 1.3 (or higher) SELECT or INSERT/UPDATE/DELETE queries are templated. Results
+   * that are created from a template do not hold a Spoofax parse unit.
+   *
+   * Changing this setting empties the parse cache (see {@link #setParseCacheSize(int)}).
+   *
+   * @param maxSize
+   *          the maximum number of templates to keep, after which the least recently used template is evicted; 0
+   *          disables query templates
+   */
+  public void setQueryTemplateCacheSize(int maxSize) {
+    if (maxSize < 0) {
+      throw new IllegalArgumentException("Cache size should not be negative but was " + maxSize);
+    }
+    templateCache = maxSize == 0 ? null : new ParseCache<>(maxSize);
+    discardCachedResults();
+  }
+
+  /**
+   * @return the hit/miss/eviction counters of the query templates, or null if query templates are not enabled (see
+   *         {@link #setQueryTemplateCacheSize(int)})
+   */
+  public ParseCacheStatistics getQueryTemplateCacheStatistics() {
+    ParseCache<QueryTemplate> cache = templateCache;
+    return cache == null ? null : cache.getStatistics();
+  }
+
+  private QueryTemplate createTemplate(ParameterizedQuery parameterizedQuery, PgqlResult result,
+      SpoofaxRuntime runtime) {
+    PgqlStatement statement = result.getPgqlStatement();
+    if (result.getPgqlVersion() != PgqlVersion.V_1_3_OR_UP || statement == null
+        || (statement.getStatementType() != StatementType.SELECT
+            && statement.getStatementType() != StatementType.GRAPH_MODIFY)) {
+      return QueryTemplate.NOT_APPLICABLE;
+    }
+
+    ParsedQuery parsedTemplate;
+    try {
+      parsedTemplate = parseQuery(parameterizedQuery.getTemplateString(), runtime);
+    } catch (PgqlException e) {
+      return QueryTemplate.NOT_APPLICABLE;
+    }
+    if (!parsedTemplate.getResult().isQueryValid()) {
+      return QueryTemplate.NOT_APPLICABLE; // e.g. literal in a place where bind variables are not allowed
+    }
+
+    QueryTemplate template = new QueryTemplate(parsedTemplate.getAst(), result.getPgqlVersion(),
+        result.getBindVariableCount());
+    PgqlResult instantiatedTemplate = instantiateTemplate(result.getQueryString(), parameterizedQuery, template);
+    if (instantiatedTemplate == null || !statement.equals(instantiatedTemplate.getPgqlStatement())) {
+      return QueryTemplate.NOT_APPLICABLE;
     }
+    return template;
   }
 
-  private PgqlResult parseInternal(String queryString) throws PgqlException {
+  /**
+   * @return the result of translating the template with the literals of the query substituted into it, or null if the
+   *         query needs to be parsed instead
+   */
+  private PgqlResult instantiateTemplate(String queryString, ParameterizedQuery parameterizedQuery,
+      QueryTemplate template) {
+    IStrategoTerm ast = parameterizedQuery.substituteLiterals(template.getAst());
+    if (ast == null) {
+      return null;
+    }
+
+    PgqlStatement statement;
+    try {
+      statement = SpoofaxAstToGraphQuery.translate(ast);
+    } catch (Exception e) {
+      return null;
+    }
+    return new PgqlResult(queryString, true, null, statement, null, template.getPgqlVersion(),
+        template.getBindVariableCount());
+  }
+
+  private ParsedQuery parseQuery(String queryString, SpoofaxRuntime runtime) throws PgqlException {
+    return parseQuery(queryString, runtime, null, new ParseMetrics(queryString.length()), new PgqlCancellationToken());
+  }
+
+  /**
+   * @param sharedContext
+   *          the context to analyze the query in, or null to analyze the query in a new temporary context
+   * @param cancellationToken
+   *          checked by Spoofax during parsing and analysis, and in between the phases
+   */
+  private ParsedQuery parseQuery(String queryString, SpoofaxRuntime runtime, ITemporaryContext sharedContext,
+      ParseMetrics metrics, PgqlCancellationToken cancellationToken) throws PgqlException {
     if (queryString.equals("")) {
       String error = "Empty query string";
-      return new PgqlResult(queryString, false, error, null, null, LATEST_VERSION, 0);
+      return new ParsedQuery(new PgqlResult(queryString, false, error, null, null, LATEST_VERSION, 0), null);
     }
 
     ITemporaryContext context = null;
-    FileObject dummyFile = null;
     try {
-      dummyFile = getFileObject(queryString);
-      ISpoofaxParseUnit parseResult = parseHelper(queryString, dummyFile);
+      FileObject queryFile = runtime.getQueryFile();
+      long startTime = System.nanoTime();
+      ICancel cancel = new SpoofaxCancel(cancellationToken);
+      ISpoofaxParseUnit parseResult = parseHelper(queryString, queryFile, runtime, cancel);
+      long parseEndTime = System.nanoTime();
+      metrics.setParseNanos(parseEndTime - startTime);
 
       String prettyMessages = null;
       boolean queryValid = parseResult.success();
@@ -213,15 +1099,24 @@ public class Pgql implements Closeable {
         prettyMessages = getMessages(parseResult.messages(), queryString);
       }
       if (!parseResult.valid()) {
-        return new PgqlResult(queryString, parseResult.valid(), prettyMessages, statement, parseResult, LATEST_VERSION,
-            0);
+        return new ParsedQuery(new PgqlResult(queryString, parseResult.valid(), prettyMessages, statement, parseResult,
+            LATEST_VERSION, 0), null);
       }
 
-      context = spoofax.contextService.getTemporary(dummyFile, dummyProject, pgqlLang);
+      cancellationToken.checkNotCancelled();
+      Spoofax spoofax = runtime.getSpoofax();
+      if (sharedContext == null) {
+        context = createContext(runtime);
+      }
       ISpoofaxAnalyzeUnit analysisResult = null;
-      try (IClosableLock lock = context.write()) {
-        analysisResult = spoofax.analysisService.analyze(parseResult, context).result();
+      ITemporaryContext analysisContext = sharedContext == null ? context : sharedContext;
+      try (IClosableLock lock = analysisContext.write()) {
+        analysisResult = spoofax.analysisService.analyze(parseResult, analysisContext, new NullProgress(), cancel)
+            .result();
       }
+      cancellationToken.checkNotCancelled();
+      long analysisEndTime = System.nanoTime();
+      metrics.setAnalysisNanos(analysisEndTime - parseEndTime);
 
       if (queryValid) {
         queryValid = analysisResult.success();
@@ -236,15 +1131,19 @@ public class Pgql implements Closeable {
         statement = SpoofaxAstToGraphQuery.translate(analysisResult.ast());
       } catch (Exception e) {
         if (e instanceof PgqlException) {
+          metrics.setTranslationNanos(System.nanoTime() - analysisEndTime);
           prettyMessages = e.getMessage();
           queryValid = false;
-          return new PgqlResult(queryString, queryValid, prettyMessages, statement, parseResult, LATEST_VERSION,
-              0);
+          return new ParsedQuery(new PgqlResult(queryString, queryValid, prettyMessages, statement, parseResult,
+              LATEST_VERSION, 0), analysisResult.ast());
         } else {
           LOG.debug("Translation of PGQL failed because of semantically invalid AST");
         }
       }
 
+      long translationEndTime = System.nanoTime();
+      metrics.setTranslationNanos(translationEndTime - analysisEndTime);
+
       PgqlVersion pgqlVersion = getPgqlVersion(analysisResult.ast(), statement);
 
       if (queryValid) {
@@ -252,19 +1151,30 @@ public class Pgql implements Closeable {
       }
 
       int bindVariableCount = getBindVariableCount(analysisResult.ast(), statement);
+      metrics.setVersionDetectionNanos(System.nanoTime() - translationEndTime);
 
-      return new PgqlResult(queryString, queryValid, prettyMessages, statement, parseResult, pgqlVersion,
-          bindVariableCount);
-    } catch (IOException | ParseException | AnalysisException | ContextException e) {
+      return new ParsedQuery(new PgqlResult(queryString, queryValid, prettyMessages, statement, parseResult,
+          pgqlVersion, bindVariableCount), analysisResult.ast());
+    } catch (ParseException | AnalysisException | ContextException e) {
       throw new PgqlException("Failed to parse PGQL query", e);
+    } catch (InterruptedException e) {
+      if (cancellationToken.isCancelled()) {
+        throw cancellationToken.cancelledException(e);
+      }
+      Thread.currentThread().interrupt();
+      throw new PgqlException("Interrupted while parsing PGQL query", e);
     } finally {
       if (context != null) {
         context.close();
       }
-      quietlyDelete(dummyFile);
     }
   }
 
+  private static ITemporaryContext createContext(SpoofaxRuntime runtime) throws ContextException {
+    return runtime.getSpoofax().contextService.getTemporary(runtime.getQueryFile(), runtime.getDummyProject(),
+        runtime.getPgqlLang());
+  }
+
   private void checkInitialized() throws PgqlException {
     if (!isInitialized) {
       throw new PgqlException("Pgql instance was closed");
@@ -322,36 +1232,16 @@ public class Pgql implements Closeable {
     return 0;
   }
 
-  private FileObject getFileObject(String queryString) throws UnsupportedEncodingException, IOException {
-    String randomFileName = UUID.randomUUID().toString() + ".pgql";
-    FileObject dummyFile = spoofax.resourceService.resolve(dummyProjectDir, randomFileName);
-    try (OutputStream out = dummyFile.getContent().getOutputStream()) {
-      IOUtils.write(queryString.getBytes("UTF-8"), out);
-    }
-    return dummyFile;
-  }
-
-  private ISpoofaxParseUnit parseHelper(String queryString, FileObject fileObject) throws ParseException {
-
-    ISpoofaxInputUnit input = spoofax.unitService.inputUnit(fileObject, queryString, pgqlLang, null);
-    return spoofax.syntaxService.parse(input);
-  }
-
-  private static void quietlyDelete(FileObject fo) {
-    try {
-      if (fo != null && fo.exists()) {
-        if (fo.delete() == false) {
-          LOG.warn("failed to delete temporary query file: " + fo.getURL().toString());
-        }
-      }
-    } catch (IOException e) {
-      LOG.warn("got error while trying to delete temporary query file", e);
-    }
+  private ISpoofaxParseUnit parseHelper(String queryString, FileObject fileObject, SpoofaxRuntime runtime,
+      ICancel cancel) throws ParseException, InterruptedException {
+    Spoofax spoofax = runtime.getSpoofax();
+    ISpoofaxInputUnit input = spoofax.unitService.inputUnit(fileObject, queryString, runtime.getPgqlLang(), null);
+    return spoofax.syntaxService.parse(input, new NullProgress(), cancel);
   }
 
-  private Iterable<ICompletion> spoofaxComplete(ISpoofaxParseUnit parseResult, int cursor) {
+  private Iterable<ICompletion> spoofaxComplete(ISpoofaxParseUnit parseResult, int cursor, SpoofaxRuntime runtime) {
     try {
-      return spoofax.completionService.get(cursor, parseResult, false);
+      return runtime.getSpoofax().completionService.get(cursor, parseResult, false);
     } catch (MetaborgException e) {
       // swallow any exceptions; worst case we don't suggest any completions
       LOG.debug("spoofax completion failed: " + e.getMessage());
@@ -359,6 +1249,14 @@ public class Pgql implements Closeable {
     return Collections.emptyList();
   }
 
+  private static String getMessageText(IMessage message) {
+    String m = message.message();
+    if (m.contains(" ")) {
+      m = NON_BREAKING_WHITE_SPACE_ERROR;
+    }
+    return m;
+  }
+
   /**
    * Pretty-prints messages (i.e. compiler errors/warnings/notes) into an output stream.
    */
@@ -396,11 +1294,7 @@ public class Pgql implements Closeable {
         sb.append(affectedSourceText);
       }
 
-      String m = message.message();
-      if (m.contains(" ")) {
-        m = NON_BREAKING_WHITE_SPACE_ERROR;
-      }
-      sb.append(ERROR_MESSSAGE_INDENTATION + m);
+      sb.append(ERROR_MESSSAGE_INDENTATION + getMessageText(message));
 
       if (it.hasNext()) {
         sb.append("\n");
@@ -426,28 +1320,130 @@ public class Pgql implements Closeable {
     return PgqlCompletionGenerator.generate(pgqlResult, spoofaxCompletions, queryString, cursor, ctx);
   }
 
+  /**
+   * Creates a session for generating completions for a query that is edited repeatedly, for example in an editor. The
+   * session avoids parsing the query again after edits that do not affect the completions (see
+   * {@link PgqlCompletionSession}).
+   *
+   * @return a new completion session that uses this instance to parse queries
+   */
+  public PgqlCompletionSession createCompletionSession() {
+    return new PgqlCompletionSession(this);
+  }
+
   @Override
   public void close() {
+    CompletableFuture<SpoofaxRuntimePool> releasedInitialization = null;
     synchronized (lock) {
       isInitialized = false;
-      instances.remove(this);
-      if (instances.isEmpty()) {
-        isGloballyInitialized = false;
-        LOG.info("closing the global PGQL instance");
-
-        if (System.getProperty("os.name").startsWith("Windows")) {
-          return; // Windows issue, also see http://yellowgrass.org/issue/Spoofax/88
+      parseCache = null;
+      templateCache = null;
+      synchronized (this) {
+        if (asyncParseExecutor != null) {
+          asyncParseExecutor.shutdown();
+          asyncParseExecutor = null;
         }
-
-        if (spoofax != null) {
-          spoofax.close();
+      }
+      if (instances.remove(this) && instances.isEmpty() && globalInitialization != null) {
+        if (keepAliveMillis > 0) {
+          long generation = ++releaseGeneration;
+          scheduledRelease = getKeepAliveScheduler().schedule(() -> releaseIdleGlobalInstance(generation),
+              keepAliveMillis, TimeUnit.MILLISECONDS);
+        } else {
+          releasedInitialization = releaseGlobalInstance();
         }
-        if (spoofaxBinaryFile != null) {
-          if (!spoofaxBinaryFile.delete()) {
-            LOG.warn("failed to delete Spoofax binary file: " + spoofaxBinaryFile.getAbsolutePath());
-          }
+      }
+    }
+    closeRuntimePool(releasedInitialization);
+  }
+
+  private static ScheduledThreadPoolExecutor getKeepAliveScheduler() {
+    if (keepAliveScheduler == null) {
+      keepAliveScheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+        Thread thread = new Thread(runnable, "pgql-keep-alive");
+        thread.setDaemon(true);
+        return thread;
+      });
+      keepAliveScheduler.setRemoveOnCancelPolicy(true);
+      keepAliveScheduler.setKeepAliveTime(1, TimeUnit.SECONDS);
+      keepAliveScheduler.allowCoreThreadTimeOut(true);
+    }
+    return keepAliveScheduler;
+  }
+
+  private static void cancelScheduledRelease() {
+    releaseGeneration++;
+    if (scheduledRelease != null) {
+      scheduledRelease.cancel(false);
+      scheduledRelease = null;
+    }
+  }
+
+  private static void releaseIdleGlobalInstance(long generation) {
+    CompletableFuture<SpoofaxRuntimePool> releasedInitialization = null;
+    synchronized (lock) {
+      // skip if a PGQL instance was created in the meantime
+      if (generation == releaseGeneration) {
+        scheduledRelease = null;
+        if (globalInitialization != null) {
+          releasedInitialization = releaseGlobalInstance();
         }
       }
     }
+    closeRuntimePool(releasedInitialization);
+  }
+
+  /**
+   * Detaches the global instance so that the next PGQL instance initializes a new one. Must be called while holding
+   * {@link #lock}; the returned pool must be closed after releasing the lock (see {@link #closeRuntimePool}).
+   *
+   * @return the initialization of the detached pool, or null if the pool should not be closed
+   */
+  private static CompletableFuture<SpoofaxRuntimePool> releaseGlobalInstance() {
+    CompletableFuture<SpoofaxRuntimePool> closedInitialization = globalInitialization;
+    globalInitialization = null;
+    LOG.info("closing the global PGQL instance");
+
+    if (System.getProperty("os.name").startsWith("Windows")) {
+      return null; // Windows issue, also see http://yellowgrass.org/issue/Spoofax/88
+    }
+    return closedInitialization;
+  }
+
+  /**
+   * Closes the pool without holding {@link #lock}: closing waits for ongoing parses to release their parser, and those
+   * parses may need the lock, for example when a parse listener creates or closes a PGQL instance.
+   */
+  private static void closeRuntimePool(CompletableFuture<SpoofaxRuntimePool> releasedInitialization) {
+    if (releasedInitialization != null) {
+      // if the initialization is still in progress, the pool is closed as soon as it is done
+      releasedInitialization.thenAccept(SpoofaxRuntimePool::close);
+    }
+  }
+
+  /**
+   * A parse result together with the analyzed AST that it was translated from.
+   */
+  private static class ParsedQuery {
+
+    private final PgqlResult result;
+
+    private final IStrategoTerm ast;
+
+    ParsedQuery(PgqlResult result, IStrategoTerm ast) {
+      this.result = result;
+      this.ast = ast;
+    }
+
+    PgqlResult getResult() {
+      return result;
+    }
+
+    /**
+     * @return the analyzed AST, or null if the query could not be analyzed because of syntax errors
+     */
+    IStrategoTerm getAst() {
+      return ast;
+    }
   }
 }
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cancels a call to {@link Pgql#parse(String, PgqlCancellationToken)},
+ * {@link Pgql#parseAll(java.util.List, PgqlCancellationToken)} or
+ * {@link Pgql#validateSyntax(String, PgqlCancellationToken)}, either explicitly through {@link #cancel()} or
+ * automatically once a deadline has passed. The parser checks the token while it waits for a parser from the pool and
+ * at regular points during parsing and analysis, and fails with a {@link PgqlException} once it is cancelled, after
+ * which the parser is available for other queries again.
+ *
+ * Cancellation does not interrupt work that Spoofax is doing: a phase that does not check the token itself runs to
+ * completion, and the parse fails at the next check. A parse can therefore return some time after the deadline.
+ *
+ * A token can be cancelled from any thread. It can be shared by multiple calls, for example to cancel all the queries
+ * of a request at once.
+ */
+public class PgqlCancellationToken {
+
+  private final long deadlineNanos;
+
+  private final long timeoutMillis;
+
+  private volatile boolean cancelled = false;
+
+  /**
+   * Creates a token without a deadline that is only cancelled through {@link #cancel()}.
+   */
+  public PgqlCancellationToken() {
+    this.deadlineNanos = 0;
+    this.timeoutMillis = -1;
+  }
+
+  /**
+   * Creates a token that cancels automatically after the given amount of time, or earlier through {@link #cancel()}.
+   *
+   * @param timeout
+   *          the time after which the token cancels, starting now
+   * @param unit
+   *          the unit of timeout
+   */
+  public PgqlCancellationToken(long timeout, TimeUnit unit) {
+    if (timeout < 0) {
+      throw new IllegalArgumentException("Timeout should not be negative but was " + timeout);
+    }
+    this.deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+    this.timeoutMillis = unit.toMillis(timeout);
+  }
+
+  public void cancel() {
+    cancelled = true;
+  }
+
+  /**
+   * @return true if {@link #cancel()} was called or if the deadline has passed
+   */
+  public boolean isCancelled() {
+    return cancelled || getRemainingNanos() <= 0;
+  }
+
+  /**
+   * @return the time left until the deadline, or Long.MAX_VALUE if the token has no deadline
+   */
+  long getRemainingNanos() {
+    return timeoutMillis == -1 ? Long.MAX_VALUE : deadlineNanos - System.nanoTime();
+  }
+
+  /**
+   * @throws PgqlException
+   *           if the token was cancelled
+   */
+  void checkNotCancelled() throws PgqlException {
+    if (isCancelled()) {
+      throw cancelledException(null);
+    }
+  }
+
+  PgqlException cancelledException(Throwable cause) {
+    String message = cancelled ? "Parsing of PGQL query was cancelled"
+        : "Parsing of PGQL query exceeded the timeout of " + timeoutMillis + " ms";
+    return cause == null ? new PgqlException(message) : new PgqlException(message, cause);
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import oracle.pgql.lang.PgqlLexer.TokenKind;
+import oracle.pgql.lang.completion.PgqlCompletionGenerator;
+import oracle.pgql.lang.editor.completion.PgqlCompletion;
+import oracle.pgql.lang.editor.completion.PgqlCompletionContext;
+
+/**
+ * Generates code completions for a query that is being edited, such as the query in an editor (see
+ * {@link Pgql#createCompletionSession()}).
+ *
+ * Completions depend on the input graph and the variables of the graph pattern, which are defined by the FROM and MATCH
+ * clauses. The session remembers the last parse result and only parses the query again if an edit changed these
+ * clauses. Edits elsewhere, for example while typing the SELECT or WHERE clause, reuse the previous parse result, which
+ * also keeps the variables available while the rest of the query is incomplete.
+ *
+ * A session is not thread safe; use one session per editor.
+ */
+public class PgqlCompletionSession {
+
+  /**
+   * Keywords that start a clause after the FROM and MATCH clauses.
+   */
+  private static final Set<String> CLAUSES_AFTER_PATTERN = new HashSet<>(
+      Arrays.asList("WHERE", "GROUP", "HAVING", "ORDER", "LIMIT", "OFFSET"));
+
+  private final Pgql pgql;
+
+  private String lastPatternSignature;
+
+  private PgqlResult lastResult;
+
+  private int parseCount;
+
+  PgqlCompletionSession(Pgql pgql) {
+    this.pgql = pgql;
+  }
+
+  /**
+   * Same as {@link Pgql#complete(String, int, PgqlCompletionContext)}, but parses the query only if needed.
+   */
+  public List<PgqlCompletion> complete(String queryString, int cursor, PgqlCompletionContext ctx)
+      throws PgqlException {
+    String patternSignature = getPatternSignature(queryString);
+    boolean reuseLastResult = patternSignature != null && patternSignature.equals(lastPatternSignature)
+        && lastResult != null && lastResult.getGraphQuery() != null;
+    if (!reuseLastResult) {
+      parseCount++;
+      try {
+        lastResult = pgql.parse(queryString);
+      } catch (PgqlException e) {
+        lastResult = null; // spoofax e.g. throws exception for query "SELECT * FROM g MATCH "
+      }
+      lastPatternSignature = patternSignature;
+    }
+    return PgqlCompletionGenerator.generate(lastResult, null, queryString, cursor, ctx);
+  }
+
+  /**
+   * @return the number of times the session parsed a query
+   */
+  int getParseCount() {
+    return parseCount;
+  }
+
+  /**
+   * @return the tokens from the first top-level FROM up to the next clause, with white space and comments left out, or
+   *         null if the query has no such FROM clause or if the graph pattern is not in a MATCH clause (PGQL 1.0 and
+   *         1.1 have the graph pattern in the WHERE clause)
+   */
+  static String getPatternSignature(String queryString) {
+    StringBuilder signature = null;
+    boolean hasMatch = false;
+    int depth = 0;
+    PgqlLexer lexer = new PgqlLexer(queryString);
+    while (lexer.next()) {
+      if (lexer.isLayout()) {
+        continue;
+      }
+      String text = lexer.getText();
+      if (depth == 0 && lexer.getKind() == TokenKind.REGULAR_IDENTIFIER) {
+        String keyword = text.toUpperCase();
+        if (signature == null && keyword.equals("FROM")) {
+          signature = new StringBuilder();
+        } else if (signature != null && CLAUSES_AFTER_PATTERN.contains(keyword)) {
+          break;
+        } else if (keyword.equals("MATCH")) {
+          hasMatch = true;
+        }
+      } else if (lexer.getKind() == TokenKind.SYMBOL) {
+        char c = text.charAt(0);
+        if (c == '(' || c == '[' || c == '{') {
+          depth++;
+        } else if ((c == ')' || c == ']' || c == '}') && depth > 0) {
+          depth--;
+        }
+      }
+      if (signature != null) {
+        signature.append(text).append(' ');
+      }
+    }
+    return signature == null || !hasMatch ? null : signature.toString();
+  }
+}
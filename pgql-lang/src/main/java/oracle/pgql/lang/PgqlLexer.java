@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A lightweight lexer that splits a query string into tokens without parsing it. It follows the lexical syntax of the
+ * PGQL grammar (literals, identifiers, comments) closely enough to tell apart the parts of a query that are data (e.g.
+ * the contents of string literals) from the parts that are syntax, but it does not validate the query.
+ *
+ * The lexer streams over the query in a single pass: {@link #next()} moves to the next token, whose kind and offsets
+ * are then available through the getters, without allocating a {@link Token} unless asked for. A lexer can be reused
+ * for another query through {@link #reset(String)}.
+ */
+class PgqlLexer {
+
+  enum TokenKind {
+    WHITESPACE,
+    SINGLE_LINE_COMMENT, // "// .." (only valid in PGQL 1.0 - 1.2)
+    MULTI_LINE_COMMENT, // "/* .. */"
+    REGULAR_IDENTIFIER, // also includes keywords
+    DELIMITED_IDENTIFIER, // "..."
+    STRING, // '...'
+    INTEGER,
+    DECIMAL,
+    BIND_VARIABLE,
+    SYMBOL
+  }
+
+  static class Token {
+
+    private final TokenKind kind;
+
+    private final int start;
+
+    private final int end;
+
+    Token(TokenKind kind, int start, int end) {
+      this.kind = kind;
+      this.start = start;
+      this.end = end;
+    }
+
+    TokenKind getKind() {
+      return kind;
+    }
+
+    /**
+     * @return the offset of the first character of the token
+     */
+    int getStart() {
+      return start;
+    }
+
+    /**
+     * @return the offset after the last character of the token
+     */
+    int getEnd() {
+      return end;
+    }
+
+    String getText(String queryString) {
+      return queryString.substring(start, end);
+    }
+
+    boolean isLayout() {
+      return PgqlLexer.isLayout(kind);
+    }
+
+    @Override
+    public String toString() {
+      return kind + "[" + start + ", " + end + "]";
+    }
+  }
+
+  private String queryString;
+
+  private int length;
+
+  private TokenKind kind;
+
+  private int start;
+
+  private int end;
+
+  PgqlLexer(String queryString) {
+    reset(queryString);
+  }
+
+  /**
+   * Starts over at the beginning of the given query.
+   */
+  void reset(String queryString) {
+    this.queryString = queryString;
+    this.length = queryString.length();
+    this.kind = null;
+    this.start = 0;
+    this.end = 0;
+  }
+
+  /**
+   * Moves to the next token.
+   *
+   * @return false if there are no more tokens
+   */
+  boolean next() {
+    int i = end;
+    if (i >= length) {
+      kind = null;
+      start = length;
+      return false;
+    }
+    start = i;
+    char c = queryString.charAt(i);
+    if (isWhitespace(c)) {
+      kind = TokenKind.WHITESPACE;
+      i++;
+      while (i < length && isWhitespace(queryString.charAt(i))) {
+        i++;
+      }
+    } else if (c == '/' && charAt(queryString, i + 1) == '*') {
+      kind = TokenKind.MULTI_LINE_COMMENT;
+      int commentEnd = queryString.indexOf("*/", i + 2);
+      i = commentEnd == -1 ? length : commentEnd + 2;
+    } else if (c == '/' && charAt(queryString, i + 1) == '/') {
+      kind = TokenKind.SINGLE_LINE_COMMENT;
+      int lineEnd = queryString.indexOf('\n', i + 2);
+      i = lineEnd == -1 ? length : lineEnd + 1;
+    } else if (c == '\'') {
+      kind = TokenKind.STRING;
+      i = skipQuoted(queryString, i, '\'');
+    } else if (c == '"') {
+      kind = TokenKind.DELIMITED_IDENTIFIER;
+      i = skipQuoted(queryString, i, '"');
+    } else if (isLetter(c)) {
+      kind = TokenKind.REGULAR_IDENTIFIER;
+      i++;
+      while (i < length && isIdentifierPart(queryString.charAt(i))) {
+        i++;
+      }
+    } else if (isDigit(c) || (c == '.' && isDigit(charAt(queryString, i + 1)))) {
+      kind = TokenKind.INTEGER;
+      while (i < length && isDigit(queryString.charAt(i))) {
+        i++;
+      }
+      if (i < length && queryString.charAt(i) == '.') {
+        kind = TokenKind.DECIMAL;
+        i++;
+        while (i < length && isDigit(queryString.charAt(i))) {
+          i++;
+        }
+      }
+    } else if (c == '?') {
+      kind = TokenKind.BIND_VARIABLE;
+      i++;
+    } else {
+      kind = TokenKind.SYMBOL;
+      i++;
+    }
+    end = i;
+    return true;
+  }
+
+  /**
+   * @return the kind of the current token
+   */
+  TokenKind getKind() {
+    return kind;
+  }
+
+  /**
+   * @return the offset of the first character of the current token
+   */
+  int getStart() {
+    return start;
+  }
+
+  /**
+   * @return the offset after the last character of the current token
+   */
+  int getEnd() {
+    return end;
+  }
+
+  /**
+   * @return the first character of the current token, which identifies the symbol for {@link TokenKind#SYMBOL} tokens
+   */
+  char getFirstChar() {
+    return queryString.charAt(start);
+  }
+
+  String getText() {
+    return queryString.substring(start, end);
+  }
+
+  boolean isLayout() {
+    return isLayout(kind);
+  }
+
+  /**
+   * @return the current token as an object, for callers that need to hold on to it
+   */
+  Token getToken() {
+    return new Token(kind, start, end);
+  }
+
+  /**
+   * Splits a script into statements that are separated by semicolons. Semicolons inside literals, quoted identifiers
+   * and comments do not separate statements. Statements that consist of only white space and comments are dropped.
+   *
+   * @return the statements, without the semicolons and without leading and trailing white space
+   */
+  static List<String> splitStatements(String script) {
+    List<String> statements = new ArrayList<>();
+    int statementStart = 0;
+    boolean statementIsEmpty = true;
+    PgqlLexer lexer = new PgqlLexer(script);
+    while (lexer.next()) {
+      if (lexer.getKind() == TokenKind.SYMBOL && lexer.getFirstChar() == ';') {
+        if (!statementIsEmpty) {
+          statements.add(script.substring(statementStart, lexer.getStart()).trim());
+        }
+        statementStart = lexer.getEnd();
+        statementIsEmpty = true;
+      } else if (!lexer.isLayout()) {
+        statementIsEmpty = false;
+      }
+    }
+    if (!statementIsEmpty) {
+      statements.add(script.substring(statementStart).trim());
+    }
+    return statements;
+  }
+
+  /**
+   * @return the offset after the closing quote, or the length of the query string if the quote is not closed
+   */
+  private static int skipQuoted(String queryString, int openingQuoteOffset, char quote) {
+    int length = queryString.length();
+    int i = openingQuoteOffset + 1;
+    while (i < length) {
+      char c = queryString.charAt(i);
+      if ((c == quote || c == '\\') && charAt(queryString, i + 1) == quote) { // '' or \'
+        i = i + 2;
+      } else if (c == quote) {
+        return i + 1;
+      } else {
+        i++;
+      }
+    }
+    return length;
+  }
+
+  private static boolean isLayout(TokenKind kind) {
+    return kind == TokenKind.WHITESPACE || kind == TokenKind.SINGLE_LINE_COMMENT || kind == TokenKind.MULTI_LINE_COMMENT;
+  }
+
+  private static char charAt(String queryString, int index) {
+    return index < queryString.length() ? queryString.charAt(index) : 0;
+  }
+
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+  }
+
+  private static boolean isLetter(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isIdentifierPart(char c) {
+    return isLetter(c) || isDigit(c) || c == '_';
+  }
+}
@@ -25,6 +25,8 @@ public class PgqlResult {
 
   private final int bindVariableCount;
 
+  private final boolean syntaxValid;
+
   public PgqlResult(String queryString, boolean queryValid, String messages, PgqlStatement pgqlStatement,
       ISpoofaxParseUnit spoofaxParseUnit, PgqlVersion pgqlVersion, int bindVariableCount) {
     this.queryString = queryString;
@@ -34,6 +36,36 @@ public class PgqlResult {
     this.spoofaxParseUnit = spoofaxParseUnit;
     this.pgqlVersion = pgqlVersion;
     this.bindVariableCount = bindVariableCount;
+    this.syntaxValid = spoofaxParseUnit != null && spoofaxParseUnit.success();
+  }
+
+  private PgqlResult(PgqlResult result, PgqlStatement pgqlStatement, ISpoofaxParseUnit spoofaxParseUnit) {
+    this.queryString = result.queryString;
+    this.errorMessages = result.errorMessages;
+    this.queryValid = result.queryValid;
+    this.pgqlStatement = pgqlStatement;
+    this.spoofaxParseUnit = spoofaxParseUnit;
+    this.pgqlVersion = result.pgqlVersion;
+    this.bindVariableCount = result.bindVariableCount;
+    this.syntaxValid = result.syntaxValid;
+  }
+
+  /**
+   * Returns a copy of this result without the Spoofax parse unit. The parse unit holds the parse tree of the query and
+   * the origins of its terms, which take up much more memory than the rest of the result. Use this before holding on
+   * to many results, for example in a cache or a queue.
+   *
+   * @return a result with the same query, statement, version, bind variable count and error messages
+   */
+  public PgqlResult compact() {
+    return spoofaxParseUnit == null ? this : new PgqlResult(this, pgqlStatement, null);
+  }
+
+  /**
+   * @return a copy of this result with the given statement instead of the statement of this result
+   */
+  PgqlResult withStatement(PgqlStatement pgqlStatement) {
+    return pgqlStatement == this.pgqlStatement ? this : new PgqlResult(this, pgqlStatement, spoofaxParseUnit);
   }
 
   /**
@@ -84,7 +116,18 @@ public class PgqlResult {
     return bindVariableCount;
   }
 
+  /**
+   * @return the Spoofax parse unit, or null if the result was compacted (see {@link #compact()})
+   */
   protected ISpoofaxParseUnit getSpoofaxParseUnit() {
     return spoofaxParseUnit;
   }
+
+  /**
+   * @return true if the query was parsed without syntax errors; false for empty queries and results that were created
+   *         from a query template
+   */
+  boolean isSyntaxValid() {
+    return syntaxValid;
+  }
 }
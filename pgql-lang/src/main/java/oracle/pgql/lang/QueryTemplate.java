@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import org.spoofax.interpreter.terms.IStrategoTerm;
+
+/**
+ * The analyzed AST of a query in which the literals were replaced by bind variables (see {@link ParameterizedQuery}).
+ * Queries that only differ in their literals share the same template, so that they can be translated without parsing
+ * and analyzing them again.
+ */
+class QueryTemplate {
+
+  /**
+   * Marks a template for which it was found that substituting the literals does not produce the same result as parsing
+   * the original query, for example because the literals appear in a place where bind variables are not allowed.
+   */
+  static final QueryTemplate NOT_APPLICABLE = new QueryTemplate(null, null, -1);
+
+  private final IStrategoTerm ast;
+
+  private final PgqlVersion pgqlVersion;
+
+  private final int bindVariableCount;
+
+  QueryTemplate(IStrategoTerm ast, PgqlVersion pgqlVersion, int bindVariableCount) {
+    this.ast = ast;
+    this.pgqlVersion = pgqlVersion;
+    this.bindVariableCount = bindVariableCount;
+  }
+
+  boolean isApplicable() {
+    return this != NOT_APPLICABLE;
+  }
+
+  IStrategoTerm getAst() {
+    return ast;
+  }
+
+  PgqlVersion getPgqlVersion() {
+    return pgqlVersion;
+  }
+
+  /**
+   * @return the number of bind variables in the original query, which excludes the bind variables that replace literals
+   */
+  int getBindVariableCount() {
+    return bindVariableCount;
+  }
+}
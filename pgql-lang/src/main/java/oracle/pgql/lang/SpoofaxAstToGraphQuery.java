@@ -163,7 +163,7 @@ public class SpoofaxAstToGraphQuery {
 
     switch (constructorName) {
       case "NormalizedQuery":
-        return translate(ast, new TranslationContext(new HashMap<>(), new HashSet<>(), new HashMap<>()));
+        return translate(ast, new TranslationContext(new HashSet<>(), new HashMap<>()));
       case "CreatePropertyGraph":
         return translateCreatePropertyGraph(ast);
       case "DropPropertyGraph":
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The PGQL Spoofax binary, extracted to the local file system so that Spoofax can load it.
+ *
+ * The binary is extracted to a file that is named after the SHA-256 hash of its content, and that file is left in
+ * place when PGQL is closed. Later JVMs that ship the same binary find it there and skip the copy. A file is only
+ * reused if its content still matches the hash. Binaries of other PGQL versions are left in the directory, since JVMs
+ * that run those versions may be using them.
+ *
+ * The cache directory is created with owner-only permissions. An existing directory is only used if it is owned by the
+ * current user and cannot be written to by other users, so that nobody else can plant a binary there. Otherwise, or if
+ * the directory cannot be written to, the binary is copied to a private temporary file instead, which is deleted on
+ * {@link #release()}.
+ *
+ * The hash of the binary can be computed when PGQL is built and shipped next to the binary (see install.sh). When such
+ * a digest is available, a JVM that finds an intact cached file does not read the binary from the jar. The cached file
+ * itself is still read and hashed to verify it, so this saves one read and one hash of the binary, not all of the work.
+ * The digest must be regenerated whenever the binary changes.
+ */
+class SpoofaxBinary {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SpoofaxBinary.class);
+
+  private static final String CACHE_DIR_PREFIX = "pgql-cache-";
+
+  private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+
+  /**
+   * The directories that could not be used as cache, which are only reported the first time.
+   */
+  private static final Set<Path> UNUSABLE_DIRECTORIES = ConcurrentHashMap.newKeySet();
+
+  private final File file;
+
+  private final boolean isCached;
+
+  private SpoofaxBinary(File file, boolean isCached) {
+    this.file = file;
+    this.isCached = isCached;
+  }
+
+  /**
+   * @param resource
+   *          the binary inside the PGQL jar
+   * @param fileName
+   *          the name of the binary; the extracted file is named after it
+   * @param tmpDir
+   *          the directory to extract the binary to, or null for a per-user directory inside java.io.tmpdir
+   */
+  static SpoofaxBinary extract(URL resource, String fileName, String tmpDir) throws IOException {
+    return extract(resource, null, fileName, tmpDir);
+  }
+
+  /**
+   * @param resource
+   *          the binary inside the PGQL jar
+   * @param digestResource
+   *          the SHA-256 hash of the binary, computed at build time, or null if it is not available
+   * @param fileName
+   *          the name of the binary; the extracted file is named after it
+   * @param tmpDir
+   *          the directory to extract the binary to, or null for a per-user directory inside java.io.tmpdir
+   */
+  static SpoofaxBinary extract(URL resource, URL digestResource, String fileName, String tmpDir) throws IOException {
+    Path directory = tmpDir == null
+        ? Paths.get(System.getProperty("java.io.tmpdir"), CACHE_DIR_PREFIX + System.getProperty("user.name"))
+        : Paths.get(tmpDir);
+
+    boolean isPrivateDirectory;
+    try {
+      createPrivateDirectory(directory);
+      isPrivateDirectory = true;
+    } catch (IOException | SecurityException e) {
+      if (UNUSABLE_DIRECTORIES.add(directory.toAbsolutePath())) {
+        LOG.warn("cannot cache Spoofax binary file in " + directory.toAbsolutePath() + ": " + e.getMessage());
+      }
+      isPrivateDirectory = false;
+    }
+
+    String expectedHash = digestResource == null || !isPrivateDirectory ? null : readDigest(digestResource);
+    if (expectedHash != null) {
+      Path cachedFile = directory.resolve(fileName + "-" + expectedHash);
+      try {
+        if (isValid(cachedFile, expectedHash)) {
+          return new SpoofaxBinary(cachedFile.toFile(), true);
+        }
+      } catch (IOException | SecurityException e) {
+        // extract the binary as if there were no digest
+      }
+    }
+
+    byte[] content = IOUtils.toByteArray(resource);
+    String hash = sha256(content);
+    if (expectedHash != null && !expectedHash.equals(hash)) {
+      LOG.warn("digest of Spoofax binary does not match its content: " + digestResource);
+    }
+
+    if (isPrivateDirectory) {
+      Path cachedFile = directory.resolve(fileName + "-" + hash);
+      try {
+        if (!isValid(cachedFile, hash)) {
+          write(content, directory, cachedFile);
+        }
+        return new SpoofaxBinary(cachedFile.toFile(), true);
+      } catch (IOException | SecurityException e) {
+        LOG.warn("failed to cache Spoofax binary file in " + directory.toAbsolutePath() + ": " + e.getMessage());
+      }
+    }
+
+    // createTempFile picks a random name, fails if the file exists and makes the file readable by the owner only
+    Path tmpFile = tmpDir == null ? Files.createTempFile(fileName, null)
+        : Files.createTempFile(Paths.get(tmpDir), fileName, null);
+    Files.write(tmpFile, content);
+    return new SpoofaxBinary(tmpFile.toFile(), false);
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  /**
+   * @return true if the file is shared with other JVMs and is left in place on {@link #release()}
+   */
+  boolean isCached() {
+    return isCached;
+  }
+
+  /**
+   * Deletes the extracted binary unless it is cached.
+   */
+  void release() {
+    if (!isCached && !file.delete()) {
+      LOG.warn("failed to delete Spoofax binary file: " + file.getAbsolutePath());
+    }
+  }
+
+  /**
+   * @return the hash in the digest, which is the output of sha256sum or just the hash itself, or null if the digest
+   *         cannot be read or does not contain a SHA-256 hash
+   */
+  private static String readDigest(URL digestResource) {
+    String digest;
+    try {
+      digest = IOUtils.toString(digestResource, StandardCharsets.UTF_8).trim();
+    } catch (IOException e) {
+      LOG.warn("failed to read digest of Spoofax binary: " + e.getMessage());
+      return null;
+    }
+    String hash = digest.split("\\s+")[0].toLowerCase();
+    return hash.matches("[0-9a-f]{64}") ? hash : null;
+  }
+
+  /**
+   * Creates the directory with owner-only permissions, or checks that the existing directory is owned by the current
+   * user and that other users cannot write to it.
+   *
+   * @throws IOException
+   *           if the directory cannot be created or if it is not private
+   */
+  private static void createPrivateDirectory(Path directory) throws IOException {
+    boolean isPosix = directory.getFileSystem().supportedFileAttributeViews().contains("posix");
+    try {
+      if (isPosix) {
+        Files.createDirectory(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+      } else {
+        Files.createDirectory(directory);
+      }
+    } catch (FileAlreadyExistsException e) {
+      // check the existing directory below
+    }
+
+    if (!Files.isDirectory(directory, LinkOption.NOFOLLOW_LINKS)) {
+      throw new IOException("not a directory or a symbolic link");
+    }
+    UserPrincipal currentUser = directory.getFileSystem().getUserPrincipalLookupService()
+        .lookupPrincipalByName(System.getProperty("user.name"));
+    if (!currentUser.equals(Files.getOwner(directory, LinkOption.NOFOLLOW_LINKS))) {
+      throw new IOException("directory is not owned by " + currentUser.getName());
+    }
+    if (isPosix) {
+      Set<PosixFilePermission> permissions = Files
+          .getFileAttributeView(directory, PosixFileAttributeView.class, LinkOption.NOFOLLOW_LINKS).readAttributes()
+          .permissions();
+      if (permissions.contains(PosixFilePermission.GROUP_WRITE)
+          || permissions.contains(PosixFilePermission.OTHERS_WRITE)) {
+        throw new IOException("directory can be written to by other users");
+      }
+    }
+  }
+
+  private static boolean isValid(Path cachedFile, String hash) throws IOException {
+    if (!Files.isRegularFile(cachedFile, LinkOption.NOFOLLOW_LINKS)) {
+      return false;
+    }
+    try (InputStream in = Files.newInputStream(cachedFile)) {
+      return hash.equals(sha256(IOUtils.toByteArray(in)));
+    }
+  }
+
+  /**
+   * Writes the content to a temporary file first and then moves it into place, so that other JVMs never see a partially
+   * written binary.
+   */
+  private static void write(byte[] content, Path directory, Path target) throws IOException {
+    Path tmpFile = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+    try {
+      Files.write(tmpFile, content);
+      Files.move(tmpFile, target, StandardCopyOption.ATOMIC_MOVE);
+    } catch (FileAlreadyExistsException e) {
+      // another JVM moved the same binary into place first
+    } finally {
+      Files.deleteIfExists(tmpFile);
+    }
+  }
+
+  private static String sha256(byte[] content) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e); // every Java platform supports SHA-256
+    }
+    StringBuilder sb = new StringBuilder();
+    for (byte b : digest.digest(content)) {
+      sb.append(String.format("%02x", b));
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import org.metaborg.util.task.ICancel;
+
+/**
+ * Exposes a {@link PgqlCancellationToken} to Spoofax, which checks it while parsing and analyzing.
+ */
+class SpoofaxCancel implements ICancel {
+
+  private final PgqlCancellationToken token;
+
+  SpoofaxCancel(PgqlCancellationToken token) {
+    this.token = token;
+  }
+
+  @Override
+  public boolean cancelled() {
+    return token.isCancelled();
+  }
+
+  @Override
+  public void throwIfCancelled() throws InterruptedException {
+    if (token.isCancelled()) {
+      throw new InterruptedException();
+    }
+  }
+
+  @Override
+  public void cancel() {
+    token.cancel();
+  }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.vfs2.FileObject;
+import org.metaborg.core.MetaborgException;
+import org.metaborg.core.config.IProjectConfig;
+import org.metaborg.core.config.ISourceConfig;
+import org.metaborg.core.language.ILanguageComponent;
+import org.metaborg.core.language.ILanguageDiscoveryRequest;
+import org.metaborg.core.language.ILanguageImpl;
+import org.metaborg.core.language.LanguageIdentifier;
+import org.metaborg.core.language.LanguageUtils;
+import org.metaborg.core.project.IProject;
+import org.metaborg.core.project.Project;
+import org.metaborg.spoofax.core.Spoofax;
+import org.metaborg.spoofax.core.SpoofaxModule;
+
+/**
+ * A Spoofax instance with the PGQL language loaded into it. Spoofax is not thread safe, so a runtime must only be used
+ * by one thread at a time (see {@link SpoofaxRuntimePool}).
+ */
+class SpoofaxRuntime {
+
+  private static final String DUMMY_PROJECT_DIR = "ram://pgql/";
+
+  private static final String QUERY_FILE_NAME = "query.pgql";
+
+  private final Spoofax spoofax;
+
+  private final ILanguageImpl pgqlLang;
+
+  private final IProject dummyProject;
+
+  private final FileObject queryFile;
+
+  /**
+   * @param spoofaxModule
+   *          the module to create the Spoofax instance with
+   * @param spoofaxBinaryFile
+   *          the PGQL Spoofax binary on the local file system; it can be shared by multiple runtimes
+   */
+  SpoofaxRuntime(SpoofaxModule spoofaxModule, File spoofaxBinaryFile) throws MetaborgException {
+    spoofax = new Spoofax(spoofaxModule);
+
+    FileObject fileObject = spoofax.resourceService.resolve("jar:" + spoofaxBinaryFile.getAbsolutePath() + "!");
+
+    Iterable<ILanguageDiscoveryRequest> requests = spoofax.languageDiscoveryService.request(fileObject);
+    Iterable<ILanguageComponent> components = spoofax.languageDiscoveryService.discover(requests);
+    Set<ILanguageImpl> implementations = LanguageUtils.toImpls(components);
+    pgqlLang = LanguageUtils.active(implementations);
+    assert (pgqlLang != null);
+    FileObject dummyProjectDir = spoofax.resourceService.resolve(DUMMY_PROJECT_DIR);
+    queryFile = spoofax.resourceService.resolve(dummyProjectDir, QUERY_FILE_NAME);
+
+    final LanguageIdentifier id = pgqlLang.id();
+    dummyProject = new Project(dummyProjectDir, new IProjectConfig() {
+
+      @Override
+      public Collection<LanguageIdentifier> sourceDeps() {
+        Set<LanguageIdentifier> sourceDeps = new HashSet<>();
+        sourceDeps.add(id);
+        return sourceDeps;
+      }
+
+      @Override
+      public Collection<LanguageIdentifier> javaDeps() {
+        return Collections.emptySet();
+      }
+
+      @Override
+      public Collection<LanguageIdentifier> compileDeps() {
+        return Collections.emptySet();
+      }
+
+      @Override
+      public String metaborgVersion() {
+        return null;
+      }
+
+      @Override
+      public Collection<ISourceConfig> sources() {
+        return Collections.emptySet();
+      }
+    });
+  }
+
+  Spoofax getSpoofax() {
+    return spoofax;
+  }
+
+  ILanguageImpl getPgqlLang() {
+    return pgqlLang;
+  }
+
+  IProject getDummyProject() {
+    return dummyProject;
+  }
+
+  /**
+   * @return the resource that Spoofax associates the parse and analysis results with, in the dummy project. Only its
+   *         name is used: the query text is passed to Spoofax directly, so the file does not exist. Since a runtime
+   *         parses only one query at a time, the same resource is used for every query.
+   */
+  FileObject getQueryFile() {
+    return queryFile;
+  }
+
+  void close() {
+    spoofax.close();
+  }
+}
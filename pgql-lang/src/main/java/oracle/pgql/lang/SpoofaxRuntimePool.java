@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fixed-size pool of independent {@link SpoofaxRuntime}s. Each runtime is handed out to at most one thread at a time,
+ * so that up to {@link #size()} queries can be parsed in parallel.
+ */
+class SpoofaxRuntimePool {
+
+  /**
+   * How often a thread that waits for a runtime checks whether its cancellation token was cancelled.
+   */
+  private static final long CANCELLATION_CHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private final List<SpoofaxRuntime> runtimes;
+
+  private final BlockingQueue<SpoofaxRuntime> idleRuntimes;
+
+  private final SpoofaxBinary spoofaxBinary;
+
+  private volatile boolean closed = false;
+
+  /**
+   * @param spoofaxBinary
+   *          the binary that the runtimes were loaded from; it is released when the pool is closed
+   */
+  SpoofaxRuntimePool(List<SpoofaxRuntime> runtimes, SpoofaxBinary spoofaxBinary) {
+    this.runtimes = Collections.unmodifiableList(new ArrayList<>(runtimes));
+    this.idleRuntimes = new ArrayBlockingQueue<>(runtimes.size(), false, runtimes);
+    this.spoofaxBinary = spoofaxBinary;
+  }
+
+  int size() {
+    return runtimes.size();
+  }
+
+  /**
+   * Takes a runtime from the pool, waiting until one becomes available. The runtime must be given back through
+   * {@link #release(SpoofaxRuntime)}.
+   */
+  SpoofaxRuntime acquire() throws PgqlException {
+    checkNotClosed();
+    SpoofaxRuntime runtime;
+    try {
+      runtime = idleRuntimes.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new PgqlException("Interrupted while waiting for a PGQL parser", e);
+    }
+    if (closed) {
+      idleRuntimes.add(runtime);
+      checkNotClosed();
+    }
+    return runtime;
+  }
+
+  /**
+   * Like {@link #acquire()}, but stops waiting once the token is cancelled.
+   *
+   * @throws PgqlException
+   *           if the token was cancelled before a runtime became available
+   */
+  SpoofaxRuntime acquire(PgqlCancellationToken token) throws PgqlException {
+    checkNotClosed();
+    SpoofaxRuntime runtime = null;
+    try {
+      while (runtime == null) {
+        token.checkNotCancelled();
+        long waitNanos = Math.min(token.getRemainingNanos(), CANCELLATION_CHECK_INTERVAL_NANOS);
+        runtime = idleRuntimes.poll(waitNanos, TimeUnit.NANOSECONDS);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new PgqlException("Interrupted while waiting for a PGQL parser", e);
+    }
+    if (closed) {
+      idleRuntimes.add(runtime);
+      checkNotClosed();
+    }
+    return runtime;
+  }
+
+  void release(SpoofaxRuntime runtime) {
+    idleRuntimes.add(runtime);
+  }
+
+  /**
+   * Waits for all runtimes to be released and closes them, then releases the binary. Threads that are still waiting
+   * for a runtime will fail with an exception.
+   */
+  void close() {
+    closed = true;
+    List<SpoofaxRuntime> drained = new ArrayList<>(runtimes.size());
+    boolean interrupted = false;
+    while (drained.size() < runtimes.size()) {
+      try {
+        drained.add(idleRuntimes.take());
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    for (SpoofaxRuntime runtime : drained) {
+      runtime.close();
+    }
+    spoofaxBinary.release();
+    // wake up any thread that is still waiting in acquire() so that it notices that the pool was closed
+    idleRuntimes.addAll(drained);
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void checkNotClosed() throws PgqlException {
+    if (closed) {
+      throw new PgqlException("PGQL parser pool was closed");
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+/**
+ * An error in the syntax of a query, as reported by {@link Pgql#validateSyntax(String)}.
+ */
+public class SyntaxError {
+
+  private final String message;
+
+  private final int startOffset;
+
+  private final int endOffset;
+
+  private final int line;
+
+  private final int column;
+
+  public SyntaxError(String message, int startOffset, int endOffset, int line, int column) {
+    this.message = message;
+    this.startOffset = startOffset;
+    this.endOffset = endOffset;
+    this.line = line;
+    this.column = column;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  /**
+   * @return the offset of the first character of the erroneous part of the query, or -1 if the error has no position
+   */
+  public int getStartOffset() {
+    return startOffset;
+  }
+
+  /**
+   * @return the offset of the last character of the erroneous part of the query, or -1 if the error has no position
+   */
+  public int getEndOffset() {
+    return endOffset;
+  }
+
+  /**
+   * @return the line of the start of the error, starting from 1, or -1 if the error has no position
+   */
+  public int getLine() {
+    return line;
+  }
+
+  /**
+   * @return the column of the start of the error, starting from 1, or -1 if the error has no position
+   */
+  public int getColumn() {
+    return column;
+  }
+
+  @Override
+  public String toString() {
+    return "SyntaxError [line=" + line + ", column=" + column + ", message=" + message + "]";
+  }
+}
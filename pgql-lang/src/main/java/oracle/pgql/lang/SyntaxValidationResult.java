@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import java.util.List;
+
+/**
+ * The result of {@link Pgql#validateSyntax(String)}.
+ */
+public class SyntaxValidationResult {
+
+  private final String queryString;
+
+  private final List<SyntaxError> syntaxErrors;
+
+  private final String errorMessages;
+
+  public SyntaxValidationResult(String queryString, List<SyntaxError> syntaxErrors, String errorMessages) {
+    this.queryString = queryString;
+    this.syntaxErrors = syntaxErrors;
+    this.errorMessages = errorMessages;
+  }
+
+  /**
+   * @return the original query as String
+   */
+  public String getQueryString() {
+    return queryString;
+  }
+
+  /**
+   * @return true if the query has no syntax errors
+   */
+  public boolean isSyntaxValid() {
+    return syntaxErrors.isEmpty();
+  }
+
+  /**
+   * @return the syntax errors, ordered by their position in the query
+   */
+  public List<SyntaxError> getSyntaxErrors() {
+    return syntaxErrors;
+  }
+
+  /**
+   * @return a String with error messages in the same format as {@link PgqlResult#getErrorMessages()} if the query is
+   *         not valid (see {@link #isSyntaxValid()}); null otherwise
+   */
+  public String getErrorMessages() {
+    return errorMessages;
+  }
+}
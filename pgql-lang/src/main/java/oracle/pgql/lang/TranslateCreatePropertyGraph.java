@@ -188,8 +188,8 @@ public class TranslateCreatePropertyGraph {
           IStrategoTerm propertiesListT = propertiesSpecificationT.getSubterm(PROPERTIES_CLAUSE_PROPERTIES_LIST);
           List<Property> properties = new ArrayList<>();
           for (IStrategoTerm expAsVarT : propertiesListT) {
-            TranslationContext translationContext = new TranslationContext(Collections.emptyMap(),
-                Collections.emptySet(), Collections.emptyMap());
+            TranslationContext translationContext = new TranslationContext(Collections.emptySet(),
+                Collections.emptyMap());
             QueryExpression valueExpression = translateExp(expAsVarT.getSubterm(EXP_AS_VAR_EXP), translationContext);
             IStrategoTerm propertyNameT = expAsVarT.getSubterm(EXP_AS_VAR_VAR);
             String propertyName;
@@ -3,9 +3,11 @@
  */
 package oracle.pgql.lang;
 
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 
+import org.spoofax.interpreter.terms.IStrategoInt;
 import org.spoofax.interpreter.terms.IStrategoTerm;
 
 import oracle.pgql.lang.ir.CommonPathExpression;
@@ -13,26 +15,34 @@ import oracle.pgql.lang.ir.QueryVariable;
 
 public class TranslationContext {
 
-  private final Map<IStrategoTerm, QueryVariable> vars;
+  private final VariablesByOffset varsByOffset = new VariablesByOffset();
+
+  // variables with an origin position that is not an offset, like the ones generated for SELECT *
+  private final Map<IStrategoTerm, QueryVariable> otherVars = new HashMap<>();
 
   private final Set<String> varNames; // used variable names in the query (globally)
 
   private final Map<String, CommonPathExpression> commonPathExpressions;
 
-  public TranslationContext(Map<IStrategoTerm, QueryVariable> vars, Set<String> varNames,
-      Map<String, CommonPathExpression> commonPathExpressions) {
-    this.vars = vars;
+  public TranslationContext(Set<String> varNames, Map<String, CommonPathExpression> commonPathExpressions) {
     this.varNames = varNames;
     this.commonPathExpressions = commonPathExpressions;
   }
 
   public void addVar(QueryVariable var, String varName, IStrategoTerm originPosition) {
-    vars.put(originPosition, var);
+    if (isOffset(originPosition)) {
+      varsByOffset.put(toKey(originPosition), var);
+    } else {
+      otherVars.put(originPosition, var);
+    }
     varNames.add(varName);
   }
 
   public QueryVariable getVariable(IStrategoTerm originPosition) {
-    return vars.get(originPosition);
+    if (isOffset(originPosition)) {
+      return varsByOffset.get(toKey(originPosition));
+    }
+    return otherVars.get(originPosition);
   }
 
   public boolean isVariableNameInUse(String varName) {
@@ -42,4 +52,75 @@ public class TranslationContext {
   public Map<String, CommonPathExpression> getCommonPathExpressions() {
     return commonPathExpressions;
   }
+
+  /**
+   * @return true if the origin position is a (start offset, end offset) tuple, which is what the analysis generates for
+   *         all variables except the ones of SELECT *
+   */
+  private static boolean isOffset(IStrategoTerm originPosition) {
+    return originPosition != null && originPosition.getTermType() == IStrategoTerm.TUPLE
+        && originPosition.getSubtermCount() == 2 && originPosition.getSubterm(0).getTermType() == IStrategoTerm.INT
+        && originPosition.getSubterm(1).getTermType() == IStrategoTerm.INT;
+  }
+
+  private static long toKey(IStrategoTerm offset) {
+    long start = ((IStrategoInt) offset.getSubterm(0)).intValue();
+    long end = ((IStrategoInt) offset.getSubterm(1)).intValue();
+    return (start << 32) | (end & 0xFFFFFFFFL);
+  }
+
+  /**
+   * Variables by origin offset. Looking up Stratego terms in a HashMap compares them structurally, which adds up for
+   * queries with many variables, so offsets are stored as primitive keys in an open-addressing hash table instead.
+   */
+  private static class VariablesByOffset {
+
+    private long[] keys = new long[16];
+
+    private QueryVariable[] values = new QueryVariable[16];
+
+    private int size;
+
+    void put(long key, QueryVariable value) {
+      int slot = findSlot(keys, values, key);
+      if (values[slot] == null) {
+        size++;
+      }
+      keys[slot] = key;
+      values[slot] = value;
+      if (size * 2 > keys.length) {
+        resize();
+      }
+    }
+
+    QueryVariable get(long key) {
+      return values[findSlot(keys, values, key)];
+    }
+
+    private void resize() {
+      long[] newKeys = new long[keys.length * 2];
+      QueryVariable[] newValues = new QueryVariable[values.length * 2];
+      for (int i = 0; i < keys.length; i++) {
+        if (values[i] != null) {
+          int slot = findSlot(newKeys, newValues, keys[i]);
+          newKeys[slot] = keys[i];
+          newValues[slot] = values[i];
+        }
+      }
+      keys = newKeys;
+      values = newValues;
+    }
+
+    /**
+     * @return the slot that holds the key, or the empty slot where it would be inserted
+     */
+    private static int findSlot(long[] keys, QueryVariable[] values, long key) {
+      int mask = keys.length - 1;
+      int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+      while (values[slot] != null && keys[slot] != key) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+  }
 }
@@ -124,12 +124,16 @@ public class PgqlCompletionGenerator {
       }
     }
 
-    if (queryString.charAt(cursor - 1) == ':') {
+    // a partially typed label or property, for example "nam" in SELECT n.nam??? FROM g MATCH (n)
+    String prefix = parseIdentifierAtEnd(queryString, cursor);
+    int prefixStart = prefix == null ? cursor : cursor - prefix.length();
+    char characterBeforePrefix = prefixStart == 0 ? ' ' : queryString.charAt(prefixStart - 1);
+    if (characterBeforePrefix == ':') {
       // labels
-      return generateLabelSuggestions(graphName, queryString, cursor, ctx);
-    } else if (queryString.charAt(cursor - 1) == '.') {
+      return generateLabelSuggestions(graphName, queryString, prefixStart, prefix, ctx);
+    } else if (characterBeforePrefix == '.') {
       // properties
-      return generatePropertySuggestions(graphName, pgqlResult, queryString, cursor, ctx);
+      return generatePropertySuggestions(graphName, pgqlResult, queryString, prefixStart, prefix, ctx);
     } else {
 
       List<PgqlCompletion> variableProposals = getVariableProposals(pgqlResult);
@@ -236,7 +240,7 @@ public class PgqlCompletionGenerator {
   }
 
   private static List<PgqlCompletion> generatePropertySuggestions(String graphName, PgqlResult pgqlResult,
-      String queryString, int cursor, PgqlCompletionContext ctx)
+      String queryString, int cursor, String prefix, PgqlCompletionContext ctx)
       throws PgqlException {
     String variableName = parseIdentifierAtEnd(queryString, cursor - 1);
     if (variableName == null) {
@@ -252,7 +256,9 @@ public class PgqlCompletionGenerator {
         .map(QueryVertex::getName) //
         .anyMatch(variableName::equals);
     if (isVertexVariable) {
-      return ctx.getVertexProperties(graphName).stream().map(prop -> new PgqlCompletion(prop, "vertex property"))
+      List<String> properties = prefix == null ? ctx.getVertexProperties(graphName)
+          : ctx.getVertexProperties(graphName, prefix);
+      return properties.stream().map(prop -> new PgqlCompletion(prop, "vertex property"))
           .collect(Collectors.toList());
     }
 
@@ -262,7 +268,9 @@ public class PgqlCompletionGenerator {
         .map(VertexPairConnection::getName) //
         .anyMatch(variableName::equals);
     if (isEdgeVariable) {
-      return ctx.getEdgeProperties(graphName).stream().map(prop -> new PgqlCompletion(prop, "edge property"))
+      List<String> properties = prefix == null ? ctx.getEdgeProperties(graphName)
+          : ctx.getEdgeProperties(graphName, prefix);
+      return properties.stream().map(prop -> new PgqlCompletion(prop, "edge property"))
           .collect(Collectors.toList());
     }
 
@@ -270,14 +278,14 @@ public class PgqlCompletionGenerator {
   }
 
   private static List<PgqlCompletion> generateLabelSuggestions(String graphName, String queryString, int cursor,
-      PgqlCompletionContext ctx) {
-    String queryUpToCursor = queryString.substring(0, cursor - 2);
+      String prefix, PgqlCompletionContext ctx) {
+    String queryUpToCursor = queryString.substring(0, Math.max(cursor - 2, 0));
     if (queryUpToCursor.lastIndexOf('(') > queryUpToCursor.lastIndexOf('[')) {
-      return ctx.getVertexLabels(graphName).stream().map(lbl -> new PgqlCompletion(lbl, "vertex label"))
-          .collect(Collectors.toList());
+      List<String> labels = prefix == null ? ctx.getVertexLabels(graphName) : ctx.getVertexLabels(graphName, prefix);
+      return labels.stream().map(lbl -> new PgqlCompletion(lbl, "vertex label")).collect(Collectors.toList());
     } else {
-      return ctx.getEdgeLabels(graphName).stream().map(lbl -> new PgqlCompletion(lbl, "edge label"))
-          .collect(Collectors.toList());
+      List<String> labels = prefix == null ? ctx.getEdgeLabels(graphName) : ctx.getEdgeLabels(graphName, prefix);
+      return labels.stream().map(lbl -> new PgqlCompletion(lbl, "edge label")).collect(Collectors.toList());
     }
   }
 
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class AsyncParseTest extends AbstractPgqlTest {
+
+  @After
+  public void resetQueueCapacity() throws Exception {
+    pgql.setAsyncParseQueueCapacity(1024);
+  }
+
+  @Test
+  public void testParseAsync() throws Exception {
+    List<CompletableFuture<PgqlResult>> futures = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      futures.add(pgql.parseAsync("SELECT n FROM MATCH (n) WHERE n.prop = " + i));
+    }
+    futures.add(pgql.parseAsync("SELECT x FROM MATCH (n)"));
+
+    for (int i = 0; i < 20; i++) {
+      PgqlResult result = futures.get(i).get();
+      assertTrue(result.isQueryValid());
+      assertEquals("SELECT n FROM MATCH (n) WHERE n.prop = " + i, result.getQueryString());
+    }
+    assertFalse(futures.get(20).get().isQueryValid());
+  }
+
+  @Test
+  public void testLoadShedding() throws Exception {
+    pgql.setAsyncParseQueueCapacity(1);
+    long rejectedCountBefore = pgql.getAsyncParseRejectedCount();
+
+    List<CompletableFuture<PgqlResult>> futures = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      futures.add(pgql.parseAsync("SELECT n FROM MATCH (n) -> (m) WHERE n.prop = " + i));
+      assertTrue(pgql.getAsyncParseQueueDepth() <= 1);
+    }
+
+    int numRejected = 0;
+    for (CompletableFuture<PgqlResult> future : futures) {
+      try {
+        assertTrue(future.get().isQueryValid());
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof PgqlException);
+        assertTrue(e.getCause().getMessage().contains("queue capacity is 1"));
+        numRejected++;
+      }
+    }
+    assertTrue(numRejected > 0);
+    assertEquals(numRejected, pgql.getAsyncParseRejectedCount() - rejectedCountBefore);
+    assertEquals(0, pgql.getAsyncParseQueueDepth());
+  }
+
+  @Test
+  public void testCachedResultsAreNotQueued() throws Exception {
+    pgql.setParseCacheSize(10);
+    try {
+      String query = "SELECT n FROM MATCH (n)";
+      PgqlResult result = pgql.parseAsync(query).get();
+      CompletableFuture<PgqlResult> future = pgql.parseAsync(query);
+      assertTrue(future.isDone());
+      assertTrue(result == future.get());
+    } finally {
+      pgql.setParseCacheSize(0);
+    }
+  }
+
+  @Test
+  public void testParseAsyncAfterClose() throws Exception {
+    Pgql closedPgql = new Pgql();
+    closedPgql.close();
+    CompletableFuture<PgqlResult> future = closedPgql.parseAsync("SELECT n FROM MATCH (n)");
+    try {
+      future.get();
+      fail();
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof PgqlException);
+    }
+  }
+
+  @Test
+  public void testSetQueueCapacityAfterClose() throws Exception {
+    Pgql closedPgql = new Pgql();
+    closedPgql.close();
+    thrown.expect(PgqlException.class);
+    closedPgql.setAsyncParseQueueCapacity(1);
+  }
+}
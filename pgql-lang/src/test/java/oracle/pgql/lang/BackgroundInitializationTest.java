@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class BackgroundInitializationTest {
+
+  private static final String QUERY = "SELECT n.name FROM MATCH (n) WHERE n.age > 25";
+
+  @Test
+  public void testParseWaitsForInitialization() throws Exception {
+    try (Pgql pgql = Pgql.initializeInBackground()) {
+      assertTrue(pgql.parse(QUERY).isQueryValid());
+      assertTrue(pgql.whenInitialized().isDone());
+    }
+  }
+
+  @Test
+  public void testWhenInitialized() throws Exception {
+    try (Pgql pgql = Pgql.initializeInBackground()) {
+      assertSame(pgql, pgql.whenInitialized().get(5, TimeUnit.MINUTES));
+      assertTrue(pgql.parse(QUERY).isQueryValid());
+    }
+  }
+
+  @Test
+  public void testParseAsyncDuringInitialization() throws Exception {
+    try (Pgql pgql = Pgql.initializeInBackground()) {
+      assertTrue(pgql.parseAsync(QUERY).get(5, TimeUnit.MINUTES).isQueryValid());
+    }
+  }
+
+  @Test
+  public void testBlockingConstructorDuringInitialization() throws Exception {
+    try (Pgql pgql1 = Pgql.initializeInBackground(); Pgql pgql2 = new Pgql()) {
+      assertTrue(pgql1.whenInitialized().isDone());
+      assertTrue(pgql2.parse(QUERY).isQueryValid());
+    }
+  }
+
+  @Test
+  public void testCloseDuringInitialization() throws Exception {
+    Pgql pgql1 = Pgql.initializeInBackground();
+    pgql1.close();
+
+    try (Pgql pgql2 = new Pgql()) {
+      assertTrue(pgql2.parse(QUERY).isQueryValid());
+    }
+  }
+}
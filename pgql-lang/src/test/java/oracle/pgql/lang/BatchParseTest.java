@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class BatchParseTest extends AbstractPgqlTest {
+
+  @Test
+  public void testParseAll() throws Exception {
+    List<String> queries = Arrays.asList( //
+        "SELECT n.name FROM MATCH (n) WHERE n.age > 25", //
+        "SELECT x FROM MATCH (n)", //
+        "INSERT VERTEX v LABELS (Person)", //
+        "SELECT n FROM MATCH (n) WHERE");
+    checkSameResultAsParse(queries, pgql.parseAll(queries));
+  }
+
+  @Test
+  public void testParseAllWithMultipleParsers() throws Exception {
+    List<String> queries = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      queries.add("SELECT n.name FROM MATCH (n) -> (m) WHERE n.age > " + i);
+    }
+    try (Pgql pgqlWithPool = new Pgql(4)) {
+      checkSameResultAsParse(queries, pgqlWithPool.parseAll(queries));
+    }
+  }
+
+  @Test
+  public void testParseAllEmpty() throws Exception {
+    assertTrue(pgql.parseAll(Collections.emptyList()).isEmpty());
+  }
+
+  @Test
+  public void testParseScript() throws Exception {
+    String script = "SELECT n.name FROM MATCH (n) WHERE n.name = 'a;b';\n" //
+        + "/* comment; */ SELECT \"x;y\" FROM MATCH (\"x;y\") ;\n" //
+        + "SELECT n FROM MATCH (n);\n" //
+        + " ; /* nothing here */\n";
+    List<PgqlResult> results = pgql.parseScript(script);
+    assertEquals(3, results.size());
+    assertEquals("SELECT n.name FROM MATCH (n) WHERE n.name = 'a;b'", results.get(0).getQueryString());
+    assertEquals("/* comment; */ SELECT \"x;y\" FROM MATCH (\"x;y\")", results.get(1).getQueryString());
+    assertEquals("SELECT n FROM MATCH (n)", results.get(2).getQueryString());
+    for (PgqlResult result : results) {
+      assertTrue(result.getErrorMessages(), result.isQueryValid());
+    }
+  }
+
+  @Test
+  public void testParseScriptWithInvalidStatement() throws Exception {
+    List<PgqlResult> results = pgql.parseScript("SELECT n FROM MATCH (n); SELECT FROM; SELECT m FROM MATCH (m)");
+    assertEquals(3, results.size());
+    assertTrue(results.get(0).isQueryValid());
+    assertFalse(results.get(1).isQueryValid());
+    assertTrue(results.get(2).isQueryValid());
+  }
+
+  private void checkSameResultAsParse(List<String> queries, List<PgqlResult> results) throws Exception {
+    assertEquals(queries.size(), results.size());
+    for (int i = 0; i < queries.size(); i++) {
+      PgqlResult expectedResult = pgql.parse(queries.get(i));
+      PgqlResult result = results.get(i);
+      assertEquals(queries.get(i), result.getQueryString());
+      assertEquals(expectedResult.isQueryValid(), result.isQueryValid());
+      assertEquals(expectedResult.getErrorMessages(), result.getErrorMessages());
+      assertEquals(expectedResult.getGraphQuery(), result.getGraphQuery());
+    }
+  }
+}
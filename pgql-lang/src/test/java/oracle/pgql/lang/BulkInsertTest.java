@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+import oracle.pgql.lang.ir.QueryVertex;
+import oracle.pgql.lang.ir.modify.EdgeInsertion;
+import oracle.pgql.lang.ir.modify.InsertClause;
+import oracle.pgql.lang.ir.modify.Insertion;
+import oracle.pgql.lang.ir.modify.ModifyQuery;
+import oracle.pgql.lang.ir.modify.VertexInsertion;
+
+public class BulkInsertTest extends AbstractPgqlTest {
+
+  @After
+  public void resetThreshold() {
+    pgql.setBulkInsertThreshold(1000);
+  }
+
+  @Test
+  public void testSameResultAsParsingAsAWhole() throws Exception {
+    checkSameResult(createInsert("", 500));
+    checkSameResult(createInsert("INTO g ", 500));
+    checkSameResult(createInsert("INTO \"Schema\".\"Graph\" ", 300));
+  }
+
+  @Test
+  public void testEdgesReferToInsertedVertices() throws Exception {
+    pgql.setBulkInsertThreshold(10);
+    PgqlResult result = pgql.parse(createInsert("", 500));
+    assertTrue(result.isQueryValid());
+    assertNull(result.getSpoofaxParseUnit()); // parsed in chunks
+
+    InsertClause insertClause = (InsertClause) ((ModifyQuery) result.getGraphQuery()).getModifications().get(0);
+    Map<String, QueryVertex> vertices = new HashMap<>();
+    for (Insertion insertion : insertClause.getInsertions()) {
+      if (insertion instanceof VertexInsertion) {
+        QueryVertex vertex = ((VertexInsertion) insertion).getVertex();
+        vertices.put(vertex.getName(), vertex);
+      }
+    }
+    for (Insertion insertion : insertClause.getInsertions()) {
+      if (insertion instanceof EdgeInsertion) {
+        EdgeInsertion edgeInsertion = (EdgeInsertion) insertion;
+        assertSame(vertices.get(edgeInsertion.getEdge().getSrc().getName()), edgeInsertion.getEdge().getSrc());
+        assertSame(vertices.get(edgeInsertion.getEdge().getDst().getName()), edgeInsertion.getEdge().getDst());
+        assertSame(edgeInsertion.getEdge(), edgeInsertion.getProperties().get(0).getPropertyAccess().getVariable());
+      }
+    }
+  }
+
+  @Test
+  public void testInvalidStatements() throws Exception {
+    String insert = createInsert("", 100);
+    checkSameResult(insert + ", VERTEX v0"); // duplicate variable
+    checkSameResult(insert + ", EDGE x BETWEEN v0 AND undefined"); // undefined variable
+    checkSameResult(insert + ", VERTEX x PROPERTIES (x.prop = undefined.prop)"); // undefined variable
+    checkSameResult(insert + ", VERTEX x LABELS ()"); // syntax error
+  }
+
+  @Test
+  public void testNotSplit() throws Exception {
+    assertNull(BulkInsert.fromQuery("INSERT VERTEX v, VERTEX w FROM MATCH (n)", 1));
+    assertNull(BulkInsert.fromQuery("INSERT VERTEX v PROPERTIES (v.prop = ?), VERTEX w", 1));
+    assertNull(BulkInsert.fromQuery("INSERT VERTEX v UPDATE n SET (n.prop = 1)", 1));
+    assertNull(BulkInsert.fromQuery("SELECT n FROM MATCH (n)", 1));
+    assertNull(BulkInsert.fromQuery("INSERT VERTEX v, VERTEX w", 3));
+    assertEquals(2, BulkInsert.fromQuery("INSERT VERTEX v, VERTEX w", 2).getNumInsertions());
+  }
+
+  private void checkSameResult(String insert) throws Exception {
+    pgql.setBulkInsertThreshold(0);
+    PgqlResult expected = pgql.parse(insert);
+    pgql.setBulkInsertThreshold(10);
+    PgqlResult actual = pgql.parse(insert);
+    assertEquals(expected.isQueryValid(), actual.isQueryValid());
+    assertEquals(expected.getErrorMessages(), actual.getErrorMessages());
+    assertEquals(expected.getGraphQuery(), actual.getGraphQuery());
+    assertEquals(expected.getPgqlVersion(), actual.getPgqlVersion());
+    assertEquals(expected.getBindVariableCount(), actual.getBindVariableCount());
+    if (expected.isQueryValid()) {
+      assertEquals(expected.getGraphQuery().toString(), actual.getGraphQuery().toString());
+    } else {
+      assertFalse(actual.getSpoofaxParseUnit() == null);
+    }
+  }
+
+  /**
+   * @return an INSERT statement with a path of numVertices vertices
+   */
+  static String createInsert(String intoClause, int numVertices) {
+    StringBuilder insert = new StringBuilder("INSERT ").append(intoClause);
+    for (int i = 0; i < numVertices; i++) {
+      if (i > 0) {
+        insert.append(",\n  ");
+      }
+      insert.append("VERTEX v").append(i).append(" LABELS (Person) PROPERTIES (v").append(i).append(".name = 'Person ")
+          .append(i).append("', v").append(i).append(".age = ").append(i % 100).append(")");
+      if (i > 0) {
+        insert.append(", EDGE e").append(i).append(" BETWEEN v").append(i - 1).append(" AND v").append(i)
+            .append(" LABELS (knows) PROPERTIES (e").append(i).append(".since = DATE '2000-01-01', e").append(i)
+            .append(".weight = v").append(i - 1).append(".age * 0.5)");
+      }
+    }
+    return insert.toString();
+  }
+}
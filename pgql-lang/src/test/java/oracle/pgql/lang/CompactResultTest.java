@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import oracle.pgql.lang.ParseMetrics.Outcome;
+
+public class CompactResultTest extends AbstractPgqlTest {
+
+  @After
+  public void resetCompactResults() {
+    pgql.setCompactResults(false);
+    pgql.setParseCacheSize(0);
+  }
+
+  @Test
+  public void testCompact() throws Exception {
+    for (String query : Arrays.asList("SELECT n.name FROM MATCH (n) WHERE n.age > ?", "SELECT x FROM MATCH (n)",
+        "SELECT n FROM MATCH (n) WHERE", "")) {
+      PgqlResult result = pgql.parse(query);
+      PgqlResult compactResult = result.compact();
+      assertNull(compactResult.getSpoofaxParseUnit());
+      assertEquals(result.getQueryString(), compactResult.getQueryString());
+      assertEquals(result.isQueryValid(), compactResult.isQueryValid());
+      assertEquals(result.getErrorMessages(), compactResult.getErrorMessages());
+      assertSame(result.getPgqlStatement(), compactResult.getPgqlStatement());
+      assertEquals(result.getPgqlVersion(), compactResult.getPgqlVersion());
+      assertEquals(result.getBindVariableCount(), compactResult.getBindVariableCount());
+      assertEquals(result.isSyntaxValid(), compactResult.isSyntaxValid());
+      assertSame(compactResult, compactResult.compact());
+    }
+  }
+
+  @Test
+  public void testCompactResults() throws Exception {
+    String query = "SELECT n.name FROM MATCH (n) WHERE n.age > 25";
+    assertNotNull(pgql.parse(query).getSpoofaxParseUnit());
+
+    pgql.setCompactResults(true);
+    pgql.setParseCacheSize(10);
+    assertNull(pgql.parse(query).getSpoofaxParseUnit());
+    assertNull(pgql.parse(query).getSpoofaxParseUnit()); // from the cache
+    for (PgqlResult result : pgql.parseAll(Arrays.asList(query, "SELECT n FROM MATCH (n)"))) {
+      assertNull(result.getSpoofaxParseUnit());
+    }
+  }
+
+  @Test
+  public void testOutcomeOfCompactResults() throws Exception {
+    List<ParseMetrics> metrics = new ArrayList<>();
+    ParseListener listener = metrics::add;
+    pgql.addParseListener(listener);
+    try {
+      pgql.setCompactResults(true);
+      pgql.parse("SELECT x FROM MATCH (n)");
+      pgql.parse("SELECT n FROM MATCH (n) WHERE");
+    } finally {
+      pgql.removeParseListener(listener);
+    }
+    assertEquals(Outcome.ANALYSIS_ERROR, metrics.get(0).getOutcome());
+    assertEquals(Outcome.SYNTAX_ERROR, metrics.get(1).getOutcome());
+  }
+}
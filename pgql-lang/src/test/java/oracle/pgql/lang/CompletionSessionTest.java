@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import oracle.pgql.lang.editor.completion.PgqlCompletion;
+import oracle.pgql.lang.editor.completion.PgqlCompletionContext;
+
+public class CompletionSessionTest extends AbstractPgqlTest {
+
+  private static final PgqlCompletionContext CTX = new PgqlCompletionContext() {
+
+    @Override
+    public List<String> getGraphNames() {
+      return Collections.singletonList("g");
+    }
+
+    @Override
+    public List<String> getVertexProperties(String graphName) {
+      return Arrays.asList("name", "age");
+    }
+
+    @Override
+    public List<String> getEdgeProperties(String graphName) {
+      return Arrays.asList("weight");
+    }
+
+    @Override
+    public List<String> getVertexLabels(String graphName) {
+      return Arrays.asList("Person", "Student");
+    }
+
+    @Override
+    public List<String> getEdgeLabels(String graphName) {
+      return Arrays.asList("knows", "likes");
+    }
+  };
+
+  @Test
+  public void testEditOutsidePattern() throws Exception {
+    PgqlCompletionSession session = pgql.createCompletionSession();
+    checkSameAsComplete(session, "SELECT n FROM MATCH (n:Person) -[e]-> (m) WHERE ???n.age > 25");
+    checkSameAsComplete(session, "SELECT n FROM MATCH (n:Person) -[e]-> (m) WHERE n.age > 25 AND ???m.age > 25");
+    checkSameAsComplete(session, "SELECT ???m FROM MATCH (n:Person) -[e]-> (m) WHERE n.age > 25 AND m.age > 25");
+    checkSameAsComplete(session, "SELECT m FROM MATCH (n:Person) -[e]-> (m) WHERE n.age > 25 ORDER BY ???m");
+    assertEquals(1, session.getParseCount());
+  }
+
+  @Test
+  public void testEditInsidePattern() throws Exception {
+    PgqlCompletionSession session = pgql.createCompletionSession();
+    checkSameAsComplete(session, "SELECT n FROM MATCH (n:Person) WHERE ???n.age > 25");
+    checkSameAsComplete(session, "SELECT n FROM MATCH (n:Person) -[e]-> (m) WHERE ???n.age > 25");
+    checkSameAsComplete(session, "SELECT n FROM g MATCH (n:Person) -[e]-> (m) WHERE ???n.age > 25");
+    assertEquals(3, session.getParseCount());
+  }
+
+  @Test
+  public void testVariablesKeptWhileTyping() throws Exception {
+    PgqlCompletionSession session = pgql.createCompletionSession();
+    session.complete("SELECT n FROM MATCH (n) -[e]-> (m) WHERE n.age > 25", 7, CTX);
+
+    // the query is incomplete, but the variables are still known from the previous version of the query
+    String query = "SELECT n FROM MATCH (n) -[e]-> (m) WHERE n.age > 25 AND ";
+    List<PgqlCompletion> completions = session.complete(query, query.length(), CTX);
+    assertTrue(completions.contains(new PgqlCompletion("m", "vertex")));
+    assertTrue(completions.contains(new PgqlCompletion("e", "edge")));
+    assertEquals(1, session.getParseCount());
+  }
+
+  @Test
+  public void testNoMatchClause() throws Exception {
+    PgqlCompletionSession session = pgql.createCompletionSession();
+    checkSameAsComplete(session, "SELECT n FROM g WHERE (n) -> (m), ???n.age > 25");
+    checkSameAsComplete(session, "SELECT n FROM g WHERE (n) -> (m), n.age > 25, ???m.age > 25");
+    assertEquals(2, session.getParseCount());
+  }
+
+  /**
+   * @param query
+   *          a query with ??? at the cursor position
+   */
+  private void checkSameAsComplete(PgqlCompletionSession session, String query) throws Exception {
+    int cursor = query.indexOf("???");
+    String queryString = query.replace("???", "");
+    assertEquals(pgql.complete(queryString, cursor, CTX), session.complete(queryString, cursor, CTX));
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+/**
+ * Runs against its own global PGQL instance with a pool of {@link #NUM_THREADS} parsers, rather than against the
+ * single-parser instance of {@link AbstractPgqlTest}, since the pool size is fixed once PGQL is initialized.
+ */
+public class ConcurrentParseTest {
+
+  private static final int NUM_THREADS = 4;
+
+  private static final int NUM_QUERIES = 100;
+
+  private static final long TIMEOUT_MINUTES = 1;
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private static Pgql pgql;
+
+  @BeforeClass
+  public static void setUp() throws Exception {
+    assertFalse("PGQL should not be initialized by another test", Pgql.isGloballyInitialized());
+    pgql = new Pgql(NUM_THREADS);
+    assertEquals(NUM_THREADS, pgql.getRuntimePool().size());
+  }
+
+  @AfterClass
+  public static void tearDown() {
+    pgql.close();
+  }
+
+  @Test
+  public void testConcurrentParsing() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+    try {
+      List<Future<PgqlResult>> futures = new ArrayList<>();
+      for (int i = 0; i < NUM_QUERIES; i++) {
+        String query = i % 2 == 0 //
+            ? "SELECT n.prop" + i + " FROM MATCH (n) -> (m) WHERE n.age > " + i //
+            : "SELECT x FROM MATCH (n) WHERE n.age > " + i;
+        futures.add(executor.submit(() -> pgql.parse(query)));
+      }
+
+      for (int i = 0; i < NUM_QUERIES; i++) {
+        PgqlResult result = futures.get(i).get();
+        if (i % 2 == 0) {
+          assertTrue(result.isQueryValid());
+          assertEquals("SELECT n.prop" + i + " FROM MATCH (n) -> (m) WHERE n.age > " + i, result.getQueryString());
+        } else {
+          assertFalse(result.isQueryValid());
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void testAllParsersInUseAtOnce() throws Exception {
+    SpoofaxRuntimePool pool = pgql.getRuntimePool();
+    CyclicBarrier allAcquired = new CyclicBarrier(NUM_THREADS);
+    ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < NUM_THREADS; i++) {
+        futures.add(executor.submit(() -> {
+          SpoofaxRuntime runtime = pool.acquire();
+          try {
+            // only passes once every thread holds a parser of its own
+            allAcquired.await(TIMEOUT_MINUTES, TimeUnit.MINUTES);
+          } finally {
+            pool.release(runtime);
+          }
+          return null;
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(TIMEOUT_MINUTES, TimeUnit.MINUTES);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testParseWhileOtherParsersAreInUse() throws Exception {
+    SpoofaxRuntimePool pool = pgql.getRuntimePool();
+    List<SpoofaxRuntime> inUse = new ArrayList<>();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      // take all parsers but one, like queries that are still being parsed would
+      for (int i = 0; i < NUM_THREADS - 1; i++) {
+        inUse.add(pool.acquire());
+      }
+      Future<PgqlResult> future = executor.submit(() -> pgql.parse("SELECT n.name FROM MATCH (n) WHERE n.age > 25"));
+      assertTrue(future.get(TIMEOUT_MINUTES, TimeUnit.MINUTES).isQueryValid());
+    } finally {
+      inUse.forEach(pool::release);
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testMultiplePgqlInstances() throws Exception {
+    try (Pgql otherPgql = new Pgql()) {
+      // the other instance shares the parsers of the global instance
+      assertSame(pgql.getRuntimePool(), otherPgql.getRuntimePool());
+      assertTrue(otherPgql.parse("SELECT n FROM MATCH (n)").isQueryValid());
+    }
+    // closing one instance should not affect the other
+    assertTrue(pgql.parse("SELECT n FROM MATCH (n)").isQueryValid());
+  }
+
+  @Test
+  public void testInvalidParserPoolSize() throws Exception {
+    thrown.expect(IllegalArgumentException.class);
+    new Pgql(0);
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import oracle.pgql.lang.ir.GraphQuery;
+import oracle.pgql.lang.util.ConstantFolder;
+
+public class ConstantFolderTest extends AbstractPgqlTest {
+
+  @After
+  public void disableConstantFolding() {
+    pgql.setConstantFolding(false);
+  }
+
+  @Test
+  public void testArithmetic() throws Exception {
+    checkFolded("SELECT 1 + 2 * 3 AS a, 8 / 2 AS b, -(3 - 5) AS c FROM MATCH (n)",
+        "SELECT 7 AS a, 4 AS b, 2 AS c FROM MATCH (n)");
+    checkFolded("SELECT n.name FROM MATCH (n) WHERE n.age > 10 * 2 + n.offset",
+        "SELECT n.name FROM MATCH (n) WHERE n.age > 20 + n.offset");
+    checkFolded("SELECT 'a' || 'b' AS a, n.name || 'c' || 'd' AS b FROM MATCH (n)",
+        "SELECT 'ab' AS a, n.name || 'c' || 'd' AS b FROM MATCH (n)");
+  }
+
+  @Test
+  public void testComparisons() throws Exception {
+    checkFolded("SELECT 1 < 2 AS a, 2.0 = 2 AS b, true <> false AS c, DATE '2000-01-01' >= DATE '2001-01-01' AS d "
+        + "FROM MATCH (n)", "SELECT true AS a, true AS b, true AS c, false AS d FROM MATCH (n)");
+  }
+
+  @Test
+  public void testLogic() throws Exception {
+    checkFolded("SELECT n.name FROM MATCH (n) WHERE n.age > 3 AND true",
+        "SELECT n.name FROM MATCH (n) WHERE n.age > 3");
+    checkFolded("SELECT n.name FROM MATCH (n) WHERE false OR n.age > 3",
+        "SELECT n.name FROM MATCH (n) WHERE n.age > 3");
+    checkFolded("SELECT n.name FROM MATCH (n) WHERE NOT NOT n.age > 3",
+        "SELECT n.name FROM MATCH (n) WHERE n.age > 3");
+    checkFolded("SELECT n.name FROM MATCH (n) WHERE n.age > 3 AND 1 > 2",
+        "SELECT n.name FROM MATCH (n) WHERE false");
+    checkFolded("SELECT n.name FROM MATCH (n) WHERE n.age > 3 OR NOT false",
+        "SELECT n.name FROM MATCH (n)");
+    checkFolded("SELECT n.name FROM MATCH (n) WHERE n.age > 3 AND 1 IS NOT NULL",
+        "SELECT n.name FROM MATCH (n) WHERE n.age > 3");
+  }
+
+  @Test
+  public void testCase() throws Exception {
+    checkFolded("SELECT CASE 2 WHEN 1 THEN 'a' WHEN 2 THEN n.name ELSE 'c' END AS x FROM MATCH (n)",
+        "SELECT n.name AS x FROM MATCH (n)");
+    checkFolded("SELECT CASE 3 WHEN 1 THEN 'a' ELSE 'c' END AS x FROM MATCH (n)",
+        "SELECT 'c' AS x FROM MATCH (n)");
+    checkFolded("SELECT CASE WHEN 1 < 2 THEN n.name ELSE 'x' END AS x FROM MATCH (n)",
+        "SELECT n.name AS x FROM MATCH (n)");
+    checkFolded("SELECT CASE WHEN 1 > 2 THEN n.name ELSE 'x' END AS x FROM MATCH (n)",
+        "SELECT 'x' AS x FROM MATCH (n)");
+  }
+
+  @Test
+  public void testCast() throws Exception {
+    checkFolded("SELECT CAST('12' AS INTEGER) AS a, CAST(1 AS STRING) AS b, CAST(DATE '2000-01-01' AS DATE) AS c, "
+        + "CAST(2 AS DOUBLE) AS d, CAST('TRUE' AS BOOLEAN) AS e FROM MATCH (n)",
+        "SELECT 12 AS a, '1' AS b, DATE '2000-01-01' AS c, 2.0 AS d, true AS e FROM MATCH (n)");
+  }
+
+  @Test
+  public void testReferenceToFoldedElement() throws Exception {
+    checkFolded("SELECT n.age + (1 + 1) AS x FROM MATCH (n) ORDER BY x",
+        "SELECT n.age + 2 AS x FROM MATCH (n) ORDER BY x");
+  }
+
+  @Test
+  public void testNotFolded() throws Exception {
+    checkNotFolded("SELECT 1 / 0 AS a, 2147483647 + 1 AS b, 1.5 % 2 AS c, 'b' > 'a' AS d FROM MATCH (n)");
+    checkNotFolded("SELECT 7 / 2 AS a, 7 % 2 AS b, 6 % 3 AS c FROM MATCH (n)");
+
+    // engines evaluate decimal arithmetic either as doubles or as exact decimals
+    checkNotFolded("SELECT 0.1 + 0.2 AS a, 7 / 2.0 AS b, 1.5 * 2 AS c, 1.0 - 0.9 AS d FROM MATCH (n)");
+    checkNotFolded("SELECT CAST('x' AS INTEGER) AS a, CAST(1.5 AS STRING) AS b, CAST(1 AS LONG) AS c FROM MATCH (n)");
+    checkNotFolded("SELECT CAST(true AS STRING) AS a FROM MATCH (n)");
+
+    // engines accept different date formats when casting a string to a date
+    checkNotFolded("SELECT CAST('2000-01-01' AS DATE) AS a, CAST('01-JAN-2000' AS DATE) AS b FROM MATCH (n)");
+
+    // string equality depends on the collation and on whether trailing spaces count
+    checkNotFolded("SELECT 'x' = 'x' AS a, 'x' <> 'y' AS b, 'a' = 'a ' AS c FROM MATCH (n)");
+    checkNotFolded("SELECT CASE 'a' WHEN 'A' THEN 1 ELSE 2 END AS x FROM MATCH (n)");
+    checkNotFolded("SELECT n.name FROM MATCH (n) WHERE n.age > 3 AND NOT n.retired");
+
+    // bind variables, aggregations and subqueries are not removed
+    checkNotFolded("SELECT n.name FROM MATCH (n) WHERE n.age > ? AND false");
+    checkNotFolded("SELECT CASE WHEN true THEN 1 ELSE COUNT(*) END AS x FROM MATCH (n)");
+    checkNotFolded("SELECT n.name FROM MATCH (n) WHERE true OR EXISTS ( SELECT * FROM MATCH (n) -> (m) )");
+  }
+
+  @Test
+  public void testModifyQuery() throws Exception {
+    checkFolded("INSERT VERTEX v PROPERTIES (v.age = 1 + 1) UPDATE n SET (n.age = n.age + 2 * 3) FROM MATCH (n)",
+        "INSERT VERTEX v PROPERTIES (v.age = 2) UPDATE n SET (n.age = n.age + 6) FROM MATCH (n)");
+  }
+
+  @Test
+  public void testParseWithConstantFolding() throws Exception {
+    GraphQuery expected = parse("SELECT 3 AS x FROM MATCH (n) WHERE n.age > ?");
+
+    pgql.setConstantFolding(true);
+    PgqlResult result = pgql.parse("SELECT 1 + 2 AS x FROM MATCH (n) WHERE n.age > ? AND true");
+    assertTrue(result.getErrorMessages(), result.isQueryValid());
+    assertEquals(expected, result.getGraphQuery());
+    assertEquals(expected.toString(), result.getGraphQuery().toString());
+    assertEquals(1, result.getBindVariableCount());
+  }
+
+  @Test
+  public void testParseAllWithConstantFolding() throws Exception {
+    pgql.setConstantFolding(true);
+    List<PgqlResult> results = pgql.parseScript("SELECT 1 + 2 AS x FROM MATCH (n); SELECT x FROM MATCH (n)");
+    assertEquals(parse("SELECT 3 AS x FROM MATCH (n)"), results.get(0).getGraphQuery());
+    assertFalse(results.get(1).isQueryValid());
+  }
+
+  private void checkFolded(String query, String expectedQuery) throws Exception {
+    GraphQuery expected = parse(expectedQuery);
+    GraphQuery original = parse(query);
+    String originalString = original.toString();
+
+    GraphQuery actual = new ConstantFolder().rewrite(original);
+    assertEquals(expected.toString(), actual.toString());
+    assertEquals(query, expected, actual);
+    assertEquals(originalString, original.toString());
+  }
+
+  private void checkNotFolded(String query) throws Exception {
+    GraphQuery original = parse(query);
+    assertSame(query, original, new ConstantFolder().rewrite(original));
+  }
+
+  private static GraphQuery parse(String query) throws Exception {
+    PgqlResult result = pgql.parse(query);
+    assertTrue(result.getErrorMessages(), result.isQueryValid());
+    return result.getGraphQuery();
+  }
+}
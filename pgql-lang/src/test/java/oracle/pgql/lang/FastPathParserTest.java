@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import oracle.pgql.lang.ir.ExpAsVar;
+import oracle.pgql.lang.ir.GraphQuery;
+import oracle.pgql.lang.ir.SelectQuery;
+
+public class FastPathParserTest extends AbstractPgqlTest {
+
+  @After
+  public void disableFastPath() {
+    pgql.setFastPathParsing(false);
+  }
+
+  @Test
+  public void testGraphPatterns() throws Exception {
+    checkSameQuery("SELECT n.name FROM MATCH (n)");
+    checkSameQuery("SELECT n.name FROM MATCH (n:Person) -[e:knows]-> (m:Person)");
+    checkSameQuery("SELECT n.name FROM MATCH (n) <-[e]- (m) -[f]- (o)");
+    checkSameQuery("SELECT n.name FROM MATCH (n) -> (m) <- (o) - (p)");
+    checkSameQuery("SELECT n.name FROM MATCH () -[:knows]-> (n) -[]-> (:Person)");
+    checkSameQuery("SELECT n.name FROM MATCH (n:Person|Student|\"Employee\") -[e:likes|knows]- (n)");
+    checkSameQuery("SELECT n.name FROM MATCH (n) -> (m), MATCH (m) -> (o) -> (n)");
+    checkSameQuery("SELECT n.name FROM MATCH (n) ON g, MATCH (n) -> (m) ON G");
+    checkSameQuery("SELECT n.name FROM MATCH (n) ON mySchema.\"myGraph\"");
+    checkSameQuery("select n.name from match (N) - [ E ] -> (m) where n.age > 3");
+  }
+
+  @Test
+  public void testSelect() throws Exception {
+    checkSameQuery("SELECT n, e, m AS other FROM MATCH (n) -[e]-> (m)");
+    checkSameQuery("SELECT n.name, n.\"Age\", m.name AS mName, \"M\".age AS \"Age 2\" FROM MATCH (n) -> (m)");
+    checkSameQuery("SELECT DISTINCT n.age + 1, n.age*2, n.name || '!' FROM MATCH (n)");
+    checkSameQuery("SELECT n.age > 18 AND NOT n.retired OR n.name = 'Bob' AS adult FROM MATCH (n)");
+    checkSameQuery("SELECT -5 AS a, -(5.5) AS b, - -5 AS c, -n.age AS d, 1 - 2 * 3 % 4 / 5 AS e FROM MATCH (n)");
+    checkSameQuery("SELECT 'It''s' AS a, \"n\".\"a\"\"b\" AS \"c\"\"d\", true AS t, FALSE AS f FROM MATCH (\"n\")");
+    checkSameQuery("SELECT n.a /* comment */ AS a FROM MATCH (n) /* comment */");
+  }
+
+  @Test
+  public void testWhere() throws Exception {
+    checkSameQuery("SELECT n.name FROM MATCH (n) -> (m) WHERE n = m OR n <> m");
+    checkSameQuery("SELECT n.name FROM MATCH (n:Person) WHERE n.age >= 18 AND n.age <= 65 AND n.name != 'Bob'");
+    checkSameQuery("SELECT n.name FROM MATCH (n) WHERE (n.a < 1 OR n.b > 2) AND (n.c = 3 AND n.d <> 4)");
+    checkSameQuery("SELECT n.name FROM MATCH (n) WHERE NOT NOT n.a = n.b || n.c");
+    checkSameQuery("SELECT n.name FROM MATCH (n) WHERE n.a = 1 AND n.a = 1");
+    checkSameQuery("SELECT n.name FROM MATCH (n) WHERE n.retired AND n.age > 1 + 2 AND n.name = 'x' || n.suffix");
+  }
+
+  @Test
+  public void testOrderByLimitOffset() throws Exception {
+    checkSameQuery("SELECT n.name FROM MATCH (n) ORDER BY n.age DESC, n.name ASC, n.id LIMIT 10 OFFSET 20");
+    checkSameQuery("SELECT n.name FROM MATCH (n) ORDER BY name OFFSET 5 LIMIT 1");
+    checkSameQuery("SELECT n.age * 2 AS x FROM MATCH (n) ORDER BY n.age * 2, n.age * 2 + 1");
+    checkSameQuery("SELECT n.name AS n FROM MATCH (n) ORDER BY n");
+    checkSameQuery("SELECT DISTINCT n.name, n.age AS a FROM MATCH (n) ORDER BY n.name, a DESC");
+  }
+
+  @Test
+  public void testUnsupportedQueries() {
+    // not in the subset
+    assertNull(FastPathParser.parse("SELECT * FROM MATCH (n)"));
+    assertNull(FastPathParser.parse("SELECT n.name, COUNT(*) FROM MATCH (n) GROUP BY n.name"));
+    assertNull(FastPathParser.parse("SELECT id(n) FROM MATCH (n)"));
+    assertNull(FastPathParser.parse("SELECT n.name FROM MATCH (n) WHERE n.age > ?"));
+    assertNull(FastPathParser.parse("SELECT n.name FROM MATCH (n) -/:knows*/-> (m)"));
+    assertNull(FastPathParser.parse("SELECT n.name FROM MATCH (n) -[e]->* (m)"));
+    assertNull(FastPathParser.parse("SELECT n.name FROM MATCH SHORTEST ( (n) -[e]->* (m) )"));
+    assertNull(FastPathParser.parse("SELECT n.name FROM MATCH (n) WHERE n.name IS NULL"));
+    assertNull(FastPathParser.parse("SELECT n.name FROM MATCH (n) WHERE n.dob > DATE '2000-01-01'"));
+    assertNull(FastPathParser.parse("SELECT n.name FROM g MATCH (n)"));
+    assertNull(FastPathParser.parse("SELECT n.name WHERE (n)"));
+    assertNull(FastPathParser.parse("SELECT n.name FROM MATCH (n) // comment"));
+    assertNull(FastPathParser.parse("INSERT VERTEX v"));
+
+    // operands of the wrong type
+    assertNull(FastPathParser.parse("SELECT n.name FROM MATCH (n) WHERE 1 + 2"));
+    assertNull(FastPathParser.parse("SELECT n.name FROM MATCH (n) WHERE n.a = 'x' + 1"));
+    assertNull(FastPathParser.parse("SELECT n.name FROM MATCH (n) WHERE n.a AND 'x'"));
+    assertNull(FastPathParser.parse("SELECT n.name FROM MATCH (n) WHERE true = 1"));
+    assertNull(FastPathParser.parse("SELECT n.name FROM MATCH (n) -[e]-> (m) WHERE n = e OR n = n.a"));
+    assertNull(FastPathParser.parse("SELECT -'x' AS a, 1 || 'x' AS b FROM MATCH (n)"));
+    assertNull(FastPathParser.parse("SELECT n.age + 1 AS x FROM MATCH (n) ORDER BY x || 'a'"));
+
+    // errors
+    assertNull(FastPathParser.parse(""));
+    assertNull(FastPathParser.parse("SELECT m.name FROM MATCH (n)"));
+    assertNull(FastPathParser.parse("SELECT n.name FROM MATCH (n) -[n]-> (m)"));
+    assertNull(FastPathParser.parse("SELECT n.name FROM MATCH (n) -[e]-> (m) -[e]-> (o)"));
+    assertNull(FastPathParser.parse("SELECT n.name, m.name FROM MATCH (n) -> (m)"));
+    assertNull(FastPathParser.parse("SELECT n.name AS x FROM MATCH (n) WHERE x > 3"));
+    assertNull(FastPathParser.parse("SELECT n FROM MATCH (n) ORDER BY n"));
+    assertNull(FastPathParser.parse("SELECT n.name FROM MATCH (n) WHERE n > 3"));
+    assertNull(FastPathParser.parse("SELECT DISTINCT n.name FROM MATCH (n) ORDER BY n.age"));
+    assertNull(FastPathParser.parse("SELECT n.name FROM MATCH (n) ON g, MATCH (m) ON h"));
+    assertNull(FastPathParser.parse("SELECT n.name FROM MATCH (n) WHERE n.name = 'It\\'s'"));
+    assertNull(FastPathParser.parse("SELECT n.name FROM MATCH (n) WHERE n.age > 99999999999999999999"));
+    assertNull(FastPathParser.parse("SELECT n.name FROM MATCH (n) LIMIT 10;"));
+    assertNull(FastPathParser.parse("SELECT n.name FROM MATCH (n) WHERE n.name = 'unterminated"));
+  }
+
+  @Test
+  public void testParseWithFastPath() throws Exception {
+    String query = "SELECT n.name FROM MATCH (n:Person) WHERE n.age > 25";
+    GraphQuery expected = pgql.parse(query).getGraphQuery();
+
+    pgql.setFastPathParsing(true);
+    PgqlResult result = pgql.parse(query);
+    assertTrue(result.isQueryValid());
+    assertNull(result.getSpoofaxParseUnit());
+    assertEquals(PgqlVersion.V_1_3_OR_UP, result.getPgqlVersion());
+    assertEquals(expected, result.getGraphQuery());
+
+    // queries outside the subset and queries with errors are parsed by Spoofax
+    result = pgql.parse("SELECT n.name FROM MATCH (n) GROUP BY n.name");
+    assertTrue(result.isQueryValid());
+    assertNotNull(result.getSpoofaxParseUnit());
+    result = pgql.parse("SELECT m.name FROM MATCH (n)");
+    assertFalse(result.isQueryValid());
+    assertTrue(result.getErrorMessages().contains("Unresolved variable"));
+  }
+
+  private void checkSameQuery(String query) throws Exception {
+    PgqlResult expectedResult = pgql.parse(query);
+    assertTrue(expectedResult.getErrorMessages(), expectedResult.isQueryValid());
+    SelectQuery expected = (SelectQuery) expectedResult.getGraphQuery();
+
+    SelectQuery actual = FastPathParser.parse(query);
+    assertNotNull(query, actual);
+    assertEquals(query, expected, actual);
+    assertEquals(query, expected.toString(), actual.toString());
+
+    List<ExpAsVar> expectedElements = expected.getProjection().getElements();
+    List<ExpAsVar> actualElements = actual.getProjection().getElements();
+    for (int i = 0; i < expectedElements.size(); i++) {
+      assertEquals(query, expectedElements.get(i).getName(), actualElements.get(i).getName());
+      assertEquals(query, expectedElements.get(i).getNameOriginText(), actualElements.get(i).getNameOriginText());
+      assertEquals(query, expectedElements.get(i).isAnonymous(), actualElements.get(i).isAnonymous());
+    }
+  }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class KeepAliveTest {
+
+  private static final String QUERY = "SELECT n.name FROM MATCH (n) WHERE n.age > 25";
+
+  @After
+  public void resetKeepAliveTime() {
+    Pgql.setKeepAliveTime(0, TimeUnit.MILLISECONDS);
+  }
+
+  @Test
+  public void testReleasedRightAwayByDefault() throws Exception {
+    new Pgql().close();
+    assertFalse(Pgql.isGloballyInitialized());
+  }
+
+  @Test
+  public void testKeptAliveAfterClose() throws Exception {
+    Pgql.setKeepAliveTime(1, TimeUnit.MINUTES);
+    for (int i = 0; i < 10; i++) {
+      try (Pgql pgql = new Pgql()) {
+        assertTrue(pgql.parse(QUERY).isQueryValid());
+      }
+      assertTrue(Pgql.isGloballyInitialized());
+    }
+
+    // releases the global instance right away, because the keep-alive time no longer applies
+    Pgql.setKeepAliveTime(0, TimeUnit.MILLISECONDS);
+    new Pgql().close();
+    assertFalse(Pgql.isGloballyInitialized());
+  }
+
+  @Test
+  public void testReleasedAfterKeepAliveTime() throws Exception {
+    Pgql.setKeepAliveTime(100, TimeUnit.MILLISECONDS);
+    new Pgql().close();
+
+    long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1);
+    while (Pgql.isGloballyInitialized() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertFalse(Pgql.isGloballyInitialized());
+  }
+
+  @Test
+  public void testNotReleasedWhileInUse() throws Exception {
+    Pgql.setKeepAliveTime(100, TimeUnit.MILLISECONDS);
+    try (Pgql pgql1 = new Pgql()) {
+      new Pgql().close();
+      Thread.sleep(500);
+      assertTrue(Pgql.isGloballyInitialized());
+      assertTrue(pgql1.parse(QUERY).isQueryValid());
+    }
+  }
+
+  @Test
+  public void testReopenedWithinKeepAliveTime() throws Exception {
+    Pgql.setKeepAliveTime(200, TimeUnit.MILLISECONDS);
+    new Pgql().close();
+    try (Pgql pgql = new Pgql()) {
+      Thread.sleep(500); // the release that was scheduled by the first close should not happen
+      assertTrue(Pgql.isGloballyInitialized());
+      assertTrue(pgql.parse(QUERY).isQueryValid());
+    }
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ParseCacheTest extends AbstractPgqlTest {
+
+  @After
+  public void disableCache() {
+    pgql.setParseCacheSize(0);
+    pgql.setConstantFolding(false);
+  }
+
+  @Test
+  public void testCacheDisabledByDefault() throws Exception {
+    assertNull(pgql.getParseCacheStatistics());
+    String query = "SELECT n FROM MATCH (n)";
+    assertNotSame(pgql.parse(query), pgql.parse(query));
+  }
+
+  @Test
+  public void testHitAndMiss() throws Exception {
+    pgql.setParseCacheSize(10);
+    String query = "SELECT n.name FROM MATCH (n) WHERE n.age > 20";
+
+    PgqlResult result1 = pgql.parse(query);
+    PgqlResult result2 = pgql.parse(query);
+    assertSame(result1, result2);
+    assertSame(result1.getPgqlStatement(), result2.getPgqlStatement());
+
+    ParseCacheStatistics statistics = pgql.getParseCacheStatistics();
+    assertEquals(1, statistics.getHitCount());
+    assertEquals(1, statistics.getMissCount());
+    assertEquals(0, statistics.getEvictionCount());
+    assertEquals(1, statistics.getSize());
+  }
+
+  @Test
+  public void testInvalidQueriesAreCached() throws Exception {
+    pgql.setParseCacheSize(10);
+    String query = "SELECT x FROM MATCH (n)";
+
+    PgqlResult result = pgql.parse(query);
+    assertFalse(result.isQueryValid());
+    assertSame(result, pgql.parse(query));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEviction() throws Exception {
+    pgql.setParseCacheSize(2);
+    String query1 = "SELECT n FROM MATCH (n)";
+    String query2 = "SELECT m FROM MATCH (m)";
+    String query3 = "SELECT o FROM MATCH (o)";
+
+    PgqlResult result1 = pgql.parse(query1);
+    pgql.parse(query2);
+    pgql.parse(query1); // makes query2 the least recently used query
+    pgql.parse(query3); // evicts query2
+
+    ParseCacheStatistics statistics = pgql.getParseCacheStatistics();
+    assertEquals(1, statistics.getEvictionCount());
+    assertEquals(2, statistics.getSize());
+    assertEquals(2, statistics.getMaxSize());
+
+    assertSame(result1, pgql.parse(query1));
+    pgql.parse(query2);
+    assertEquals(2, pgql.getParseCacheStatistics().getHitCount());
+    assertEquals(4, pgql.getParseCacheStatistics().getMissCount());
+  }
+
+  @Test
+  public void testChangingSettingsEmptiesCache() throws Exception {
+    pgql.setParseCacheSize(10);
+    String query = "SELECT 1 + 2 AS x FROM MATCH (n)";
+
+    PgqlResult unfolded = pgql.parse(query);
+    pgql.setConstantFolding(true);
+    PgqlResult folded = pgql.parse(query);
+    assertNotSame(unfolded, folded);
+    assertEquals(pgql.parse("SELECT 3 AS x FROM MATCH (n)").getGraphQuery(), folded.getGraphQuery());
+    assertSame(folded, pgql.parse(query));
+
+    ParseCacheStatistics statistics = pgql.getParseCacheStatistics();
+    assertEquals(10, statistics.getMaxSize());
+    assertEquals(2, statistics.getSize());
+  }
+
+  @Test
+  public void testNegativeCacheSize() throws Exception {
+    thrown.expect(IllegalArgumentException.class);
+    pgql.setParseCacheSize(-1);
+  }
+}
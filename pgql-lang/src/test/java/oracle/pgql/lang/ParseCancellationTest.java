@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class ParseCancellationTest extends AbstractPgqlTest {
+
+  private static final String QUERY = "SELECT n.name FROM MATCH (n) WHERE n.age > 25";
+
+  @Test
+  public void testParseWithinTimeout() throws Exception {
+    assertTrue(pgql.parse(QUERY, 5, TimeUnit.MINUTES).isQueryValid());
+    assertTrue(pgql.parse(QUERY, new PgqlCancellationToken()).isQueryValid());
+  }
+
+  @Test
+  public void testTimeoutExceeded() throws Exception {
+    thrown.expect(PgqlException.class);
+    thrown.expectMessage("exceeded the timeout of 0 ms");
+    pgql.parse(QUERY, 0, TimeUnit.MILLISECONDS);
+  }
+
+  @Test
+  public void testCancelled() throws Exception {
+    PgqlCancellationToken token = new PgqlCancellationToken();
+    assertFalse(token.isCancelled());
+    token.cancel();
+    assertTrue(token.isCancelled());
+
+    thrown.expect(PgqlException.class);
+    thrown.expectMessage("was cancelled");
+    pgql.parse(QUERY, token);
+  }
+
+  @Test
+  public void testCancelledBeforeParserIsAvailable() throws Exception {
+    SpoofaxRuntimePool pool = pgql.getRuntimePool();
+    List<SpoofaxRuntime> runtimes = acquireAll(pool);
+    try {
+      PgqlCancellationToken token = new PgqlCancellationToken();
+      token.cancel();
+      // fails right away instead of waiting for a parser
+      assertParseFails(token, "was cancelled");
+    } finally {
+      runtimes.forEach(pool::release);
+    }
+  }
+
+  @Test
+  public void testCancelledBatchAndValidation() throws Exception {
+    PgqlCancellationToken token = new PgqlCancellationToken();
+    assertEquals(2, pgql.parseScript(QUERY + ";" + QUERY, token).size());
+    assertTrue(pgql.validateSyntax(QUERY, token).isSyntaxValid());
+
+    token.cancel();
+    try {
+      pgql.parseAll(Arrays.asList(QUERY, QUERY), token);
+      fail();
+    } catch (PgqlException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("was cancelled"));
+    }
+    try {
+      pgql.validateSyntax(QUERY, token);
+      fail();
+    } catch (PgqlException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("was cancelled"));
+    }
+  }
+
+  @Test
+  public void testBatchTimeoutWhileWaitingForParser() throws Exception {
+    SpoofaxRuntimePool pool = pgql.getRuntimePool();
+    List<SpoofaxRuntime> runtimes = acquireAll(pool);
+    try {
+      pgql.parseAll(Arrays.asList(QUERY, QUERY), new PgqlCancellationToken(10, TimeUnit.MILLISECONDS));
+      fail();
+    } catch (PgqlException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("exceeded the timeout of 10 ms"));
+    } finally {
+      runtimes.forEach(pool::release);
+    }
+  }
+
+  @Test
+  public void testTimeoutWhileWaitingForParser() throws Exception {
+    SpoofaxRuntimePool pool = pgql.getRuntimePool();
+    List<SpoofaxRuntime> runtimes = acquireAll(pool);
+    try {
+      assertParseFails(new PgqlCancellationToken(10, TimeUnit.MILLISECONDS), "exceeded the timeout of 10 ms");
+    } finally {
+      runtimes.forEach(pool::release);
+    }
+    assertTrue(pgql.parse(QUERY, 5, TimeUnit.MINUTES).isQueryValid());
+  }
+
+  /**
+   * Cancels the token after the parser was acquired. Spoofax does not necessarily stop the phase that is running, but
+   * the token is checked again in between the phases, so the parse fails before it completes.
+   */
+  @Test
+  public void testParserIsReleasedAfterCancellation() throws Exception {
+    AtomicInteger numChecks = new AtomicInteger();
+    PgqlCancellationToken token = new PgqlCancellationToken() {
+
+      @Override
+      public boolean isCancelled() {
+        // the first check is done while acquiring the parser
+        if (numChecks.incrementAndGet() > 1) {
+          cancel();
+        }
+        return super.isCancelled();
+      }
+    };
+    try {
+      pgql.parse(QUERY, token);
+      fail();
+    } catch (PgqlException e) {
+      assertTrue(numChecks.get() > 1);
+    }
+
+    // all the parsers are available again
+    SpoofaxRuntimePool pool = pgql.getRuntimePool();
+    List<SpoofaxRuntime> runtimes = acquireAll(pool);
+    runtimes.forEach(pool::release);
+    assertTrue(pgql.parse(QUERY, 5, TimeUnit.MINUTES).isQueryValid());
+  }
+
+  private static void assertParseFails(PgqlCancellationToken token, String expectedMessage) {
+    long startTime = System.nanoTime();
+    try {
+      pgql.parse(QUERY, token);
+      fail();
+    } catch (PgqlException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains(expectedMessage));
+    }
+    assertTrue(System.nanoTime() - startTime < TimeUnit.SECONDS.toNanos(30));
+  }
+
+  /**
+   * @throws PgqlException
+   *           if a parser does not become available within a minute
+   */
+  private static List<SpoofaxRuntime> acquireAll(SpoofaxRuntimePool pool) throws PgqlException {
+    List<SpoofaxRuntime> runtimes = new ArrayList<>();
+    for (int i = 0; i < pool.size(); i++) {
+      runtimes.add(pool.acquire(new PgqlCancellationToken(1, TimeUnit.MINUTES)));
+    }
+    return runtimes;
+  }
+}
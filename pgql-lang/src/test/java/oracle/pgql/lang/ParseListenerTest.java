@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import oracle.pgql.lang.ParseMetrics.Outcome;
+import oracle.pgql.lang.ParseMetrics.Source;
+
+public class ParseListenerTest extends AbstractPgqlTest {
+
+  private final List<ParseMetrics> metrics = new CopyOnWriteArrayList<>();
+
+  private final ParseListener listener = metrics::add;
+
+  @Before
+  public void addListener() {
+    pgql.addParseListener(listener);
+  }
+
+  @After
+  public void removeListener() {
+    pgql.removeParseListener(listener);
+    pgql.setParseCacheSize(0);
+  }
+
+  @Test
+  public void testValidQuery() throws Exception {
+    String query = "SELECT n.name FROM MATCH (n) WHERE n.age > 25";
+    pgql.parse(query);
+
+    ParseMetrics m = getSingleMetrics();
+    assertEquals(query.length(), m.getQueryLength());
+    assertEquals(Source.PARSER, m.getSource());
+    assertEquals(Outcome.VALID, m.getOutcome());
+    assertTrue(m.getParseNanos() > 0);
+    assertTrue(m.getAnalysisNanos() > 0);
+    assertTrue(m.getTranslationNanos() > 0);
+    // version detection can be faster than the resolution of the clock
+    assertTrue(m.getVersionDetectionNanos() >= 0);
+    assertTrue(m.getTotalNanos() >= m.getLockWaitNanos() + m.getParseNanos() + m.getAnalysisNanos()
+        + m.getTranslationNanos() + m.getVersionDetectionNanos());
+  }
+
+  @Test
+  public void testSyntaxError() throws Exception {
+    pgql.parse("SELECT n.name FROM MATCH (n) WHERE");
+    assertEquals(Outcome.SYNTAX_ERROR, getSingleMetrics().getOutcome());
+
+    metrics.clear();
+    pgql.parse("");
+    assertEquals(Outcome.SYNTAX_ERROR, getSingleMetrics().getOutcome());
+  }
+
+  @Test
+  public void testAnalysisError() throws Exception {
+    pgql.parse("SELECT x FROM MATCH (n)");
+    ParseMetrics m = getSingleMetrics();
+    assertEquals(Outcome.ANALYSIS_ERROR, m.getOutcome());
+    assertTrue(m.getAnalysisNanos() > 0);
+  }
+
+  @Test
+  public void testCacheHit() throws Exception {
+    pgql.setParseCacheSize(10);
+    String query = "SELECT n FROM MATCH (n)";
+    pgql.parse(query);
+    pgql.parse(query);
+
+    assertEquals(2, metrics.size());
+    assertEquals(Source.PARSER, metrics.get(0).getSource());
+    ParseMetrics m = metrics.get(1);
+    assertEquals(Source.PARSE_CACHE, m.getSource());
+    assertEquals(Outcome.VALID, m.getOutcome());
+    assertEquals(0, m.getParseNanos());
+  }
+
+  @Test
+  public void testParseAsyncAndParseAll() throws Exception {
+    pgql.parseAsync("SELECT n FROM MATCH (n)").get();
+    assertEquals(Outcome.VALID, getSingleMetrics().getOutcome());
+
+    metrics.clear();
+    pgql.parseAll(Arrays.asList("SELECT n FROM MATCH (n)", "SELECT x FROM MATCH (n)"));
+    assertEquals(2, metrics.size());
+  }
+
+  /**
+   * The listener is notified after the parser is released, so it can parse a query itself even if the pool has only
+   * one parser.
+   */
+  @Test
+  public void testListenerParsesDuringParseAll() throws Exception {
+    AtomicBoolean isNested = new AtomicBoolean();
+    ParseListener parsingListener = m -> {
+      if (isNested.compareAndSet(false, true)) {
+        try {
+          assertTrue(pgql.parse("SELECT m FROM MATCH (m)").isQueryValid());
+        } catch (PgqlException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    };
+    pgql.addParseListener(parsingListener);
+    try {
+      CompletableFuture<List<PgqlResult>> results = CompletableFuture.supplyAsync(() -> {
+        try {
+          return pgql.parseAll(Arrays.asList("SELECT n FROM MATCH (n)"));
+        } catch (PgqlException e) {
+          throw new IllegalStateException(e);
+        }
+      });
+      assertTrue(results.get(1, TimeUnit.MINUTES).get(0).isQueryValid());
+      assertTrue(isNested.get());
+      assertEquals(2, metrics.size());
+    } finally {
+      pgql.removeParseListener(parsingListener);
+    }
+  }
+
+  @Test
+  public void testFailingListener() throws Exception {
+    ParseListener failingListener = m -> {
+      throw new IllegalStateException();
+    };
+    pgql.addParseListener(failingListener);
+    try {
+      assertTrue(pgql.parse("SELECT n FROM MATCH (n)").isQueryValid());
+      assertEquals(1, metrics.size());
+    } finally {
+      pgql.removeParseListener(failingListener);
+    }
+  }
+
+  @Test
+  public void testRemoveListener() throws Exception {
+    pgql.removeParseListener(listener);
+    pgql.parse("SELECT n FROM MATCH (n)");
+    assertTrue(metrics.isEmpty());
+  }
+
+  private ParseMetrics getSingleMetrics() {
+    assertEquals(1, metrics.size());
+    return metrics.get(0);
+  }
+}
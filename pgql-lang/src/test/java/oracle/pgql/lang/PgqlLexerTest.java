@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import oracle.pgql.lang.PgqlLexer.Token;
+import oracle.pgql.lang.PgqlLexer.TokenKind;
+
+public class PgqlLexerTest {
+
+  @Test
+  public void testTokens() {
+    PgqlLexer lexer = new PgqlLexer("SELECT n.\"x\"/*c*/ FROM MATCH (n) WHERE n.s = 'it''s' AND n.d > 1.5 AND n.i = ?");
+    List<TokenKind> kinds = new ArrayList<>();
+    List<String> texts = new ArrayList<>();
+    while (lexer.next()) {
+      if (!lexer.isLayout()) {
+        kinds.add(lexer.getKind());
+        texts.add(lexer.getText());
+      }
+    }
+    assertEquals(Arrays.asList("SELECT", "n", ".", "\"x\"", "FROM", "MATCH", "(", "n", ")", "WHERE", "n", ".", "s",
+        "=", "'it''s'", "AND", "n", ".", "d", ">", "1.5", "AND", "n", ".", "i", "=", "?"), texts);
+    assertEquals(TokenKind.DELIMITED_IDENTIFIER, kinds.get(3));
+    assertEquals(TokenKind.STRING, kinds.get(14));
+    assertEquals(TokenKind.DECIMAL, kinds.get(20));
+    assertEquals(TokenKind.BIND_VARIABLE, kinds.get(26));
+    assertFalse(lexer.next());
+  }
+
+  @Test
+  public void testReset() {
+    PgqlLexer lexer = new PgqlLexer("SELECT");
+    assertTrue(lexer.next());
+    assertEquals("SELECT", lexer.getText());
+    lexer.reset("/* x */ 42");
+    assertTrue(lexer.next());
+    assertEquals(TokenKind.MULTI_LINE_COMMENT, lexer.getKind());
+    assertTrue(lexer.next());
+    assertTrue(lexer.next());
+    assertEquals(TokenKind.INTEGER, lexer.getKind());
+    assertEquals(8, lexer.getStart());
+    assertEquals(10, lexer.getEnd());
+    assertFalse(lexer.next());
+  }
+
+  @Test
+  public void testDoubleSlashOutsideComment() {
+    String query = "n.url = 'http://a.b/it''s' AND n.\"//\" = 1 /* // */";
+    assertEquals(Arrays.asList( //
+        new Token(TokenKind.REGULAR_IDENTIFIER, 0, 1), //
+        new Token(TokenKind.SYMBOL, 1, 2), //
+        new Token(TokenKind.REGULAR_IDENTIFIER, 2, 5), //
+        new Token(TokenKind.WHITESPACE, 5, 6), //
+        new Token(TokenKind.SYMBOL, 6, 7), //
+        new Token(TokenKind.WHITESPACE, 7, 8), //
+        new Token(TokenKind.STRING, 8, 26), //
+        new Token(TokenKind.WHITESPACE, 26, 27), //
+        new Token(TokenKind.REGULAR_IDENTIFIER, 27, 30), //
+        new Token(TokenKind.WHITESPACE, 30, 31), //
+        new Token(TokenKind.REGULAR_IDENTIFIER, 31, 32), //
+        new Token(TokenKind.SYMBOL, 32, 33), //
+        new Token(TokenKind.DELIMITED_IDENTIFIER, 33, 37), //
+        new Token(TokenKind.WHITESPACE, 37, 38), //
+        new Token(TokenKind.SYMBOL, 38, 39), //
+        new Token(TokenKind.WHITESPACE, 39, 40), //
+        new Token(TokenKind.INTEGER, 40, 41), //
+        new Token(TokenKind.WHITESPACE, 41, 42), //
+        new Token(TokenKind.MULTI_LINE_COMMENT, 42, 50)).toString(), tokens(query).toString());
+  }
+
+  @Test
+  public void testBackslashEscapedQuote() {
+    // \' is not valid in PGQL 1.3 but the lexer still needs to find the end of the literal to skip over it
+    String query = "'a\\'b' // x\n'c'";
+    List<Token> tokens = tokens(query);
+    assertEquals(4, tokens.size());
+    assertEquals(TokenKind.STRING, tokens.get(0).getKind());
+    assertEquals("'a\\'b'", tokens.get(0).getText(query));
+    assertEquals(TokenKind.SINGLE_LINE_COMMENT, tokens.get(2).getKind());
+    assertEquals("// x\n", tokens.get(2).getText(query));
+    assertEquals(TokenKind.STRING, tokens.get(3).getKind());
+  }
+
+  private static List<Token> tokens(String query) {
+    List<Token> tokens = new ArrayList<>();
+    PgqlLexer lexer = new PgqlLexer(query);
+    while (lexer.next()) {
+      tokens.add(lexer.getToken());
+    }
+    return tokens;
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+
+import oracle.pgql.lang.ir.GraphQuery;
+import oracle.pgql.lang.ir.Projection;
+import oracle.pgql.lang.ir.QueryExpression;
+import oracle.pgql.lang.ir.QueryExpression.Constant.ConstString;
+import oracle.pgql.lang.ir.QueryExpression.ExpressionType;
+import oracle.pgql.lang.ir.QueryExpression.VarRef;
+import oracle.pgql.lang.ir.QueryPath;
+import oracle.pgql.lang.ir.SelectQuery;
+import oracle.pgql.lang.ir.modify.ModifyQuery;
+import oracle.pgql.lang.ir.modify.UpdateClause;
+import oracle.pgql.lang.util.AbstractQueryExpressionRewriter;
+
+public class QueryExpressionRewriterTest extends AbstractPgqlTest {
+
+  /**
+   * Replaces the string literal 'foo' by 'bar'.
+   */
+  private static final AbstractQueryExpressionRewriter FOO_TO_BAR = new AbstractQueryExpressionRewriter() {
+
+    @Override
+    protected QueryExpression rewriteExpression(QueryExpression exp) {
+      if (exp.getExpType() == ExpressionType.STRING && ((ConstString) exp).getValue().equals("foo")) {
+        return new ConstString("bar");
+      }
+      return exp;
+    }
+  };
+
+  @Test
+  public void testNothingChanges() throws Exception {
+    GraphQuery query = parse("SELECT n.name, COUNT(*) AS cnt FROM MATCH (n) -/:knows+/-> (m) WHERE n.age > 3 "
+        + "GROUP BY n.name HAVING COUNT(*) > 1 ORDER BY cnt LIMIT 10");
+    assertSame(query, FOO_TO_BAR.rewrite(query));
+  }
+
+  @Test
+  public void testOnlyChangedSubtreesAreCopied() throws Exception {
+    SelectQuery query = (SelectQuery) parse(
+        "SELECT n.name FROM MATCH (n) -> (m) WHERE n.name = 'foo' AND n.age > 3 AND m.name = 'baz' ORDER BY n.name");
+    String before = query.toString();
+
+    SelectQuery result = (SelectQuery) FOO_TO_BAR.rewrite(query);
+    assertNotSame(query, result);
+    assertEquals(before, query.toString());
+    assertTrue(result.toString(), result.toString().contains("'bar'"));
+    assertNotEquals(query, result);
+
+    assertSame(query.getProjection(), result.getProjection());
+    assertSame(query.getOrderBy(), result.getOrderBy());
+    assertSame(query.getGraphPattern().getVertices(), result.getGraphPattern().getVertices());
+    Iterator<QueryExpression> constraints = query.getGraphPattern().getConstraints().iterator();
+    Iterator<QueryExpression> newConstraints = result.getGraphPattern().getConstraints().iterator();
+    while (constraints.hasNext()) {
+      QueryExpression constraint = constraints.next();
+      QueryExpression newConstraint = newConstraints.next();
+      if (constraint.toString().contains("'foo'")) {
+        assertNotSame(constraint, newConstraint);
+      } else {
+        assertSame(constraint, newConstraint);
+      }
+    }
+  }
+
+  @Test
+  public void testReferencesToCopiedVariables() throws Exception {
+    SelectQuery query = (SelectQuery) parse("SELECT n.name || 'foo' AS x FROM MATCH (n) ORDER BY x");
+    SelectQuery result = (SelectQuery) FOO_TO_BAR.rewrite(query);
+
+    assertNotSame(query.getProjection(), result.getProjection());
+    VarRef orderByRef = (VarRef) result.getOrderBy().getElements().get(0).getExp();
+    assertSame(result.getProjection().getElements().get(0), orderByRef.getVariable());
+  }
+
+  @Test
+  public void testSeparateCallsDoNotShareCopies() throws Exception {
+    SelectQuery query = (SelectQuery) parse("SELECT n.name || 'foo' AS x FROM MATCH (n) ORDER BY x");
+    Projection projection = FOO_TO_BAR.rewrite(query.getProjection());
+    assertNotSame(query.getProjection(), projection);
+
+    // the copy of x that was made by the previous call is not used
+    assertSame(query.getOrderBy(), FOO_TO_BAR.rewrite(query.getOrderBy()));
+  }
+
+  @Test
+  public void testPathConstraint() throws Exception {
+    SelectQuery query = (SelectQuery) parse(
+        "PATH p AS (a) -> (b) WHERE b.name = 'foo' SELECT n.name FROM MATCH (n) -/:p*/-> (m) WHERE m.age > 3");
+    String before = query.toString();
+
+    SelectQuery result = (SelectQuery) FOO_TO_BAR.rewrite(query);
+    assertEquals(before, query.toString());
+    assertFalse(result.toString(), result.toString().contains("'foo'"));
+    QueryPath path = (QueryPath) result.getGraphPattern().getConnections().iterator().next();
+    assertTrue(path.getConstraints().toString(), path.getConstraints().toString().contains("'bar'"));
+    assertSame(query.getGraphPattern().getConstraints(), result.getGraphPattern().getConstraints());
+  }
+
+  @Test
+  public void testSubquery() throws Exception {
+    SelectQuery query = (SelectQuery) parse(
+        "SELECT n.name FROM MATCH (n) WHERE EXISTS ( SELECT * FROM MATCH (n) -> (m) WHERE m.name = 'foo' )");
+    SelectQuery result = (SelectQuery) FOO_TO_BAR.rewrite(query);
+    assertTrue(result.toString(), result.toString().contains("'bar'"));
+    assertSame(query.getProjection(), result.getProjection());
+  }
+
+  @Test
+  public void testModifyQuery() throws Exception {
+    ModifyQuery query = (ModifyQuery) parse("INSERT VERTEX v LABELS (person) PROPERTIES (v.name = 'foo') "
+        + "UPDATE n SET (n.name = 'foo') FROM MATCH (n) WHERE n.age > 3");
+    String before = query.toString();
+
+    ModifyQuery result = (ModifyQuery) FOO_TO_BAR.rewrite(query);
+    assertEquals(before, query.toString());
+    assertFalse(result.toString(), result.toString().contains("'foo'"));
+    assertSame(query.getGraphPattern(), result.getGraphPattern());
+    UpdateClause update = (UpdateClause) result.getModifications().get(1);
+    assertSame(((UpdateClause) query.getModifications().get(1)).getUpdates().get(0).getElement(),
+        update.getUpdates().get(0).getElement());
+  }
+
+  private static GraphQuery parse(String query) throws Exception {
+    PgqlResult result = pgql.parse(query);
+    assertTrue(result.getErrorMessages(), result.isQueryValid());
+    return result.getGraphQuery();
+  }
+}
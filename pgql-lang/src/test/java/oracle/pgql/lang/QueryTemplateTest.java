@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import oracle.pgql.lang.ir.QueryExpression.BindVariable;
+import oracle.pgql.lang.ir.QueryExpression.RelationalExpression.Equal;
+import oracle.pgql.lang.ir.SelectQuery;
+
+public class QueryTemplateTest extends AbstractPgqlTest {
+
+  @Before
+  public void enableTemplates() {
+    pgql.setQueryTemplateCacheSize(100);
+  }
+
+  @After
+  public void disableTemplates() {
+    pgql.setQueryTemplateCacheSize(0);
+  }
+
+  @Test
+  public void testNumericLiterals() throws Exception {
+    checkSameResultAsParser("SELECT n.name FROM MATCH (n) WHERE n.age > 25 AND n.weight < 80.5");
+    checkSameResultAsParser("SELECT n.name FROM MATCH (n) WHERE n.age > 30 AND n.weight < 90.0");
+    checkSameResultAsParser("SELECT n.name FROM MATCH (n) WHERE n.age > -30 AND n.weight < -.5");
+    assertEquals(2, pgql.getQueryTemplateCacheStatistics().getHitCount());
+  }
+
+  @Test
+  public void testStringLiterals() throws Exception {
+    checkSameResultAsParser("SELECT n.name FROM MATCH (n) WHERE n.name = 'Alice'");
+    checkSameResultAsParser("SELECT n.name FROM MATCH (n) WHERE n.name = 'O''Neil'");
+    checkSameResultAsParser("SELECT n.name FROM MATCH (n) WHERE n.name = ''");
+    assertEquals(2, pgql.getQueryTemplateCacheStatistics().getHitCount());
+  }
+
+  @Test
+  public void testDatetimeLiterals() throws Exception {
+    checkSameResultAsParser("SELECT n FROM MATCH (n) WHERE n.d = DATE '2018-01-15' AND n.t = TIME '16:30:00'");
+    checkSameResultAsParser("SELECT n FROM MATCH (n) WHERE n.d = DATE '2020-12-31' AND n.t = TIME '15:30:00+01:00'");
+    checkSameResultAsParser("SELECT n FROM MATCH (n) WHERE n.ts = TIMESTAMP '2018-01-15 16:30:00'");
+    checkSameResultAsParser("SELECT n FROM MATCH (n) WHERE n.ts = timestamp '2018-01-15 15:30:00+01:00'");
+  }
+
+  @Test
+  public void testInvalidLiterals() throws Exception {
+    checkSameResultAsParser("SELECT n FROM MATCH (n) WHERE n.d = DATE '2018-01-15'");
+    PgqlResult result = checkSameResultAsParser("SELECT n FROM MATCH (n) WHERE n.d = DATE '2018-13-15'");
+    assertFalse(result.isQueryValid());
+
+    checkSameResultAsParser("SELECT n FROM MATCH (n) WHERE n.name = 'Alice'");
+    result = checkSameResultAsParser("SELECT n FROM MATCH (n) WHERE n.name = 'O\\'Neil'");
+    assertFalse(result.isQueryValid());
+  }
+
+  @Test
+  public void testBindVariablesAndLiterals() throws Exception {
+    checkSameResultAsParser("SELECT n FROM MATCH (n) WHERE n.age > 25 AND n.name = ? AND n.weight < ?");
+    PgqlResult result = checkSameResultAsParser(
+        "SELECT n FROM MATCH (n) WHERE n.age > 30 AND n.name = ? AND n.weight < ?");
+    assertEquals(2, result.getBindVariableCount());
+    assertEquals(1, pgql.getQueryTemplateCacheStatistics().getHitCount());
+
+    SelectQuery selectQuery = (SelectQuery) result.getGraphQuery();
+    String constraints = selectQuery.getGraphPattern().getConstraints().toString();
+    assertTrue(constraints, constraints.contains("n.name = ?"));
+    assertEquals(0, findBindVariable(selectQuery, "name").getParameterIndex());
+  }
+
+  @Test
+  public void testEqualLiterals() throws Exception {
+    checkSameResultAsParser("SELECT n.age * 2 AS x FROM MATCH (n) ORDER BY n.age * 3");
+    checkSameResultAsParser("SELECT n.age * 2 AS x FROM MATCH (n) ORDER BY n.age * 2");
+    checkSameResultAsParser("SELECT n.age * 4 AS x FROM MATCH (n) ORDER BY n.age * 4");
+    checkSameResultAsParser("SELECT n.age * 5 AS x FROM MATCH (n) ORDER BY n.age * 6");
+  }
+
+  @Test
+  public void testLiteralsThatCannotBeParameterized() throws Exception {
+    checkSameResultAsParser("SELECT COUNT(*) FROM MATCH TOP 2 SHORTEST ((a) -[e]->* (b)) WHERE a.x = 1");
+    checkSameResultAsParser("SELECT COUNT(*) FROM MATCH TOP 3 SHORTEST ((a) -[e]->* (b)) WHERE a.x = 2");
+    checkSameResultAsParser("SELECT COUNT(*) FROM MATCH (a) -[e]->{1,3} (b) WHERE a.x = 1");
+    checkSameResultAsParser("SELECT COUNT(*) FROM MATCH (a) -[e]->{2,4} (b) WHERE a.x = 2");
+    checkSameResultAsParser("SELECT LISTAGG(n.name, ';') FROM MATCH (n) WHERE n.age = 1");
+    checkSameResultAsParser("SELECT LISTAGG(n.name, ',') FROM MATCH (n) WHERE n.age = 2");
+  }
+
+  @Test
+  public void testModify() throws Exception {
+    checkSameResultAsParser("INSERT VERTEX v LABELS (Person) PROPERTIES (v.name = 'Alice', v.age = 25)");
+    checkSameResultAsParser("INSERT VERTEX v LABELS (Person) PROPERTIES (v.name = 'Bob', v.age = 30)");
+    checkSameResultAsParser("UPDATE n SET (n.age = 26) FROM MATCH (n) WHERE n.name = 'Alice'");
+    checkSameResultAsParser("UPDATE n SET (n.age = 31) FROM MATCH (n) WHERE n.name = 'Bob'");
+  }
+
+  @Test
+  public void testQueryWithoutLiterals() throws Exception {
+    checkSameResultAsParser("SELECT n FROM MATCH (n)");
+    checkSameResultAsParser("SELECT n FROM MATCH (n) WHERE n.age > ?");
+    assertEquals(0, pgql.getQueryTemplateCacheStatistics().getSize());
+  }
+
+  @Test
+  public void testTemplatesDisabledByDefault() throws Exception {
+    pgql.setQueryTemplateCacheSize(0);
+    assertNull(pgql.getQueryTemplateCacheStatistics());
+  }
+
+  /**
+   * Parses the query both with and without templates, and checks that the results are the same.
+   */
+  private PgqlResult checkSameResultAsParser(String query) throws Exception {
+    PgqlResult result = pgql.parse(query);
+
+    try (Pgql pgqlWithoutTemplates = new Pgql()) {
+      PgqlResult expectedResult = pgqlWithoutTemplates.parse(query);
+      assertEquals(query, result.getQueryString());
+      assertEquals(expectedResult.isQueryValid(), result.isQueryValid());
+      assertEquals(expectedResult.getErrorMessages(), result.getErrorMessages());
+      assertEquals(expectedResult.getPgqlStatement(), result.getPgqlStatement());
+      assertEquals(expectedResult.getPgqlVersion(), result.getPgqlVersion());
+      assertEquals(expectedResult.getBindVariableCount(), result.getBindVariableCount());
+    }
+    return result;
+  }
+
+  private BindVariable findBindVariable(SelectQuery selectQuery, String propertyName) {
+    return selectQuery.getGraphPattern().getConstraints().stream() //
+        .filter(exp -> exp instanceof Equal) //
+        .map(exp -> (Equal) exp) //
+        .filter(exp -> exp.getExp1().toString().endsWith(propertyName)) //
+        .map(exp -> (BindVariable) exp.getExp2()) //
+        .findFirst() //
+        .get();
+  }
+}
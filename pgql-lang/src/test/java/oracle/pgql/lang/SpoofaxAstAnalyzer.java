@@ -0,0 +1,552 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import static oracle.pgql.lang.CommonTranslationUtil.getConstructorName;
+import static oracle.pgql.lang.CommonTranslationUtil.getSome;
+import static oracle.pgql.lang.CommonTranslationUtil.isNone;
+import static oracle.pgql.lang.CommonTranslationUtil.isSome;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.spoofax.interpreter.terms.IStrategoString;
+import org.spoofax.interpreter.terms.IStrategoTerm;
+
+/**
+ * Analysis of the parse AST of a query (the AST before the Spoofax normalization) in Java. It resolves variable
+ * references like trans-for-nabl.str does and applies the type rules for vertices and edges of types.ts, and it reports
+ * the same errors as the Spoofax analysis for these rules.
+ *
+ * Only SELECT queries in PGQL 1.1 and 1.3 without GROUP BY, HAVING, aggregations, subqueries, path patterns, CASE, IN
+ * and deprecated syntax are supported. Other errors, like duplicate variables and duplicate columns, are not reported,
+ * so a query without errors from this analysis may still be invalid.
+ *
+ * The analysis is test code: it is checked against Spoofax by {@link SptEquivalenceTest} and is not used for parsing
+ * until that comparison has been run and passes.
+ */
+class SpoofaxAstAnalyzer {
+
+  static final String UNRESOLVED_VARIABLE = "Unresolved variable";
+
+  static final String BOOLEAN_EXPECTED = "Boolean expected here";
+
+  static final String NUMERIC_EXPECTED = "Numeric expected here";
+
+  static final String STRING_EXPECTED = "String expected here";
+
+  static final String NO_ORDER_FOR_VERTICES = "Comparison not allowed because no order is defined for vertices";
+
+  static final String NO_ORDER_FOR_EDGES = "Comparison not allowed because no order is defined for edges";
+
+  static final String CANNOT_ORDER_BY_VERTEX = "Cannot order by vertex";
+
+  static final String CANNOT_ORDER_BY_EDGE = "Cannot order by edge";
+
+  private static final UnsupportedQueryException UNSUPPORTED = new UnsupportedQueryException();
+
+  private static final int POS_QUERY_COMMON_PATH_EXPRESSIONS = 0;
+  private static final int POS_QUERY_SELECT_OR_MODIFY = 1;
+  private static final int POS_QUERY_FROM_WHERE = 2;
+  private static final int POS_QUERY_GROUP_BY = 3;
+  private static final int POS_QUERY_HAVING = 4;
+  private static final int POS_QUERY_ORDER_BY = 5;
+  private static final int POS_PGQL11_QUERY_MATCH_WHERE = 3;
+  private static final int POS_PGQL11_QUERY_GROUP_BY = 4;
+  private static final int POS_PGQL11_QUERY_HAVING = 5;
+  private static final int POS_PGQL11_QUERY_ORDER_BY = 6;
+  private static final int POS_SELECT_PROJECTION = 1;
+  private static final int POS_EXPASVAR_EXP = 0;
+  private static final int POS_EXPASVAR_VARASSIGN = 1;
+  private static final int POS_ELEM_CONTENTS_IDENTIFIER = 0;
+  private static final int POS_ELEM_CONTENTS_LEGACY_IDS = 2;
+  private static final int POS_ELEM_CONTENTS_LEGACY_CONSTRAINTS = 3;
+
+  private enum Type {
+    VERTEX,
+    EDGE,
+    OTHER;
+
+    boolean isVertexOrEdge() {
+      return this != OTHER;
+    }
+  }
+
+  /**
+   * An element of the SELECT clause, as seen from the ORDER BY clause.
+   */
+  private static class SelectItem {
+
+    private final Type type;
+
+    /**
+     * Whether the expression is a variable reference, in which case property references in ORDER BY resolve to the
+     * element.
+     */
+    private final boolean varRef;
+
+    SelectItem(Type type, boolean varRef) {
+      this.type = type;
+      this.varRef = varRef;
+    }
+  }
+
+  /**
+   * An error reported by the analysis.
+   */
+  static class AnalysisError {
+
+    private final String message;
+
+    private final IStrategoTerm term;
+
+    AnalysisError(String message, IStrategoTerm term) {
+      this.message = message;
+      this.term = term;
+    }
+
+    String getMessage() {
+      return message;
+    }
+
+    /**
+     * @return the term of the parse AST that the error is reported on
+     */
+    IStrategoTerm getTerm() {
+      return term;
+    }
+
+    @Override
+    public String toString() {
+      return message;
+    }
+  }
+
+  private enum Clause {
+    WHERE,
+    SELECT,
+    ORDER_BY
+  }
+
+  private final boolean pgql13;
+
+  /**
+   * The vertices and edges of the graph pattern, by name.
+   */
+  private final Map<String, Type> patternVariables = new HashMap<>();
+
+  /**
+   * The elements of the SELECT clause, by name; a later element overrides an earlier one with the same name.
+   */
+  private final Map<String, SelectItem> selectItems = new HashMap<>();
+
+  /**
+   * The names of the SELECT elements that have an alias or that are property references in PGQL 1.3. In the WHERE
+   * clause, references to such names are replaced by the SELECT expression, which is not supported here.
+   */
+  private final Set<String> nonAnonymousSelectNames = new HashSet<>();
+
+  /**
+   * Whether there is a SELECT element whose name is taken from the query text, like "n.age + 1".
+   */
+  private boolean selectNamesFromQueryText;
+
+  private final List<AnalysisError> errors = new ArrayList<>();
+
+  private SpoofaxAstAnalyzer(boolean pgql13) {
+    this.pgql13 = pgql13;
+  }
+
+  /**
+   * @param ast
+   *          the AST of a successful parse
+   * @return the errors, or null if the statement is not supported by this analysis
+   */
+  static List<AnalysisError> analyze(IStrategoTerm ast) {
+    if (ast.getTermType() != IStrategoTerm.APPL) {
+      return null;
+    }
+    try {
+      switch (getConstructorName(ast)) {
+        case "Query":
+          return new SpoofaxAstAnalyzer(true).analyzeQuery(ast, getOptional(ast, POS_QUERY_FROM_WHERE),
+              ast.getSubterm(POS_QUERY_GROUP_BY), ast.getSubterm(POS_QUERY_HAVING), ast.getSubterm(POS_QUERY_ORDER_BY));
+        case "Pgql11Query":
+          return new SpoofaxAstAnalyzer(false).analyzeQuery(ast, ast.getSubterm(POS_PGQL11_QUERY_MATCH_WHERE),
+              ast.getSubterm(POS_PGQL11_QUERY_GROUP_BY), ast.getSubterm(POS_PGQL11_QUERY_HAVING),
+              ast.getSubterm(POS_PGQL11_QUERY_ORDER_BY));
+        default:
+          return null; // PGQL 1.0, DDL or empty query string
+      }
+    } catch (UnsupportedQueryException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return the term inside Some(..), or null for None()
+   */
+  private static IStrategoTerm getOptional(IStrategoTerm t, int position) {
+    IStrategoTerm subterm = t.getSubterm(position);
+    return isSome(subterm) ? getSome(subterm) : null;
+  }
+
+  private List<AnalysisError> analyzeQuery(IStrategoTerm queryT, IStrategoTerm matchWhereT, IStrategoTerm groupByT,
+      IStrategoTerm havingT, IStrategoTerm orderByT) throws UnsupportedQueryException {
+    IStrategoTerm selectT = queryT.getSubterm(POS_QUERY_SELECT_OR_MODIFY);
+    if (queryT.getSubterm(POS_QUERY_COMMON_PATH_EXPRESSIONS).getSubtermCount() != 0 || !isNone(groupByT)
+        || !isNone(havingT) || !getConstructorName(selectT).equals("SelectClause") || selectT.getSubtermCount() != 2) {
+      throw UNSUPPORTED;
+    }
+
+    // MATCH
+    IStrategoTerm whereT = null;
+    if (matchWhereT != null) {
+      IStrategoTerm patternsT = matchWhereT.getSubterm(0);
+      for (IStrategoTerm patternT : patternsT.getAllSubterms()) {
+        if (pgql13) {
+          // GraphMatch(Some(MatchKeyword()), PathPattern, None()); without MATCH keyword or with ON clause, the
+          // normalization generates errors or needs the graph names to be consistent
+          if (!getConstructorName(patternT).equals("GraphMatch") || isNone(patternT.getSubterm(0))
+              || !isNone(patternT.getSubterm(2))) {
+            throw UNSUPPORTED;
+          }
+          patternT = patternT.getSubterm(1);
+        }
+        analyzePathPattern(patternT);
+      }
+      whereT = getOptional(matchWhereT, 1);
+    }
+
+    // SELECT
+    IStrategoTerm projectionT = selectT.getSubterm(POS_SELECT_PROJECTION);
+    if (getConstructorName(projectionT).equals("Star")) {
+      for (Map.Entry<String, Type> patternVariable : patternVariables.entrySet()) {
+        selectItems.put(patternVariable.getKey(), new SelectItem(patternVariable.getValue(), true));
+      }
+    } else {
+      for (IStrategoTerm expAsVarT : projectionT.getSubterm(0).getAllSubterms()) {
+        analyzeExpAsVar(expAsVarT);
+      }
+    }
+
+    // WHERE
+    if (whereT != null) {
+      analyzeExp(whereT.getSubterm(0), Clause.WHERE);
+    }
+
+    // ORDER BY
+    if (isSome(orderByT)) {
+      for (IStrategoTerm orderElemT : getSome(orderByT).getSubterm(0).getAllSubterms()) {
+        IStrategoTerm expT;
+        switch (getConstructorName(orderElemT)) {
+          case "Asc":
+          case "Desc":
+            expT = orderElemT.getSubterm(0);
+            break;
+          case "Legacy10Asc":
+          case "Legacy10Desc":
+            throw UNSUPPORTED;
+          default:
+            expT = orderElemT;
+        }
+        Type type = analyzeExp(expT, Clause.ORDER_BY);
+        if (type == Type.VERTEX) {
+          errors.add(new AnalysisError(CANNOT_ORDER_BY_VERTEX, expT));
+        } else if (type == Type.EDGE) {
+          errors.add(new AnalysisError(CANNOT_ORDER_BY_EDGE, expT));
+        }
+      }
+    }
+
+    return errors;
+  }
+
+  private void analyzePathPattern(IStrategoTerm patternT) throws UnsupportedQueryException {
+    switch (getConstructorName(patternT)) {
+      case "SingleVertex":
+        defineVariable(patternT.getSubterm(0), Type.VERTEX);
+        return;
+      case "PathPattern":
+        analyzeVertex(patternT.getSubterm(0));
+        for (IStrategoTerm edgeVertexT : patternT.getSubterm(1).getAllSubterms()) {
+          analyzeConnection(edgeVertexT.getSubterm(0));
+          analyzeVertex(edgeVertexT.getSubterm(1));
+        }
+        return;
+      default:
+        throw UNSUPPORTED; // SHORTEST, CHEAPEST
+    }
+  }
+
+  private void analyzeVertex(IStrategoTerm vertexT) throws UnsupportedQueryException {
+    if (!getConstructorName(vertexT).equals("Vertex")) {
+      throw UNSUPPORTED; // vertex without brackets
+    }
+    defineVariable(vertexT.getSubterm(0), Type.VERTEX);
+  }
+
+  private void analyzeConnection(IStrategoTerm connectionT) throws UnsupportedQueryException {
+    IStrategoTerm contentsT;
+    switch (getConstructorName(connectionT)) {
+      case "OutEdge":
+      case "InEdge":
+        contentsT = null; // -> and <-
+        break;
+      case "UndirectedEdge":
+        if (connectionT.getSubtermCount() == 1) {
+          contentsT = null; // -
+          break;
+        }
+        // fall through
+      case "OutConn":
+      case "InConn":
+        contentsT = getOptional(connectionT, 0);
+        if (contentsT == null || !getConstructorName(contentsT).equals("EdgeContents")) {
+          throw UNSUPPORTED; // deprecated --> or a path
+        }
+        break;
+      default:
+        throw UNSUPPORTED; // parenthesized path
+    }
+    if (!isNone(connectionT.getSubterm(connectionT.getSubtermCount() - 1))) {
+      throw UNSUPPORTED; // path quantifier
+    }
+    if (contentsT != null) {
+      defineVariable(contentsT.getSubterm(0), Type.EDGE);
+    }
+  }
+
+  private void defineVariable(IStrategoTerm elemContentsT, Type type) throws UnsupportedQueryException {
+    if (!isNone(elemContentsT.getSubterm(POS_ELEM_CONTENTS_LEGACY_IDS))
+        || !isNone(elemContentsT.getSubterm(POS_ELEM_CONTENTS_LEGACY_CONSTRAINTS))) {
+      throw UNSUPPORTED;
+    }
+    IStrategoTerm identifierT = getOptional(elemContentsT, POS_ELEM_CONTENTS_IDENTIFIER);
+    if (identifierT == null) {
+      return; // anonymous variables get a unique name
+    }
+    String name = getName(identifierT);
+    Type existingType = patternVariables.get(name);
+    if (existingType != null && (type == Type.EDGE || existingType == Type.EDGE)) {
+      throw UNSUPPORTED; // duplicate variable
+    }
+    patternVariables.put(name, type);
+  }
+
+  private void analyzeExpAsVar(IStrategoTerm expAsVarT) throws UnsupportedQueryException {
+    IStrategoTerm expT = expAsVarT.getSubterm(POS_EXPASVAR_EXP);
+    Type type = analyzeExp(expT, Clause.SELECT);
+    boolean varRef = getConstructorName(expT).equals("VarRef");
+
+    IStrategoTerm varAssignT = getOptional(expAsVarT, POS_EXPASVAR_VARASSIGN);
+    String name;
+    if (varAssignT != null) {
+      name = getName(varAssignT.getSubterm(0));
+      nonAnonymousSelectNames.add(name);
+    } else if (varRef) {
+      name = getName(expT.getSubterm(0));
+    } else if (pgql13 && getConstructorName(expT).equals("PropRef")) {
+      name = getName(expT.getSubterm(1)); // SELECT n.prop is SELECT n.prop AS prop
+      nonAnonymousSelectNames.add(name);
+    } else {
+      selectNamesFromQueryText = true;
+      return;
+    }
+    selectItems.put(name, new SelectItem(type, varRef));
+  }
+
+  private Type analyzeExp(IStrategoTerm t, Clause clause) throws UnsupportedQueryException {
+    switch (getConstructorName(t)) {
+      case "VarRef": {
+        Type type = resolveVarRef(t.getSubterm(0), clause);
+        if (type == null) {
+          errors.add(new AnalysisError(UNRESOLVED_VARIABLE, t));
+          return Type.OTHER;
+        }
+        return type;
+      }
+      case "PropRef": {
+        IStrategoTerm varRefT = t.getSubterm(0);
+        if (!resolvePropRef(varRefT.getSubterm(0), clause)) {
+          errors.add(new AnalysisError(UNRESOLVED_VARIABLE, varRefT));
+        }
+        return Type.OTHER;
+      }
+      case "Not":
+        checkOperand(t.getSubterm(0), clause, BOOLEAN_EXPECTED);
+        return Type.OTHER;
+      case "And":
+      case "Or":
+        checkOperands(t, clause, BOOLEAN_EXPECTED);
+        return Type.OTHER;
+      case "UMin":
+        checkOperand(t.getSubterm(0), clause, NUMERIC_EXPECTED);
+        return Type.OTHER;
+      case "Mul":
+      case "Add":
+      case "Div":
+      case "Mod":
+      case "Sub":
+        checkOperands(t, clause, NUMERIC_EXPECTED);
+        return Type.OTHER;
+      case "Cct":
+        checkOperands(t, clause, STRING_EXPECTED);
+        return Type.OTHER;
+      case "Gt":
+      case "Lt":
+      case "Gte":
+      case "Lte": {
+        Type type1 = analyzeExp(t.getSubterm(0), clause);
+        Type type2 = analyzeExp(t.getSubterm(1), clause);
+        boolean vertex = type1 == Type.VERTEX || type2 == Type.VERTEX;
+        boolean edge = type1 == Type.EDGE || type2 == Type.EDGE;
+        if (vertex && edge) {
+          throw UNSUPPORTED; // the order in which Spoofax checks the conditions decides on the error
+        } else if (vertex) {
+          errors.add(new AnalysisError(NO_ORDER_FOR_VERTICES, t));
+        } else if (edge) {
+          errors.add(new AnalysisError(NO_ORDER_FOR_EDGES, t));
+        }
+        return Type.OTHER;
+      }
+      case "Eq":
+      case "Neq1":
+      case "Neq2":
+        analyzeExp(t.getSubterm(0), clause);
+        analyzeExp(t.getSubterm(1), clause);
+        return Type.OTHER;
+      case "Cast":
+      case "IsNull":
+      case "IsNotNull":
+        analyzeExp(t.getSubterm(0), clause);
+        return Type.OTHER;
+      case "ExtractExp":
+        analyzeExp(t.getSubterm(1), clause);
+        return Type.OTHER;
+      case "CharacterSubstring": {
+        analyzeExp(t.getSubterm(0), clause);
+        analyzeExp(t.getSubterm(1), clause);
+        IStrategoTerm lengthT = getOptional(t, 2);
+        if (lengthT != null) {
+          analyzeExp(lengthT.getSubterm(0), clause);
+        }
+        return Type.OTHER;
+      }
+      case "FunctionCall":
+        for (IStrategoTerm argT : t.getSubterm(2).getAllSubterms()) {
+          analyzeExp(argT, clause);
+        }
+        return Type.OTHER;
+      case "Integer":
+      case "Decimal":
+      case "String":
+      case "True":
+      case "False":
+      case "BindVariable":
+      case "Date":
+      case "Time":
+      case "Timestamp":
+        return Type.OTHER;
+      default:
+        throw UNSUPPORTED; // aggregations, subqueries, CASE, IN, legacy expressions, ...
+    }
+  }
+
+  private void checkOperand(IStrategoTerm expT, Clause clause, String message) throws UnsupportedQueryException {
+    if (analyzeExp(expT, clause).isVertexOrEdge()) {
+      errors.add(new AnalysisError(message, expT));
+    }
+  }
+
+  private void checkOperands(IStrategoTerm t, Clause clause, String message) throws UnsupportedQueryException {
+    IStrategoTerm exp1T = t.getSubterm(0);
+    IStrategoTerm exp2T = t.getSubterm(1);
+    boolean error1 = analyzeExp(exp1T, clause).isVertexOrEdge();
+    boolean error2 = analyzeExp(exp2T, clause).isVertexOrEdge();
+    if (error1 && error2) {
+      throw UNSUPPORTED; // whether Spoofax reports one or two errors is not checked
+    } else if (error1) {
+      errors.add(new AnalysisError(message, exp1T));
+    } else if (error2) {
+      errors.add(new AnalysisError(message, exp2T));
+    }
+  }
+
+  /**
+   * @return the type of the referenced variable, or null if the reference cannot be resolved
+   */
+  private Type resolveVarRef(IStrategoTerm identifierT, Clause clause) throws UnsupportedQueryException {
+    String name = getName(identifierT);
+    switch (clause) {
+      case ORDER_BY:
+        // resolves to SELECT elements first, then to the graph pattern
+        SelectItem selectItem = selectItems.get(name);
+        if (selectItem != null) {
+          return selectItem.type;
+        }
+        if (selectNamesFromQueryText && getConstructorName(identifierT).equals("DelimitedIdentifier")) {
+          throw UNSUPPORTED; // the reference may match the query text of a SELECT element
+        }
+        return patternVariables.get(name);
+      case WHERE:
+        if (!patternVariables.containsKey(name) && nonAnonymousSelectNames.contains(name)) {
+          throw UNSUPPORTED; // the reference is replaced by the expression of the SELECT element
+        }
+        return patternVariables.get(name);
+      default:
+        return patternVariables.get(name);
+    }
+  }
+
+  /**
+   * @return whether the variable of a property reference resolves
+   */
+  private boolean resolvePropRef(IStrategoTerm identifierT, Clause clause) throws UnsupportedQueryException {
+    if (clause == Clause.ORDER_BY) {
+      // resolves to SELECT elements that are variable references, otherwise to the graph pattern
+      SelectItem selectItem = selectItems.get(getName(identifierT));
+      if (selectItem != null && selectItem.varRef) {
+        return true;
+      }
+      return patternVariables.containsKey(getName(identifierT));
+    }
+    return resolveVarRef(identifierT, clause) != null;
+  }
+
+  /**
+   * @return the name of an identifier like the normalization computes it: regular identifiers are case insensitive
+   *         since PGQL 1.3 and delimited identifiers are unescaped
+   */
+  private String getName(IStrategoTerm identifierT) throws UnsupportedQueryException {
+    String value = ((IStrategoString) identifierT.getSubterm(0)).stringValue();
+    switch (getConstructorName(identifierT)) {
+      case "RegularIdentifier":
+        return pgql13 ? value.toUpperCase() : value;
+      case "DelimitedIdentifier":
+        if (!pgql13) {
+          throw UNSUPPORTED; // double quoted variable references are not allowed before PGQL 1.3
+        }
+        return value.substring(1, value.length() - 1).replace("\"\"", "\"");
+      default:
+        throw UNSUPPORTED;
+    }
+  }
+
+  /**
+   * Signals that the query is not supported by this analysis. Thrown without stack trace since it is not an error.
+   */
+  private static class UnsupportedQueryException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    UnsupportedQueryException() {
+      super(null, null, false, false);
+    }
+  }
+}
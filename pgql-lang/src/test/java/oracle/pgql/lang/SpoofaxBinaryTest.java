@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpoofaxBinaryTest {
+
+  private Path tmpDir;
+
+  private URL resource;
+
+  @Before
+  public void setUp() throws Exception {
+    tmpDir = Files.createTempDirectory("pgql-binary-test");
+    resource = writeResource("binary-v1", new byte[] { 1, 2, 3 });
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtils.deleteDirectory(tmpDir.toFile());
+  }
+
+  @Test
+  public void testCachedFileIsReused() throws Exception {
+    SpoofaxBinary binary1 = SpoofaxBinary.extract(resource, "pgql.spoofax-language", cacheDir());
+    assertTrue(binary1.isCached());
+    assertArrayEquals(new byte[] { 1, 2, 3 }, Files.readAllBytes(binary1.getFile().toPath()));
+    binary1.release();
+    assertTrue(binary1.getFile().exists());
+
+    long lastModified = binary1.getFile().lastModified();
+    SpoofaxBinary binary2 = SpoofaxBinary.extract(resource, "pgql.spoofax-language", cacheDir());
+    assertEquals(binary1.getFile(), binary2.getFile());
+    assertEquals(lastModified, binary2.getFile().lastModified());
+  }
+
+  @Test
+  public void testDifferentContentIsCachedSeparately() throws Exception {
+    URL otherResource = writeResource("binary-v2", new byte[] { 4, 5, 6 });
+    File file1 = SpoofaxBinary.extract(resource, "pgql.spoofax-language", cacheDir()).getFile();
+    File file2 = SpoofaxBinary.extract(otherResource, "pgql.spoofax-language", cacheDir()).getFile();
+    assertNotEquals(file1, file2);
+    assertArrayEquals(new byte[] { 4, 5, 6 }, Files.readAllBytes(file2.toPath()));
+
+    // the other version is kept, since another JVM may be using it
+    assertArrayEquals(new byte[] { 1, 2, 3 }, Files.readAllBytes(file1.toPath()));
+    assertEquals(file1, SpoofaxBinary.extract(resource, "pgql.spoofax-language", cacheDir()).getFile());
+    assertTrue(file2.exists());
+  }
+
+  @Test
+  public void testCacheDirectoryIsPrivate() throws Exception {
+    assumeTrue(tmpDir.getFileSystem().supportedFileAttributeViews().contains("posix"));
+    SpoofaxBinary.extract(resource, "pgql.spoofax-language", cacheDir());
+    assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(Paths.get(cacheDir()))));
+  }
+
+  @Test
+  public void testSharedCacheDirectoryIsNotUsed() throws Exception {
+    assumeTrue(tmpDir.getFileSystem().supportedFileAttributeViews().contains("posix"));
+    Path cacheDir = Files.createDirectory(Paths.get(cacheDir()));
+    Files.setPosixFilePermissions(cacheDir, PosixFilePermissions.fromString("rwxrwxrwx"));
+
+    SpoofaxBinary binary = SpoofaxBinary.extract(resource, "pgql.spoofax-language", cacheDir());
+    assertFalse(binary.isCached());
+    assertArrayEquals(new byte[] { 1, 2, 3 }, Files.readAllBytes(binary.getFile().toPath()));
+    assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(binary.getFile().toPath())));
+    binary.release();
+    assertFalse(binary.getFile().exists());
+  }
+
+  @Test
+  public void testSymbolicLinkToCacheDirectoryIsNotUsed() throws Exception {
+    Path target = Files.createDirectory(tmpDir.resolve("target"));
+    Files.createSymbolicLink(Paths.get(cacheDir()), target);
+
+    SpoofaxBinary binary = SpoofaxBinary.extract(resource, "pgql.spoofax-language", cacheDir());
+    assertFalse(binary.isCached());
+    binary.release();
+  }
+
+  @Test
+  public void testCorruptedCachedFileIsReplaced() throws Exception {
+    File file = SpoofaxBinary.extract(resource, "pgql.spoofax-language", cacheDir()).getFile();
+    Files.write(file.toPath(), new byte[] { 1, 2 });
+
+    SpoofaxBinary binary = SpoofaxBinary.extract(resource, "pgql.spoofax-language", cacheDir());
+    assertEquals(file, binary.getFile());
+    assertArrayEquals(new byte[] { 1, 2, 3 }, Files.readAllBytes(file.toPath()));
+  }
+
+  @Test
+  public void testDigestAvoidsReadingResource() throws Exception {
+    URL digest = writeDigest("binary-v1.sha256", resource);
+    File file = SpoofaxBinary.extract(resource, digest, "pgql.spoofax-language", cacheDir()).getFile();
+    assertArrayEquals(new byte[] { 1, 2, 3 }, Files.readAllBytes(file.toPath()));
+
+    Files.delete(tmpDir.resolve("binary-v1"));
+    SpoofaxBinary binary = SpoofaxBinary.extract(resource, digest, "pgql.spoofax-language", cacheDir());
+    assertTrue(binary.isCached());
+    assertEquals(file, binary.getFile());
+  }
+
+  @Test
+  public void testInvalidDigestIsIgnored() throws Exception {
+    File file = SpoofaxBinary.extract(resource, "pgql.spoofax-language", cacheDir()).getFile();
+
+    URL wrongDigest = writeDigest("wrong.sha256", writeResource("binary-v2", new byte[] { 4, 5, 6 }));
+    assertEquals(file, SpoofaxBinary.extract(resource, wrongDigest, "pgql.spoofax-language", cacheDir()).getFile());
+
+    Path malformedDigest = tmpDir.resolve("malformed.sha256");
+    Files.write(malformedDigest, "not a hash".getBytes(StandardCharsets.UTF_8));
+    URL malformedDigestUrl = malformedDigest.toUri().toURL();
+    assertEquals(file,
+        SpoofaxBinary.extract(resource, malformedDigestUrl, "pgql.spoofax-language", cacheDir()).getFile());
+  }
+
+  private String cacheDir() {
+    return tmpDir.resolve("cache").toString();
+  }
+
+  private URL writeResource(String name, byte[] content) throws Exception {
+    Path path = tmpDir.resolve(name);
+    Files.write(path, content);
+    return path.toUri().toURL();
+  }
+
+  /**
+   * Writes a digest in the format of sha256sum, like the build does.
+   */
+  private URL writeDigest(String name, URL resource) throws Exception {
+    byte[] hash = MessageDigest.getInstance("SHA-256").digest(IOUtils.toByteArray(resource));
+    StringBuilder digest = new StringBuilder();
+    for (byte b : hash) {
+      digest.append(String.format("%02x", b));
+    }
+    digest.append("  pgql.spoofax-language\n");
+    Path path = tmpDir.resolve(name);
+    Files.write(path, digest.toString().getBytes(StandardCharsets.UTF_8));
+    return path.toUri().toURL();
+  }
+}
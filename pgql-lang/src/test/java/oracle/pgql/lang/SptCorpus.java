@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Extracts the queries from the Spoofax test (SPT) files in pgql-tests. The queries include both valid and invalid
+ * queries. Used by the tests that compare against Spoofax and, through the test jar, by the benchmarks as a realistic
+ * parser workload.
+ */
+public class SptCorpus {
+
+  private static final Pattern TEST_START = Pattern.compile("^\\s*test\\b[^\\n]*?\\[\\[", Pattern.MULTILINE);
+
+  /**
+   * @param directory
+   *          a directory that is searched recursively for .spt files, for example pgql-tests
+   * @return the tests in the order in which they appear in the files, with the files in alphabetical order
+   */
+  public static List<SptTest> load(Path directory) throws IOException {
+    List<Path> files;
+    try (Stream<Path> paths = Files.walk(directory)) {
+      files = paths //
+          .filter(path -> path.toString().endsWith(".spt")) //
+          .sorted() //
+          .collect(Collectors.toList());
+    }
+    List<SptTest> tests = new ArrayList<>();
+    for (Path file : files) {
+      tests.addAll(extractTests(file, new String(Files.readAllBytes(file), StandardCharsets.UTF_8)));
+    }
+    if (tests.isEmpty()) {
+      throw new IllegalArgumentException("No SPT tests found in " + directory.toAbsolutePath());
+    }
+    return tests;
+  }
+
+  /**
+   * Extracts the code fragment of each test, with selections like [[n]] replaced by their content, together with the
+   * expectation that follows the fragment.
+   */
+  static List<SptTest> extractTests(Path file, String spt) {
+    List<SptTest> tests = new ArrayList<>();
+    Matcher matcher = TEST_START.matcher(spt);
+    int position = 0;
+    while (position < spt.length() && matcher.find(position)) {
+      StringBuilder query = new StringBuilder();
+      int depth = 1;
+      int i = matcher.end();
+      while (i < spt.length() && depth > 0) {
+        if (spt.startsWith("[[", i)) {
+          depth++;
+          i += 2;
+        } else if (spt.startsWith("]]", i)) {
+          depth--;
+          i += 2;
+        } else {
+          query.append(spt.charAt(i));
+          i++;
+        }
+      }
+      int expectationEnd = matcher.find(i) ? matcher.start() : spt.length();
+      String queryString = query.toString().trim();
+      if (!queryString.isEmpty()) {
+        tests.add(new SptTest(file, queryString, spt.substring(i, expectationEnd).trim()));
+      }
+      position = expectationEnd;
+    }
+    return tests;
+  }
+
+  public static class SptTest {
+
+    private final Path file;
+
+    private final String query;
+
+    private final String expectation;
+
+    SptTest(Path file, String query, String expectation) {
+      this.file = file;
+      this.query = query;
+      this.expectation = expectation;
+    }
+
+    public Path getFile() {
+      return file;
+    }
+
+    public String getQuery() {
+      return query;
+    }
+
+    /**
+     * @return whether the test expects errors (error like ... or parse fails)
+     */
+    public boolean expectsErrors() {
+      return expectation.contains("error") || expectation.contains("parse fails");
+    }
+
+    @Override
+    public String toString() {
+      return file.getFileName() + ": " + query;
+    }
+  }
+}
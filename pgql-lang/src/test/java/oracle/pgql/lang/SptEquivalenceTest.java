@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import static java.util.Arrays.asList;
+import static oracle.pgql.lang.SpoofaxAstAnalyzer.BOOLEAN_EXPECTED;
+import static oracle.pgql.lang.SpoofaxAstAnalyzer.CANNOT_ORDER_BY_EDGE;
+import static oracle.pgql.lang.SpoofaxAstAnalyzer.CANNOT_ORDER_BY_VERTEX;
+import static oracle.pgql.lang.SpoofaxAstAnalyzer.NO_ORDER_FOR_EDGES;
+import static oracle.pgql.lang.SpoofaxAstAnalyzer.NO_ORDER_FOR_VERTICES;
+import static oracle.pgql.lang.SpoofaxAstAnalyzer.NUMERIC_EXPECTED;
+import static oracle.pgql.lang.SpoofaxAstAnalyzer.STRING_EXPECTED;
+import static oracle.pgql.lang.SpoofaxAstAnalyzer.UNRESOLVED_VARIABLE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import oracle.pgql.lang.SpoofaxAstAnalyzer.AnalysisError;
+import oracle.pgql.lang.SptCorpus.SptTest;
+import oracle.pgql.lang.ir.ExpAsVar;
+import oracle.pgql.lang.ir.SelectQuery;
+
+/**
+ * Checks the analyses that are done in Java against the Spoofax analysis, using the tests in pgql-tests:
+ *
+ * - {@link FastPathParser}: queries that are expected to have errors should not be accepted by the fast path, and
+ * queries that are accepted by the fast path should result in the same query as when they are parsed by Spoofax.
+ *
+ * - {@link SpoofaxAstAnalyzer}: for the queries that it supports, it should report the same kinds of errors as Spoofax.
+ */
+public class SptEquivalenceTest extends AbstractPgqlTest {
+
+  private static final Path PGQL_TESTS = Paths.get("..", "pgql-tests");
+
+  /**
+   * The errors that {@link SpoofaxAstAnalyzer} reports.
+   */
+  private static final List<String> ANALYZER_MESSAGES = asList(UNRESOLVED_VARIABLE, BOOLEAN_EXPECTED, NUMERIC_EXPECTED,
+      STRING_EXPECTED, NO_ORDER_FOR_VERTICES, NO_ORDER_FOR_EDGES, CANNOT_ORDER_BY_VERTEX, CANNOT_ORDER_BY_EDGE);
+
+  @Test
+  public void testQueriesWithErrorsAreRejected() throws Exception {
+    for (SptTest test : loadTests()) {
+      if (test.expectsErrors()) {
+        assertNull(test.toString(), FastPathParser.parse(test.getQuery()));
+      }
+    }
+  }
+
+  @Test
+  public void testAcceptedQueriesAreEquivalent() throws Exception {
+    for (SptTest test : loadTests()) {
+      SelectQuery actual = FastPathParser.parse(test.getQuery());
+      if (actual == null) {
+        continue;
+      }
+      assertFalse(test.toString(), test.expectsErrors());
+
+      PgqlResult expectedResult = pgql.parse(test.getQuery());
+      assertTrue(test + "\n" + expectedResult.getErrorMessages(), expectedResult.isQueryValid());
+      SelectQuery expected = (SelectQuery) expectedResult.getGraphQuery();
+      assertEquals(test.toString(), expected, actual);
+      assertEquals(test.toString(), expected.toString(), actual.toString());
+
+      List<ExpAsVar> expectedElements = expected.getProjection().getElements();
+      List<ExpAsVar> actualElements = actual.getProjection().getElements();
+      for (int i = 0; i < expectedElements.size(); i++) {
+        assertEquals(test.toString(), expectedElements.get(i).getName(), actualElements.get(i).getName());
+        assertEquals(test.toString(), expectedElements.get(i).isAnonymous(), actualElements.get(i).isAnonymous());
+      }
+    }
+  }
+
+  @Test
+  public void testAnalysisReportsTheSameErrors() throws Exception {
+    int numAnalyzedQueries = 0;
+    for (SptTest test : loadTests()) {
+      PgqlResult result;
+      try {
+        result = pgql.parse(test.getQuery());
+      } catch (PgqlException e) {
+        continue; // Spoofax fails instead of reporting errors
+      }
+      if (!result.isSyntaxValid()) {
+        continue;
+      }
+      List<AnalysisError> errors = SpoofaxAstAnalyzer.analyze(result.getSpoofaxParseUnit().ast());
+      if (errors == null) {
+        continue;
+      }
+      numAnalyzedQueries++;
+
+      Set<String> actual = errors.stream().map(AnalysisError::getMessage).collect(Collectors.toSet());
+      Set<String> expected = new HashSet<>();
+      if (!result.isQueryValid()) {
+        // Spoofax may report other errors too, and it reports some errors only once per variable name
+        List<String> lines = asList(result.getErrorMessages().split("\n"));
+        for (String message : ANALYZER_MESSAGES) {
+          if (lines.contains("\t" + message)) {
+            expected.add(message);
+          }
+        }
+      }
+      assertEquals(test + "\n" + result.getErrorMessages(), expected, actual);
+    }
+    assertTrue(numAnalyzedQueries > 0);
+  }
+
+  @Test
+  public void testAnalysis() throws Exception {
+    checkAnalysis("SELECT n.name AS name FROM MATCH (n) -[e]-> (m) WHERE n.age > 3 ORDER BY name");
+    checkAnalysis("SELECT n FROM MATCH (n) -[e]-> (m) ORDER BY n.age, e.weight");
+    checkAnalysis("SELECT x.name AS y FROM MATCH (n) WHERE n.age > x.age ORDER BY z", UNRESOLVED_VARIABLE,
+        UNRESOLVED_VARIABLE, UNRESOLVED_VARIABLE);
+    checkAnalysis("SELECT n.age AS N FROM MATCH (n) ORDER BY \"N\", n.age");
+    checkAnalysis("SELECT n FROM MATCH (n) ORDER BY \"n\"", UNRESOLVED_VARIABLE);
+    checkAnalysis("SELECT n AS x FROM MATCH (n) -[e]-> (m) WHERE NOT n AND e + 1 > 2 AND m || 'a' = 'b' ORDER BY x",
+        BOOLEAN_EXPECTED, NUMERIC_EXPECTED, STRING_EXPECTED, CANNOT_ORDER_BY_VERTEX);
+    checkAnalysis("SELECT n > m AS x, e <= 1 AS y FROM MATCH (n) -[e]-> (m) ORDER BY e", NO_ORDER_FOR_VERTICES,
+        NO_ORDER_FOR_EDGES, CANNOT_ORDER_BY_EDGE);
+    checkAnalysis("SELECT n.name AS x FROM MATCH (n) ORDER BY x.name", UNRESOLVED_VARIABLE);
+
+    // PGQL 1.1 identifiers are case sensitive
+    checkAnalysis("SELECT n.name FROM g MATCH (n) WHERE N.age > 3", UNRESOLVED_VARIABLE);
+
+    // aggregation, CASE, duplicate variable, reference to a SELECT alias in WHERE
+    checkNotAnalyzed("SELECT COUNT(*) AS cnt FROM MATCH (n)");
+    checkNotAnalyzed("SELECT CASE WHEN n THEN 1 END AS x FROM MATCH (n)");
+    checkNotAnalyzed("SELECT 1 AS x FROM MATCH (n) -[n]-> (m)");
+    checkNotAnalyzed("SELECT n.age AS age FROM MATCH (n) WHERE age > 3");
+  }
+
+  private static void checkAnalysis(String query, String... expectedMessages) throws Exception {
+    List<AnalysisError> errors = analyze(query);
+    assertEquals(query, asList(expectedMessages),
+        errors.stream().map(AnalysisError::getMessage).collect(Collectors.toList()));
+  }
+
+  private static void checkNotAnalyzed(String query) throws Exception {
+    assertNull(query, analyze(query));
+  }
+
+  private static List<AnalysisError> analyze(String query) throws Exception {
+    PgqlResult result = pgql.parse(query);
+    assertTrue(query, result.isSyntaxValid());
+    return SpoofaxAstAnalyzer.analyze(result.getSpoofaxParseUnit().ast());
+  }
+
+  private static List<SptTest> loadTests() throws Exception {
+    assumeTrue("pgql-tests not found", Files.isDirectory(PGQL_TESTS));
+    return SptCorpus.load(PGQL_TESTS);
+  }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SyntaxValidationTest extends AbstractPgqlTest {
+
+  @Test
+  public void testValidSyntax() throws Exception {
+    SyntaxValidationResult result = pgql.validateSyntax("SELECT n.name FROM MATCH (n) -> (m) WHERE n.age > 25");
+    assertTrue(result.isSyntaxValid());
+    assertTrue(result.getSyntaxErrors().isEmpty());
+    assertNull(result.getErrorMessages());
+  }
+
+  @Test
+  public void testSemanticErrorsAreNotReported() throws Exception {
+    // x is undefined, which is only detected by the analysis
+    String query = "SELECT x FROM MATCH (n)";
+    assertTrue(pgql.validateSyntax(query).isSyntaxValid());
+    assertFalse(pgql.parse(query).isQueryValid());
+  }
+
+  @Test
+  public void testSyntaxError() throws Exception {
+    String query = "SELECT n.name\nFROM MATCH (n) WHERE n.age >";
+    SyntaxValidationResult result = pgql.validateSyntax(query);
+    assertFalse(result.isSyntaxValid());
+    assertEquals(query, result.getQueryString());
+
+    SyntaxError error = result.getSyntaxErrors().get(0);
+    assertEquals(2, error.getLine());
+    assertTrue(error.getStartOffset() >= query.indexOf('\n'));
+    assertEquals(pgql.parse(query).getErrorMessages(), result.getErrorMessages());
+  }
+
+  @Test
+  public void testNonBreakingWhiteSpace() throws Exception {
+    SyntaxValidationResult result = pgql.validateSyntax("SELECT n\u00a0FROM MATCH (n)");
+    assertFalse(result.isSyntaxValid());
+    assertTrue(result.getErrorMessages().contains("non-breaking white space"));
+  }
+
+  @Test
+  public void testEmptyString() throws Exception {
+    SyntaxValidationResult result = pgql.validateSyntax("");
+    assertFalse(result.isSyntaxValid());
+    assertTrue(result.getErrorMessages().contains("Empty query string"));
+  }
+}
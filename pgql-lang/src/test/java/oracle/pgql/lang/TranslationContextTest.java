@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import oracle.pgql.lang.ir.ExpAsVar;
+import oracle.pgql.lang.ir.QueryExpression;
+import oracle.pgql.lang.ir.QueryExpression.PropertyAccess;
+import oracle.pgql.lang.ir.QueryExpression.VarRef;
+import oracle.pgql.lang.ir.QueryVariable;
+import oracle.pgql.lang.ir.QueryVertex;
+import oracle.pgql.lang.ir.SelectQuery;
+import oracle.pgql.lang.ir.VertexPairConnection;
+import oracle.pgql.lang.util.AbstractQueryExpressionVisitor;
+
+public class TranslationContextTest extends AbstractPgqlTest {
+
+  @Test
+  public void testManyVariables() throws Exception {
+    int numPatterns = 300;
+    StringBuilder select = new StringBuilder("SELECT v0.name");
+    StringBuilder match = new StringBuilder(" FROM MATCH (v0)");
+    StringBuilder where = new StringBuilder(" WHERE v0.age > 0");
+    for (int i = 1; i <= numPatterns; i++) {
+      select.append(", v").append(i).append(".name AS name").append(i);
+      match.append(" -[e").append(i).append("]-> (v").append(i).append(")");
+      where.append(" AND v").append(i).append(".age > e").append(i).append(".weight");
+    }
+    String query = select.toString() + match + where + " ORDER BY name" + numPatterns;
+    PgqlResult result = pgql.parse(query);
+    assertTrue(result.getErrorMessages(), result.isQueryValid());
+    SelectQuery selectQuery = (SelectQuery) result.getGraphQuery();
+
+    Map<String, QueryVariable> variables = new HashMap<>();
+    for (QueryVertex vertex : selectQuery.getGraphPattern().getVertices()) {
+      variables.put(vertex.getName(), vertex);
+    }
+    assertEquals(numPatterns + 1, variables.size());
+    for (VertexPairConnection connection : selectQuery.getGraphPattern().getConnections()) {
+      assertSame(variables.get(connection.getSrc().getName()), connection.getSrc());
+      assertSame(variables.get(connection.getDst().getName()), connection.getDst());
+      variables.put(connection.getName(), connection);
+    }
+    assertEquals(2 * numPatterns + 1, variables.size());
+
+    // every property access refers to the variable of the pattern
+    AbstractQueryExpressionVisitor visitor = new AbstractQueryExpressionVisitor() {
+
+      @Override
+      public void visit(PropertyAccess propAccess) {
+        assertSame(variables.get(propAccess.getVariable().getName()), propAccess.getVariable());
+      }
+    };
+    for (QueryExpression constraint : selectQuery.getGraphPattern().getConstraints()) {
+      constraint.accept(visitor);
+    }
+    List<ExpAsVar> elements = selectQuery.getProjection().getElements();
+    for (ExpAsVar element : elements) {
+      element.getExp().accept(visitor);
+    }
+
+    // the ORDER BY refers to the last element of the SELECT
+    VarRef orderByRef = (VarRef) selectQuery.getOrderBy().getElements().get(0).getExp();
+    assertSame(elements.get(numPatterns), orderByRef.getVariable());
+  }
+
+  @Test
+  public void testSelectStar() throws Exception {
+    PgqlResult result = pgql.parse("SELECT * FROM MATCH (n) -[e]-> (m)");
+    assertTrue(result.getErrorMessages(), result.isQueryValid());
+    SelectQuery selectQuery = (SelectQuery) result.getGraphQuery();
+
+    Map<String, QueryVariable> variables = new HashMap<>();
+    for (QueryVertex vertex : selectQuery.getGraphPattern().getVertices()) {
+      variables.put(vertex.getName(), vertex);
+    }
+    for (VertexPairConnection connection : selectQuery.getGraphPattern().getConnections()) {
+      variables.put(connection.getName(), connection);
+    }
+    List<ExpAsVar> elements = selectQuery.getProjection().getElements();
+    assertEquals(3, elements.size());
+    for (ExpAsVar element : elements) {
+      VarRef varRef = (VarRef) element.getExp();
+      assertSame(variables.get(varRef.getVariable().getName()), varRef.getVariable());
+    }
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2013 - 2020 Oracle and/or its affiliates. All rights reserved.
+ */
+package oracle.pgql.lang.completions;
+
+import static oracle.pgql.lang.completion.PgqlCompletionGenerator.completion;
+import static oracle.pgql.lang.completion.PgqlCompletionGenerator.completions;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import oracle.pgql.lang.editor.completion.CachingPgqlCompletionContext;
+import oracle.pgql.lang.editor.completion.PgqlCompletionContext;
+
+public class CachingCompletionContextTest extends AbstractCompletionsTest {
+
+  @Override
+  protected PgqlCompletionContext getCompletionContext() {
+    return new CachingPgqlCompletionContext(super.getCompletionContext(), 1, TimeUnit.HOURS);
+  }
+
+  @Test
+  public void testPropertiesWithPrefix() throws Exception {
+    check("SELECT n.na??? FROM MATCH (n) ON g", completions(completion("name", "vertex property")));
+    check("SELECT n.NA??? FROM MATCH (n) ON g", completions(completion("name", "vertex property")));
+    check("SELECT e.w??? FROM MATCH (n) -[e]-> (m) ON g", completions(completion("weight", "edge property")));
+    check("SELECT n.xyz??? FROM MATCH (n) ON g", completions());
+  }
+
+  @Test
+  public void testLabelsWithPrefix() throws Exception {
+    check("SELECT n FROM MATCH (n:P???) ON g", completions( //
+        completion("Person", "vertex label"), //
+        completion("Professor", "vertex label")));
+    check("SELECT n FROM MATCH (n) -[e:kn???]-> (m) ON g", completions(completion("knows", "edge label")));
+  }
+
+  @Test
+  public void testPrefixLookup() {
+    CountingCompletionContext counting = new CountingCompletionContext();
+    CachingPgqlCompletionContext ctx = new CachingPgqlCompletionContext(counting, 1, TimeUnit.HOURS);
+
+    assertEquals(Arrays.asList("name", "nationality", "NATIVE_LANGUAGE"), ctx.getVertexProperties("g", "na"));
+    assertEquals(Arrays.asList("NATIVE_LANGUAGE"), ctx.getVertexProperties("g", "native"));
+    assertEquals(Collections.emptyList(), ctx.getVertexProperties("g", "z"));
+    assertEquals(counting.getVertexProperties("g"), ctx.getVertexProperties("g"));
+    assertEquals(ctx.getVertexProperties("g").size(), ctx.getVertexProperties("g", "").size());
+  }
+
+  @Test
+  public void testMetadataIsCached() {
+    CountingCompletionContext counting = new CountingCompletionContext();
+    CachingPgqlCompletionContext ctx = new CachingPgqlCompletionContext(counting, 1, TimeUnit.HOURS);
+
+    ctx.getVertexProperties("g");
+    ctx.getVertexProperties("g", "na");
+    ctx.getVertexProperties("g", "a");
+    assertEquals(1, counting.numCalls);
+
+    ctx.getVertexProperties(null);
+    ctx.getEdgeProperties("g");
+    assertEquals(3, counting.numCalls);
+
+    ctx.invalidate("g");
+    ctx.getVertexProperties("g");
+    ctx.getVertexProperties(null);
+    assertEquals(4, counting.numCalls);
+
+    ctx.invalidate();
+    ctx.getVertexProperties(null);
+    assertEquals(5, counting.numCalls);
+  }
+
+  @Test
+  public void testMetadataExpires() {
+    CountingCompletionContext counting = new CountingCompletionContext();
+    CachingPgqlCompletionContext ctx = new CachingPgqlCompletionContext(counting, 0, TimeUnit.SECONDS);
+
+    ctx.getVertexLabels("g");
+    ctx.getVertexLabels("g");
+    assertEquals(2, counting.numCalls);
+  }
+
+  private static class CountingCompletionContext implements PgqlCompletionContext {
+
+    private int numCalls;
+
+    @Override
+    public List<String> getGraphNames() {
+      numCalls++;
+      return Collections.singletonList("g");
+    }
+
+    @Override
+    public List<String> getVertexProperties(String graphName) {
+      numCalls++;
+      return Arrays.asList("name", "age", "NATIVE_LANGUAGE", "nationality");
+    }
+
+    @Override
+    public List<String> getEdgeProperties(String graphName) {
+      numCalls++;
+      return Collections.singletonList("weight");
+    }
+
+    @Override
+    public List<String> getVertexLabels(String graphName) {
+      numCalls++;
+      return Collections.singletonList("Person");
+    }
+
+    @Override
+    public List<String> getEdgeLabels(String graphName) {
+      numCalls++;
+      return Collections.singletonList("knows");
+    }
+  }
+}